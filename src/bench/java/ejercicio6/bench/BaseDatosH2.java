@@ -0,0 +1,113 @@
+package ejercicio6.bench;
+
+import ejercicio6.FabricaSesiones;
+import ejercicio6.GeneradorIdsPooled;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.sql.PreparedStatement;
+
+/**
+ * 🧪 BASE DE DATOS H2 PARA LOS BENCHMARKS
+ * Misma configuración que hibernate.cfg.xml (pool incluido), pero contra una H2 en memoria
+ * con el esquema generado desde los .hbm.xml, y datos sintéticos de tamaño elegible.
+ */
+public class BaseDatosH2 {
+
+    /** Películas por cada opinión generada (1 de cada 200). */
+    static final int OPINIONES_POR_PELICULA = 200;
+    /** Opiniones de media por usuario. */
+    static final int OPINIONES_POR_USUARIO = 50;
+    static final int NUMERO_CINES = 50;
+    static final int PELICULAS_POR_CINE = 20;
+
+    /**
+     * 🔧 CREAR UNA SESSIONFACTORY SOBRE H2
+     * "nombre" identifica la base en memoria (dos nombres = dos bases distintas).
+     */
+    public static SessionFactory crearSessionFactory(String nombre) {
+        return FabricaSesiones.crearH2(nombre);
+    }
+
+    /**
+     * 🎲 RELLENAR CON DATOS SINTÉTICOS
+     * Inserta por JDBC (en lotes de 1000) "opiniones" opiniones repartidas entre
+     * opiniones/200 películas y opiniones/50 usuarios, más 50 cines con 20 películas cada uno.
+     * Deja el generador de ids por encima de lo insertado.
+     */
+    public static void rellenar(SessionFactory sessionFactory, int opiniones) {
+        int peliculas = Math.max(PELICULAS_POR_CINE, opiniones / OPINIONES_POR_PELICULA);
+        int usuarios = Math.max(1, opiniones / OPINIONES_POR_USUARIO);
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.doWork(conexion -> {
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "INSERT INTO peliculas (id, titulo, director, anyo) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 1; i <= peliculas; i++) {
+                        ps.setInt(1, i);
+                        ps.setString(2, titulo(i));
+                        ps.setString(3, "Director " + (i % 500));
+                        ps.setInt(4, 1950 + i % 75);
+                        ps.addBatch();
+                        if (i % 1000 == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "INSERT INTO opiniones (id, pelicula_id, usuario, opinion) VALUES (?, ?, ?, ?)")) {
+                    for (int i = 1; i <= opiniones; i++) {
+                        ps.setInt(1, i);
+                        ps.setInt(2, 1 + (int) ((i * 2654435761L) % peliculas));
+                        ps.setString(3, usuario(i % usuarios));
+                        ps.setString(4, "Opinión número " + i + " sobre una película clásica");
+                        ps.addBatch();
+                        if (i % 1000 == 0) {
+                            ps.executeBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                int id = 1;
+                try (PreparedStatement ps = conexion.prepareStatement(
+                        "INSERT INTO cines (id, cine, pelicula_id) VALUES (?, ?, ?)")) {
+                    for (int c = 0; c < NUMERO_CINES; c++) {
+                        for (int p = 0; p < PELICULAS_POR_CINE; p++) {
+                            ps.setInt(1, id++);
+                            ps.setString(2, cine(c));
+                            ps.setInt(3, 1 + (c * 7 + p) % peliculas);
+                            ps.addBatch();
+                        }
+                    }
+                    ps.executeBatch();
+                }
+                // hbm2ddl ya crea una fila por tabla en el generador: se sube por encima de lo insertado
+                try (PreparedStatement ps = conexion.prepareStatement("UPDATE " + GeneradorIdsPooled.TABLA
+                        + " SET " + GeneradorIdsPooled.COLUMNA_SIGUIENTE + " = ? WHERE " + GeneradorIdsPooled.COLUMNA_ENTIDAD + " = ?")) {
+                    Object[][] contadores = {{"peliculas", peliculas + 1}, {"opiniones", opiniones + 1}, {"cines", id}};
+                    for (Object[] contador : contadores) {
+                        ps.setLong(1, ((Number) contador[1]).longValue());
+                        ps.setString(2, (String) contador[0]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+            session.getTransaction().commit();
+        }
+    }
+
+    public static String titulo(int i) {
+        return "Película " + i;
+    }
+
+    public static String usuario(int i) {
+        return "usuario" + i;
+    }
+
+    public static String cine(int i) {
+        return "Cine " + i;
+    }
+}
@@ -0,0 +1,96 @@
+package ejercicio6.bench;
+
+import ejercicio6.Agregados;
+import ejercicio6.EstadisticaPelicula;
+import ejercicio6.EstadisticaUsuario;
+import ejercicio6.ServicioFilmoteca;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: TOP 10 DE PELÍCULAS Y DE USUARIOS
+ * Los recuentos en memoria de {@link Agregados} frente a calcularlos con GROUP BY
+ * sobre toda la tabla opiniones en cada petición (lo que había que hacer antes).
+ * N alterna entre 10 y 11: H2 reutiliza el resultado de una consulta idéntica con los
+ * mismos parámetros y el GROUP BY no llegaría a ejecutarse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchAgregados {
+
+    private int llamadas;
+
+    @Param({"1000", "100000"})
+    public int opiniones;
+
+    private SessionFactory sessionFactory;
+    private ServicioFilmoteca servicio;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("agregados");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+        Agregados.recalcular(sessionFactory);
+        servicio = new ServicioFilmoteca(sessionFactory);
+    }
+
+    private int n() {
+        return 10 + (llamadas++ & 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<EstadisticaPelicula> peliculasAgregados() {
+        return servicio.peliculasMasOpinadas(n());
+    }
+
+    @Benchmark
+    public List<EstadisticaUsuario> usuariosAgregados() {
+        return servicio.usuariosMasActivos(n());
+    }
+
+    @Benchmark
+    public List<Object[]> peliculasGroupBy() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("SELECT p.id, p.titulo, COUNT(o), COUNT(DISTINCT o.usuario) "
+                            + "FROM ejercicio6.Opinion o JOIN o.pelicula p GROUP BY p.id, p.titulo "
+                            + "ORDER BY COUNT(o) DESC, p.id", Object[].class)
+                    .setMaxResults(n())
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> usuariosGroupBy() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("SELECT o.usuario, COUNT(o) FROM ejercicio6.Opinion o "
+                            + "GROUP BY o.usuario ORDER BY COUNT(o) DESC, o.usuario", Object[].class)
+                    .setMaxResults(n())
+                    .list();
+        }
+    }
+}
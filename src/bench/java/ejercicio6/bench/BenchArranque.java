@@ -0,0 +1,115 @@
+package ejercicio6.bench;
+
+import ejercicio6.Agregados;
+import ejercicio6.ArchivoCSV;
+import ejercicio6.ArchivoInstantanea;
+import ejercicio6.ImportacionParalela;
+import ejercicio6.IndiceBusqueda;
+import ejercicio6.InstantaneaColumnar;
+import ejercicio6.ejercicio6;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: ARRANQUE CON LOS MISMOS CSV
+ * Lo que hace el arranque hasta tener el catálogo en la BD y el índice de búsqueda,
+ * los recuentos y la instantánea en columnas en memoria:
+ * - csv: vaciar las tablas, importar los CSV en paralelo y recorrer la BD tres veces
+ *   (lo de siempre, pero esperando a que terminen los hilos de fondo),
+ * - instantanea: comprobar y leer el {@link ArchivoInstantanea} guardado al preparar
+ *   y construirlo todo desde él.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchArranque {
+
+    @Param({"csv", "instantanea"})
+    public String modo;
+
+    @Param({"100000", "1000000"})
+    public int opiniones;
+
+    private SessionFactory sessionFactory;
+    private File archivo;
+
+    /** Como en {@link BenchImportacion}: RUTA_RECURSOS se fija al cargar la clase ejercicio6. */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        File carpeta = DatosCSV.generar(DatosCSV.carpeta(opiniones), opiniones);
+        System.setProperty("ejercicio6.recursos", carpeta.getPath());
+        if (!new File(ejercicio6.RUTA_RECURSOS).equals(carpeta)) {
+            throw new IllegalStateException("ejercicio6 ya estaba cargada con otra ruta: " + ejercicio6.RUTA_RECURSOS);
+        }
+        archivo = Files.createTempFile("ejercicio6-instantanea", ".bin").toFile();
+        archivo.delete();
+        System.setProperty(ArchivoInstantanea.PROPIEDAD_ARCHIVO, archivo.getPath());
+        sessionFactory = BaseDatosH2.crearSessionFactory("arranque");
+
+        if ("instantanea".equals(modo)) {
+            ImportacionParalela.importar(sessionFactory, ArchivoCSV.values());
+            if (!ArchivoInstantanea.guardar(sessionFactory)) {
+                throw new IllegalStateException("No se ha guardado la instantánea");
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void vaciarTablas() {
+        if (!"csv".equals(modo)) {
+            return;
+        }
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("DELETE FROM opiniones").executeUpdate();
+            session.createNativeQuery("DELETE FROM cines").executeUpdate();
+            session.createNativeQuery("DELETE FROM peliculas").executeUpdate();
+            session.getTransaction().commit();
+        }
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+        archivo.delete();
+    }
+
+    @Benchmark
+    public InstantaneaColumnar arrancar() {
+        if ("csv".equals(modo)) {
+            ImportacionParalela.importar(sessionFactory, ArchivoCSV.values());
+            IndiceBusqueda.construir(sessionFactory);
+            Agregados.recalcular(sessionFactory);
+            InstantaneaColumnar.construir(sessionFactory);
+        } else {
+            ArchivoInstantanea.Contenido contenido = ArchivoInstantanea.abrir(sessionFactory);
+            if (contenido == null) {
+                throw new IllegalStateException("La instantánea ha dejado de valer");
+            }
+            ArchivoInstantanea.usar(contenido);
+        }
+        return InstantaneaColumnar.actual();
+    }
+}
@@ -0,0 +1,128 @@
+package ejercicio6.bench;
+
+import ejercicio6.Opinion;
+import ejercicio6.OpinionUsuario;
+import ejercicio6.Pelicula;
+import ejercicio6.ServicioFilmoteca;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: ENTIDADES GESTIONADAS FRENTE A PROYECCIONES DE SOLO LECTURA
+ * Lista {@link #FILAS} opiniones con su película de las dos maneras:
+ * - entidades: "FROM Opinion o JOIN FETCH o.pelicula" en una sesión normal (como antes)
+ * - proyeccion: "SELECT new OpinionUsuario(...)" en una sesión FlushMode.MANUAL de solo lectura
+ * Cada invocación cuenta como FILAS operaciones, así que con -prof gc la métrica
+ * gc.alloc.rate.norm sale directamente en bytes por fila listada:
+ *   mvn -Pbench compile exec:exec@jmh -Djmh.args="BenchAsignacion -prof gc"
+ * Además, "misOpiniones*" compara el iniciarSesion de antes (entidades agrupadas en un
+ * LinkedHashMap) con el de ahora ({@link ServicioFilmoteca#opinionesUsuario}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchAsignacion {
+
+    static final int FILAS = 10_000;
+
+    private SessionFactory sessionFactory;
+    private ServicioFilmoteca servicio;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("asignacion");
+        BaseDatosH2.rellenar(sessionFactory, 100_000);
+        servicio = new ServicioFilmoteca(sessionFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void listadoEntidades(Blackhole agujero) {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            List<Opinion> opiniones = session.createQuery(
+                            "FROM ejercicio6.Opinion o JOIN FETCH o.pelicula ORDER BY o.id", Opinion.class)
+                    .setMaxResults(FILAS)
+                    .list();
+            for (Opinion o : opiniones) {
+                Pelicula p = o.getPelicula();
+                agujero.consume(p.getTitulo() + o.getOpinion());
+            }
+            session.getTransaction().commit();
+            session.clear();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILAS)
+    public void listadoProyeccion(Blackhole agujero) {
+        try (Session session = sessionFactory.withOptions().flushMode(FlushMode.MANUAL).openSession()) {
+            session.setDefaultReadOnly(true);
+            session.beginTransaction();
+            List<OpinionUsuario> opiniones = session.createQuery(
+                            "SELECT new ejercicio6.OpinionUsuario(p.id, p.titulo, p.director, p.anyo, o.id, o.opinion, o.version) "
+                                    + "FROM ejercicio6.Opinion o JOIN o.pelicula p ORDER BY o.id", OpinionUsuario.class)
+                    .setReadOnly(true)
+                    .setMaxResults(FILAS)
+                    .list();
+            for (OpinionUsuario o : opiniones) {
+                agujero.consume(o.titulo() + o.opinion());
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    @Benchmark
+    public Map<Pelicula, List<Opinion>> misOpinionesEntidades() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            List<Opinion> opiniones = session.createQuery(
+                            "FROM ejercicio6.Opinion o JOIN FETCH o.pelicula p "
+                                    + "WHERE o.usuario = :usuario ORDER BY p.id, o.id", Opinion.class)
+                    .setParameter("usuario", BaseDatosH2.usuario(7))
+                    .setReadOnly(true)
+                    .list();
+            Map<Pelicula, List<Opinion>> porPelicula = new LinkedHashMap<>();
+            for (Opinion o : opiniones) {
+                porPelicula.computeIfAbsent(o.getPelicula(), p -> new ArrayList<>()).add(o);
+            }
+            session.getTransaction().commit();
+            session.clear();
+            return porPelicula;
+        }
+    }
+
+    @Benchmark
+    public List<OpinionUsuario> misOpinionesProyeccion() {
+        return servicio.opinionesUsuario(BaseDatosH2.usuario(7));
+    }
+}
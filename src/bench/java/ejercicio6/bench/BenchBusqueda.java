@@ -0,0 +1,116 @@
+package ejercicio6.bench;
+
+import ejercicio6.IndiceInvertido;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: BÚSQUEDA EN EL ÍNDICE INVERTIDO
+ * Opiniones sintéticas de 6 palabras sacadas de un vocabulario de 50.000 con reparto
+ * de Zipf (unas pocas muy frecuentes y muchas raras, con y sin tildes), indexadas como
+ * las reales. Solo el índice en memoria: sin base de datos.
+ * Al preparar imprime lo que tarda en construirse y lo que ocupa.
+ * Consultas:
+ * - rara: una palabra entera poco frecuente,
+ * - prefijo: el principio de una palabra de frecuencia media (varios términos),
+ * - dosPalabras: una frecuente y una rara (se interseca empezando por la rara),
+ * - frecuente: la palabra más repetida (su lista tiene millones de ids, pero solo se copian 20),
+ * - prefijoAmplio: 3 letras que comparten cientos de palabras, algunas frecuentes
+ *   (el peor caso: hay que juntar todas sus listas para saber cuántas son).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BenchBusqueda {
+
+    private static final int VOCABULARIO = 50_000;
+    private static final int PALABRAS_POR_OPINION = 6;
+    private static final int LIMITE = 20;
+
+    @Param({"1000000", "10000000"})
+    public int opiniones;
+
+    private IndiceInvertido indice;
+    private String[] palabras;
+
+    @Setup
+    public void preparar() {
+        palabras = new String[VOCABULARIO];
+        SplittableRandom azar = new SplittableRandom(42);
+        for (int i = 0; i < VOCABULARIO; i++) {
+            palabras[i] = palabra(i, azar);
+        }
+        // Zipf aproximado: rango = e^(U * ln(VOCABULARIO)) - 1
+        double log = Math.log(VOCABULARIO);
+
+        long inicio = System.nanoTime();
+        IndiceInvertido.Constructor constructor = new IndiceInvertido.Constructor();
+        StringBuilder texto = new StringBuilder();
+        for (int id = 1; id <= opiniones; id++) {
+            texto.setLength(0);
+            for (int k = 0; k < PALABRAS_POR_OPINION; k++) {
+                int rango = (int) Math.exp(azar.nextDouble() * log) - 1;
+                texto.append(palabras[rango]).append(' ');
+            }
+            constructor.anadir(id, texto.toString());
+        }
+        indice = constructor.construir();
+        System.out.printf("%n🔎 %d opiniones: %d términos, %d entradas, ~%.1f MB, construido en %d ms%n",
+                indice.getDocumentos(), indice.getTerminos(), indice.getPosiciones(),
+                indice.memoriaAproximada() / 1e6, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /** Palabra pronunciable y única (lleva el número dentro); una de cada 5 con tilde. */
+    private static String palabra(int i, SplittableRandom azar) {
+        String consonantes = "bcdfglmnprstv";
+        String vocales = i % 5 == 0 ? "áéíóú" : "aeiou";
+        StringBuilder palabra = new StringBuilder();
+        int n = i;
+        do {
+            palabra.append(consonantes.charAt(n % consonantes.length()));
+            n /= consonantes.length();
+            palabra.append(vocales.charAt(azar.nextInt(vocales.length())));
+        } while (n > 0);
+        return palabra.toString();
+    }
+
+    @Benchmark
+    public IndiceInvertido.Coincidencias rara() {
+        return indice.buscar(palabras[VOCABULARIO - 7], LIMITE);
+    }
+
+    @Benchmark
+    public IndiceInvertido.Coincidencias prefijo() {
+        return indice.buscar(palabras[1234].substring(0, 5), LIMITE);
+    }
+
+    @Benchmark
+    public IndiceInvertido.Coincidencias dosPalabras() {
+        return indice.buscar(palabras[3] + " " + palabras[VOCABULARIO - 7], LIMITE);
+    }
+
+    @Benchmark
+    public IndiceInvertido.Coincidencias prefijoAmplio() {
+        return indice.buscar(palabras[13 * 13].substring(0, 3), LIMITE);
+    }
+
+    @Benchmark
+    public IndiceInvertido.Coincidencias frecuente() {
+        return indice.buscar(palabras[0], LIMITE);
+    }
+}
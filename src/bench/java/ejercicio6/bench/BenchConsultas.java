@@ -0,0 +1,85 @@
+package ejercicio6.bench;
+
+import ejercicio6.FichaPelicula;
+import ejercicio6.OpinionUsuario;
+import ejercicio6.ejercicio6;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: LAS VISTAS DEL MENÚ
+ * Filmoteca completa, "mis opiniones" al iniciar sesión, cartelera de todos los cines
+ * y cartelera de un cine, sobre una H2 rellenada con {@link BaseDatosH2#rellenar}.
+ * Las vistas que imprimen escriben en una salida nula para medir solo consulta + formato.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchConsultas {
+
+    /** Para 10.000.000: -p opiniones=10000000 -jvmArgsAppend -Xmx8g */
+    @Param({"1000", "100000"})
+    public int opiniones;
+
+    private SessionFactory sessionFactory;
+    private Session session;
+    private final PrintStream salidaNula = new PrintStream(OutputStream.nullOutputStream());
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("consultas");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+        session = sessionFactory.openSession();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public void mostrarFilmoteca() {
+        ejercicio6.mostrarFilmoteca(session, salidaNula);
+    }
+
+    @Benchmark
+    public List<OpinionUsuario> iniciarSesion() {
+        List<OpinionUsuario> opinionesUsuario = ejercicio6.consultarOpinionesUsuario(session, BaseDatosH2.usuario(7));
+        session.clear();
+        return opinionesUsuario;
+    }
+
+    @Benchmark
+    public void mostrarTitulosCines() {
+        ejercicio6.mostrarTitulosCines(session, salidaNula);
+    }
+
+    @Benchmark
+    public List<FichaPelicula> mostrarTitulosCineConcreto() {
+        List<FichaPelicula> cartelera = ejercicio6.consultarCartelera(session, BaseDatosH2.cine(3));
+        session.clear();
+        return cartelera;
+    }
+}
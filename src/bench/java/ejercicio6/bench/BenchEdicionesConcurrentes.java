@@ -0,0 +1,182 @@
+package ejercicio6.bench;
+
+import ejercicio6.EscrituraDiferida;
+import ejercicio6.ResultadoEdicion;
+import ejercicio6.ServicioFilmoteca;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ⏱️ BENCHMARK: RÁFAGAS DE EDICIONES SOBRE LAS MISMAS OPINIONES
+ * Cada llamada lanza 200 hilos virtuales que suman 1 al número escrito en una de 5
+ * opiniones "calientes" (10 veces cada hilo, 2000 ediciones), y al final comprueba que
+ * la suma en la BD es el número de ediciones hechas:
+ * - directo / diferido: con {@link ServicioFilmoteca#editarOpinion} (versión + reintento),
+ * - sinVersion: control; leer y hacer UPDATE a pelo por JDBC, como antes de las versiones.
+ *   Aquí se pierden ediciones (se imprimen), para ver que la comprobación las detecta.
+ * Con versión, perder una sola es un error y el benchmark falla.
+ * Al terminar cada ronda imprime ediciones/s, intentos por edición y las que no se
+ * resolvieron (conflicto tras agotar los reintentos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchEdicionesConcurrentes {
+
+    private static final int[] CALIENTES = {1, 2, 3, 4, 5};
+    private static final int HILOS = 200;
+    private static final int EDICIONES_POR_HILO = 10;
+
+    @Param({"directo", "diferido", "sinVersion"})
+    public String modo;
+
+    private SessionFactory sessionFactory;
+    private ServicioFilmoteca servicio;
+    private File diario;
+
+    private final AtomicInteger hechas = new AtomicInteger();
+    private final AtomicInteger sinResolver = new AtomicInteger();
+    private final AtomicInteger intentos = new AtomicInteger();
+    private long inicio;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        sessionFactory = BaseDatosH2.crearSessionFactory("ediciones");
+        BaseDatosH2.rellenar(sessionFactory, 10_000);
+        if ("diferido".equals(modo)) {
+            diario = Files.createTempFile("ejercicio6-diario", ".bin").toFile();
+            System.setProperty(EscrituraDiferida.PROPIEDAD_DIARIO, diario.getPath());
+            EscrituraDiferida.arrancar(sessionFactory);
+        }
+        servicio = new ServicioFilmoteca(sessionFactory);
+    }
+
+    @Setup(Level.Iteration)
+    public void aCero() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int id : CALIENTES) {
+                session.createNativeQuery("UPDATE opiniones SET opinion = '0' WHERE id = :id")
+                        .setParameter("id", id)
+                        .executeUpdate();
+            }
+            session.getTransaction().commit();
+        }
+        hechas.set(0);
+        sinResolver.set(0);
+        intentos.set(0);
+        inicio = System.nanoTime();
+    }
+
+    @TearDown(Level.Iteration)
+    public void comprobar() {
+        long nanos = System.nanoTime() - inicio;
+        if (EscrituraDiferida.arrancado()) {
+            EscrituraDiferida.aplicarTodo();
+        }
+        int suma = 0;
+        try (Session session = sessionFactory.openSession()) {
+            for (int id : CALIENTES) {
+                suma += Integer.parseInt((String) session.createNativeQuery("SELECT opinion FROM opiniones WHERE id = :id")
+                        .setParameter("id", id)
+                        .uniqueResult());
+            }
+        }
+        int total = HILOS * EDICIONES_POR_HILO;
+        System.out.printf("%n✏️ %s: %.0f ediciones/s, %.2f intentos/edición, %d sin resolver, %d perdidas%n",
+                modo, total * 1e9 / nanos, intentos.get() / (double) total, sinResolver.get(), hechas.get() - suma);
+        if (!"sinVersion".equals(modo) && suma != hechas.get()) {
+            throw new IllegalStateException("❌ " + modo + ": se han perdido " + (hechas.get() - suma) + " ediciones");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        EscrituraDiferida.parar();
+        sessionFactory.close();
+        if (diario != null) {
+            diario.delete();
+        }
+    }
+
+    @Benchmark
+    public int rafaga() throws InterruptedException {
+        List<Thread> hilos = new ArrayList<>(HILOS);
+        for (int h = 0; h < HILOS; h++) {
+            int hilo = h;
+            hilos.add(Thread.ofVirtual().start(() -> {
+                for (int k = 0; k < EDICIONES_POR_HILO; k++) {
+                    editar(CALIENTES[(hilo + k) % CALIENTES.length]);
+                }
+            }));
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        return hechas.get();
+    }
+
+    private void editar(int id) {
+        if ("sinVersion".equals(modo)) {
+            editarSinVersion(id);
+            intentos.incrementAndGet();
+            hechas.incrementAndGet();
+            return;
+        }
+        ResultadoEdicion resultado = servicio.editarOpinion(id, texto -> String.valueOf(Integer.parseInt(texto) + 1));
+        intentos.addAndGet(resultado.intentos());
+        if (resultado.estado() == ResultadoEdicion.Estado.APLICADA) {
+            hechas.incrementAndGet();
+        } else {
+            sinResolver.incrementAndGet();
+        }
+    }
+
+    /** Leer y escribir en dos sentencias, sin mirar si otro ha escrito entre medias. */
+    private void editarSinVersion(int id) {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.doWork(conexion -> {
+                int valor;
+                try (PreparedStatement ps = conexion.prepareStatement("SELECT opinion FROM opiniones WHERE id = ?")) {
+                    ps.setInt(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        valor = Integer.parseInt(rs.getString(1));
+                    }
+                }
+                try (PreparedStatement ps = conexion.prepareStatement("UPDATE opiniones SET opinion = ? WHERE id = ?")) {
+                    ps.setString(1, String.valueOf(valor + 1));
+                    ps.setInt(2, id);
+                    ps.executeUpdate();
+                }
+            });
+            session.getTransaction().commit();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ejercicio6.bench;
+
+import ejercicio6.EscrituraDiferida;
+import ejercicio6.ServicioFilmoteca;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: MUCHOS USUARIOS MODIFICANDO OPINIONES A LA VEZ
+ * 32 hilos llamando a {@link ServicioFilmoteca#modificarOpinion} sobre opiniones al azar:
+ * - directo: lectura + UPDATE + commit en cada llamada,
+ * - diferido: lectura + apunte en el diario con force (agrupado entre hilos); la BD la
+ *   actualiza en lotes el hilo de {@link EscrituraDiferida}.
+ * El diario va a un archivo temporal. En H2 en memoria el commit no toca disco, así que
+ * la diferencia con MySQL (commit con fsync del redo log) sería mayor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Threads(32)
+@Fork(1)
+public class BenchEscrituraDiferida {
+
+    @Param({"100000"})
+    public int opiniones;
+
+    @Param({"directo", "diferido"})
+    public String modo;
+
+    private SessionFactory sessionFactory;
+    private ServicioFilmoteca servicio;
+    private File diario;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        sessionFactory = BaseDatosH2.crearSessionFactory("escrituras");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+        if ("diferido".equals(modo)) {
+            diario = Files.createTempFile("ejercicio6-diario", ".bin").toFile();
+            System.setProperty(EscrituraDiferida.PROPIEDAD_DIARIO, diario.getPath());
+            EscrituraDiferida.arrancar(sessionFactory);
+        }
+        servicio = new ServicioFilmoteca(sessionFactory);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        EscrituraDiferida.parar();
+        sessionFactory.close();
+        if (diario != null) {
+            diario.delete();
+        }
+    }
+
+    @Benchmark
+    public boolean modificarOpinion() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(opiniones);
+        return servicio.modificarOpinion(id, ServicioFilmoteca.CUALQUIER_VERSION, "Cambiada " + System.nanoTime()).hecha();
+    }
+}
@@ -0,0 +1,60 @@
+package ejercicio6.bench;
+
+import ejercicio6.FabricaSesiones;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: CONSTRUIR LA SESSIONFACTORY EN UNA JVM RECIÉN ARRANCADA
+ * Una sola medida por JVM (lo que pasa al arrancar el programa), en 5 JVM distintas:
+ * - sinCache: los .hbm.xml se validan y procesan como siempre,
+ * - conCache: con -Dejercicio6.mapeos.cache; la JVM de calentamiento deja los .bin
+ *   y las medidas los deserializan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 5, warmups = 1)
+public class BenchFabricaSesiones {
+
+    @Param({"sinCache", "conCache"})
+    public String mapeos;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        if ("conCache".equals(mapeos)) {
+            File carpeta = new File(System.getProperty("java.io.tmpdir"), "ejercicio6-bench-mapeos");
+            System.setProperty(FabricaSesiones.PROPIEDAD_CACHE_MAPEOS, carpeta.getPath());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public SessionFactory crear() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("fabrica");
+        return sessionFactory;
+    }
+}
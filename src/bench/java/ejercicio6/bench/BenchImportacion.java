@@ -0,0 +1,91 @@
+package ejercicio6.bench;
+
+import ejercicio6.ArchivoCSV;
+import ejercicio6.ejercicio6;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: insertarDatosPeliculas / insertarDatosOpiniones / insertarDatosCines
+ * Cada iteración parte de tablas vacías (con las películas ya cargadas si el archivo
+ * depende de ellas) y mide UNA importación completa del CSV sintético.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchImportacion {
+
+    @Param({"1000", "100000"})
+    public int opiniones;
+
+    @Param({"PELICULAS", "OPINIONES", "CINES"})
+    public ArchivoCSV archivo;
+
+    private SessionFactory sessionFactory;
+    private Session session;
+
+    /**
+     * Los insertarDatos* leen de ejercicio6.RUTA_RECURSOS, que se fija al cargar la clase:
+     * la propiedad tiene que estar puesta antes de la primera llamada.
+     */
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        File carpeta = DatosCSV.generar(DatosCSV.carpeta(opiniones), opiniones);
+        System.setProperty("ejercicio6.recursos", carpeta.getPath());
+        if (!new File(ejercicio6.RUTA_RECURSOS).equals(carpeta)) {
+            throw new IllegalStateException("ejercicio6 ya estaba cargada con otra ruta: " + ejercicio6.RUTA_RECURSOS);
+        }
+        sessionFactory = BaseDatosH2.crearSessionFactory("importacion");
+        session = sessionFactory.openSession();
+    }
+
+    @Setup(Level.Iteration)
+    public void vaciarTablas() {
+        session.beginTransaction();
+        session.createNativeQuery("DELETE FROM opiniones").executeUpdate();
+        session.createNativeQuery("DELETE FROM cines").executeUpdate();
+        session.createNativeQuery("DELETE FROM peliculas").executeUpdate();
+        session.getTransaction().commit();
+        session.clear();
+        sessionFactory.getCache().evictAllRegions();
+
+        if (archivo.dependeDePeliculas()) {
+            ejercicio6.insertarDatosPeliculas(session);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public void insertarDatos() {
+        switch (archivo) {
+            case PELICULAS -> ejercicio6.insertarDatosPeliculas(session);
+            case OPINIONES -> ejercicio6.insertarDatosOpiniones(session);
+            case CINES -> ejercicio6.insertarDatosCines(session);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ejercicio6.bench;
+
+import ejercicio6.Opinion;
+import ejercicio6.Pelicula;
+import ejercicio6.ejercicio6;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ⏱️ BENCHMARK: "MIS OPINIONES" AL INICIAR SESIÓN
+ * Compara el camino antiguo (cargar películas y opiniones enteras y filtrar en Java
+ * con un bucle anidado) con la consulta filtrada por usuario.
+ * Tamaño con -Dbench.opiniones (por defecto 1.000.000) y repeticiones con -Dbench.repeticiones.
+ */
+public class BenchIniciarSesion {
+
+    public static void main(String[] args) {
+        int opiniones = Integer.getInteger("bench.opiniones", 1_000_000);
+        int repeticiones = Integer.getInteger("bench.repeticiones", 3);
+
+        try (SessionFactory sessionFactory = BaseDatosH2.crearSessionFactory("login")) {
+            System.out.println("🎲 Generando " + opiniones + " opiniones...");
+            BaseDatosH2.rellenar(sessionFactory, opiniones);
+
+            String usuario = BaseDatosH2.usuario(7);
+            try (Session session = sessionFactory.openSession()) {
+                long[] antiguo = new long[repeticiones];
+                long[] nuevo = new long[repeticiones];
+                int encontradasAntiguo = 0;
+                int encontradasNuevo = 0;
+
+                for (int i = 0; i < repeticiones; i++) {
+                    long inicio = System.nanoTime();
+                    encontradasAntiguo = caminoAntiguo(session, usuario);
+                    antiguo[i] = System.nanoTime() - inicio;
+
+                    inicio = System.nanoTime();
+                    encontradasNuevo = ejercicio6.consultarOpinionesUsuario(session, usuario).size();
+                    nuevo[i] = System.nanoTime() - inicio;
+                }
+
+                System.out.println("👤 " + usuario + ": " + encontradasAntiguo + " opiniones (antiguo) / "
+                        + encontradasNuevo + " (nuevo)");
+                System.out.println("🐢 Camino antiguo: mediana " + mediana(antiguo) + " ms");
+                System.out.println("🚀 Consulta filtrada: mediana " + mediana(nuevo) + " ms");
+            }
+        }
+    }
+
+    /**
+     * 🐢 Réplica del iniciarSesion original: todo a memoria y bucle película × opinión.
+     */
+    static int caminoAntiguo(Session session, String usuario) {
+        session.beginTransaction();
+        List<Pelicula> peliculas = session.createQuery("FROM ejercicio6.Pelicula", Pelicula.class).list();
+        List<Opinion> opiniones = session.createQuery("FROM ejercicio6.Opinion o JOIN FETCH o.pelicula", Opinion.class).list();
+
+        List<String> encontradas = new ArrayList<>();
+        for (Pelicula p : peliculas) {
+            for (Opinion o : opiniones) {
+                if (o.getUsuario().equals(usuario) && o.getPelicula().getId() == p.getId()) {
+                    encontradas.add(o.getOpinion());
+                }
+            }
+        }
+        session.getTransaction().commit();
+        session.clear();
+        return encontradas.size();
+    }
+
+    static long mediana(long[] nanos) {
+        long[] copia = nanos.clone();
+        Arrays.sort(copia);
+        return copia[copia.length / 2] / 1_000_000;
+    }
+}
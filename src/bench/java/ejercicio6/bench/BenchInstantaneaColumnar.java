@@ -0,0 +1,132 @@
+package ejercicio6.bench;
+
+import ejercicio6.InstantaneaColumnar;
+import ejercicio6.InstantaneaColumnar.Columna;
+import ejercicio6.InstantaneaColumnar.Tabla;
+import ejercicio6.Opinion;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.ref.Reference;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: INFORMES CON LA INSTANTÁNEA EN COLUMNAS
+ * Opiniones por director (todas, y solo las de películas desde 2000) y películas por
+ * año, recorriendo las columnas de {@link InstantaneaColumnar} frente al GROUP BY
+ * equivalente en H2.
+ * Al preparar imprime lo que ocupa la instantánea y lo que ocupan las mismas opiniones
+ * cargadas como entidades con su película (memoria usada antes y después, tras un GC:
+ * aproximado, pero la diferencia es de un orden de magnitud).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BenchInstantaneaColumnar {
+
+    @Param({"100000", "1000000"})
+    public int opiniones;
+
+    private SessionFactory sessionFactory;
+    private InstantaneaColumnar instantanea;
+    private InstantaneaColumnar.Consulta desde2000;
+    private int llamadas;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("columnas");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+
+        // La primera construcción calienta Hibernate (planes de consulta...): se mide la segunda,
+        // con la primera aún viva para que no se libere en medio
+        InstantaneaColumnar.construir(sessionFactory);
+        InstantaneaColumnar primera = InstantaneaColumnar.actual();
+        long antes = memoriaUsada();
+        InstantaneaColumnar.construir(sessionFactory);
+        instantanea = InstantaneaColumnar.actual();
+        long columnas = memoriaUsada() - antes;
+        Reference.reachabilityFence(primera);
+        System.out.printf("%n%s%n🧊 Medida con el GC: %.1f MB, %.1f bytes por opinión%n", InstantaneaColumnar.resumen(),
+                columnas / 1e6, columnas / (double) opiniones);
+
+        antes = memoriaUsada();
+        try (Session session = sessionFactory.openSession()) {
+            List<Opinion> entidades = session.createQuery("FROM ejercicio6.Opinion o JOIN FETCH o.pelicula", Opinion.class).list();
+            long grafo = memoriaUsada() - antes;
+            System.out.printf("🐘 %d opiniones como entidades (con su película): %.1f MB, %.1f bytes por opinión%n",
+                    entidades.size(), grafo / 1e6, grafo / (double) entidades.size());
+        }
+
+        desde2000 = instantanea.consulta(Tabla.OPINIONES).donde(Columna.ANYO, anyo -> anyo >= 2000);
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    /** 2000 o 2001: H2 reutiliza el resultado de una consulta idéntica con los mismos parámetros. */
+    private int anyo() {
+        return 2000 + (llamadas++ & 1);
+    }
+
+    @Benchmark
+    public List<InstantaneaColumnar.Recuento> opinionesPorDirectorColumnas() {
+        return instantanea.consulta(Tabla.OPINIONES).contarPor(Columna.DIRECTOR);
+    }
+
+    @Benchmark
+    public List<InstantaneaColumnar.Recuento> opinionesPorDirectorDesde2000Columnas() {
+        return desde2000.contarPor(Columna.DIRECTOR);
+    }
+
+    @Benchmark
+    public List<InstantaneaColumnar.Recuento> peliculasPorAnyoColumnas() {
+        return instantanea.consulta(Tabla.PELICULAS).contarPor(Columna.ANYO);
+    }
+
+    @Benchmark
+    public List<Object[]> opinionesPorDirectorDesdeGroupBy() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("SELECT p.director, COUNT(o) FROM ejercicio6.Opinion o JOIN o.pelicula p "
+                            + "WHERE p.anyo >= :anyo GROUP BY p.director ORDER BY COUNT(o) DESC, p.director", Object[].class)
+                    .setParameter("anyo", anyo())
+                    .list();
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> peliculasPorAnyoGroupBy() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery("SELECT p.anyo, COUNT(p) FROM ejercicio6.Pelicula p WHERE p.anyo >= :desde "
+                            + "GROUP BY p.anyo ORDER BY COUNT(p) DESC, p.anyo", Object[].class)
+                    .setParameter("desde", anyo() - 2000)
+                    .list();
+        }
+    }
+}
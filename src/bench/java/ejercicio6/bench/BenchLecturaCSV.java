@@ -0,0 +1,88 @@
+package ejercicio6.bench;
+
+import ejercicio6.ArchivoCSV;
+import ejercicio6.CargadorCSV;
+import ejercicio6.LectorCSV;
+import ejercicio6.ResolutorPeliculas;
+import ejercicio6.ejercicio6;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: LECTURA DE opiniones.csv
+ * leerArchivoCSV (todo a una lista) frente al recorrido en streaming de CargadorCSV
+ * y al de LectorCSV sin convertir los campos a String. parsearOpiniones es lo que hace
+ * cada parseador de la importación: recorrer y convertir cada línea en su Opinion con
+ * {@link ArchivoCSV#mapeo} (los títulos se resuelven con las películas cargadas en H2 al
+ * preparar; la medida no toca la base de datos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchLecturaCSV {
+
+    /** 10.000.000 también vale (-p opiniones=10000000), pero ocupa ~700 MB en disco. */
+    @Param({"1000", "100000"})
+    public int opiniones;
+
+    private File archivo;
+    private SessionFactory sessionFactory;
+    private ResolutorPeliculas peliculas;
+
+    @Setup
+    public void preparar() throws IOException {
+        File carpeta = DatosCSV.generar(DatosCSV.carpeta(opiniones), opiniones);
+        archivo = new File(carpeta, "opiniones.csv");
+        sessionFactory = BaseDatosH2.crearSessionFactory("lectura");
+        try (Session session = sessionFactory.openSession()) {
+            CargadorCSV.cargar(session, new File(carpeta, "peliculas.csv"), ArchivoCSV.PELICULAS.mapeo(null));
+            peliculas = ResolutorPeliculas.cargar(session);
+        }
+    }
+
+    @TearDown
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int leerArchivoCSV() {
+        return ejercicio6.leerArchivoCSV(archivo).size();
+    }
+
+    @Benchmark
+    public void recorrerArchivoCSV(Blackhole agujero) throws IOException {
+        CargadorCSV.recorrerArchivoCSV(archivo, agujero::consume);
+    }
+
+    @Benchmark
+    public void parsearOpiniones(Blackhole agujero) throws IOException {
+        var mapeo = ArchivoCSV.OPINIONES.mapeo(peliculas);
+        CargadorCSV.recorrerArchivoCSV(archivo, linea -> agujero.consume(mapeo.apply(linea)));
+    }
+
+    @Benchmark
+    public void lectorCSV(Blackhole agujero) throws IOException {
+        LectorCSV.recorrer(archivo, registro -> agujero.consume(registro.longitudCampo(registro.numCampos() - 1)));
+    }
+}
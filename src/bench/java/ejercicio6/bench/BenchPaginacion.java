@@ -0,0 +1,91 @@
+package ejercicio6.bench;
+
+import ejercicio6.LineaFilmoteca;
+import ejercicio6.Pagina;
+import ejercicio6.ServicioFilmoteca;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: PÁGINA N DE LA FILMOTECA, KEYSET FRENTE A OFFSET
+ * "keyset" pide la página "profundidad" a partir del token de la anterior (lo que hace el
+ * menú al pulsar Enter); "offset" pide la misma página con setFirstResult.
+ * Con keyset el tiempo no depende de la profundidad; con OFFSET crece con ella.
+ * Se alterna entre la página N y la N+1 porque H2 reutiliza el resultado de la última
+ * ejecución si se repite la misma consulta con los mismos parámetros.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BenchPaginacion {
+
+    static final int TAMANO = 20;
+
+    @Param({"100000"})
+    public int opiniones;
+
+    /** Página que se pide (0 = la primera). */
+    @Param({"0", "1000", "4000"})
+    public int profundidad;
+
+    private SessionFactory sessionFactory;
+    private ServicioFilmoteca servicio;
+    private final String[] tokens = new String[2];
+    private int llamada;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        sessionFactory = BaseDatosH2.crearSessionFactory("paginacion");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+        servicio = new ServicioFilmoteca(sessionFactory);
+        // Se recorren las páginas anteriores una vez para tener el token de la que se mide
+        String token = null;
+        for (int i = 0; i <= profundidad; i++) {
+            tokens[0] = token;
+            token = servicio.paginaFilmoteca(token, TAMANO).siguiente();
+        }
+        tokens[1] = token;
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Pagina<LineaFilmoteca> keyset() {
+        return servicio.paginaFilmoteca(tokens[llamada++ & 1], TAMANO);
+    }
+
+    @Benchmark
+    public List<LineaFilmoteca> offset() {
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            return session.createQuery(
+                            "SELECT new ejercicio6.LineaFilmoteca(p.id, p.titulo, p.director, p.anyo, o.id, o.usuario, o.opinion, o.version) "
+                                    + "FROM ejercicio6.Pelicula p LEFT JOIN p.opiniones o ORDER BY p.id, o.id", LineaFilmoteca.class)
+                    .setFirstResult((profundidad + (llamada++ & 1)) * TAMANO)
+                    .setMaxResults(TAMANO)
+                    .list();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ejercicio6.bench;
+
+import ejercicio6.ServicioFilmoteca;
+import ejercicio6.ServidorHttp;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏱️ BENCHMARK: SERVIDOR HTTP CON MUCHOS USUARIOS A LA VEZ
+ * 200 clientes (-t para cambiarlo) pidiendo a la vez opiniones de usuarios y carteleras
+ * al {@link ServidorHttp} sobre una H2 rellenada con {@link BaseDatosH2#rellenar}.
+ * En modo SampleTime JMH da los percentiles vistos por el cliente; al terminar se
+ * imprimen también los medidos por el servidor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(200)
+@Fork(1)
+public class BenchServidorHttp {
+
+    @Param({"100000"})
+    public int opiniones;
+
+    private SessionFactory sessionFactory;
+    private ServidorHttp servidor;
+    private HttpClient cliente;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        sessionFactory = BaseDatosH2.crearSessionFactory("servidor");
+        BaseDatosH2.rellenar(sessionFactory, opiniones);
+        servidor = ServidorHttp.arrancar(new ServicioFilmoteca(sessionFactory), 0);
+        cliente = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://127.0.0.1:" + servidor.puerto();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        servidor.parar();
+        servidor.imprimirLatencias(System.out);
+        cliente.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public int opinionesUsuario() throws Exception {
+        int usuario = ThreadLocalRandom.current().nextInt(Math.max(1, opiniones / BaseDatosH2.OPINIONES_POR_USUARIO));
+        return pedir("/opiniones?usuario=" + URLEncoder.encode(BaseDatosH2.usuario(usuario), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public int carteleraCine() throws Exception {
+        int cine = ThreadLocalRandom.current().nextInt(BaseDatosH2.NUMERO_CINES);
+        return pedir("/cartelera?cine=" + URLEncoder.encode(BaseDatosH2.cine(cine), StandardCharsets.UTF_8));
+    }
+
+    private int pedir(String ruta) throws Exception {
+        HttpResponse<Void> respuesta = cliente.send(HttpRequest.newBuilder(URI.create(base + ruta)).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (respuesta.statusCode() != 200) {
+            throw new IllegalStateException(ruta + " → " + respuesta.statusCode());
+        }
+        return respuesta.statusCode();
+    }
+}
@@ -0,0 +1,60 @@
+package ejercicio6.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * 🎲 CSV SINTÉTICOS
+ * Escribe peliculas.csv, opiniones.csv y cines.csv con el mismo reparto que
+ * {@link BaseDatosH2#rellenar} (1 película cada 200 opiniones, 50 opiniones por usuario,
+ * 50 cines con 20 películas), en el formato que esperan los insertarDatos*.
+ */
+public class DatosCSV {
+
+    /**
+     * 📂 GENERAR LOS TRES ARCHIVOS EN "carpeta"
+     * Si ya existen con el mismo número de opiniones no se vuelven a escribir.
+     */
+    public static File generar(File carpeta, int opiniones) throws IOException {
+        int peliculas = Math.max(BaseDatosH2.PELICULAS_POR_CINE, opiniones / BaseDatosH2.OPINIONES_POR_PELICULA);
+        int usuarios = Math.max(1, opiniones / BaseDatosH2.OPINIONES_POR_USUARIO);
+
+        File marca = new File(carpeta, ".opiniones-" + opiniones);
+        if (marca.exists()) {
+            return carpeta;
+        }
+        Files.createDirectories(carpeta.toPath());
+
+        try (BufferedWriter csv = Files.newBufferedWriter(new File(carpeta, "peliculas.csv").toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= peliculas; i++) {
+                csv.write(BaseDatosH2.titulo(i) + ";Director " + (i % 500) + ";" + (1950 + i % 75));
+                csv.newLine();
+            }
+        }
+        try (BufferedWriter csv = Files.newBufferedWriter(new File(carpeta, "opiniones.csv").toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 1; i <= opiniones; i++) {
+                csv.write(BaseDatosH2.titulo(1 + (int) ((i * 2654435761L) % peliculas)) + ";"
+                        + BaseDatosH2.usuario(i % usuarios) + ";Opinión número " + i + " sobre una película clásica");
+                csv.newLine();
+            }
+        }
+        try (BufferedWriter csv = Files.newBufferedWriter(new File(carpeta, "cines.csv").toPath(), StandardCharsets.UTF_8)) {
+            for (int c = 0; c < BaseDatosH2.NUMERO_CINES; c++) {
+                for (int p = 0; p < BaseDatosH2.PELICULAS_POR_CINE; p++) {
+                    csv.write(BaseDatosH2.cine(c) + ";" + BaseDatosH2.titulo(1 + (c * 7 + p) % peliculas));
+                    csv.newLine();
+                }
+            }
+        }
+        Files.createFile(marca.toPath());
+        return carpeta;
+    }
+
+    /** Carpeta temporal fija por tamaño, para reutilizar los archivos entre forks. */
+    public static File carpeta(int opiniones) {
+        return new File(System.getProperty("java.io.tmpdir"), "ejercicio6-bench-" + opiniones);
+    }
+}
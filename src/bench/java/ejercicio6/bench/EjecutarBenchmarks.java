@@ -0,0 +1,38 @@
+package ejercicio6.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 🏁 LANZADOR DE LOS BENCHMARKS JMH
+ * Acepta las mismas opciones que JMH (filtro por nombre, -p, -f, -wi, -i, -prof...),
+ * pero por defecto guarda los resultados en JSON en target/jmh/resultados-FECHA.json
+ * para poder comparar versiones:
+ *   mvn -Pbench compile exec:exec@jmh -Djmh.args="BenchConsultas -p opiniones=100000"
+ */
+public class EjecutarBenchmarks {
+
+    static final File CARPETA_RESULTADOS = new File("target/jmh");
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions lineaDeComandos = new CommandLineOptions(args);
+        OptionsBuilder opciones = new OptionsBuilder();
+        opciones.parent(lineaDeComandos);
+
+        if (!lineaDeComandos.getResultFormat().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON);
+        }
+        if (!lineaDeComandos.getResult().hasValue()) {
+            CARPETA_RESULTADOS.mkdirs();
+            String fecha = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            opciones.result(new File(CARPETA_RESULTADOS, "resultados-" + fecha + ".json").getPath());
+        }
+        new Runner(opciones.build()).run();
+    }
+}
@@ -0,0 +1,386 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * 📈 RECUENTOS POR PELÍCULA Y POR USUARIO
+ * Cuántas opiniones tiene cada película, de cuántos usuarios distintos y cuándo cambió
+ * por última vez, y cuántas opiniones ha escrito cada usuario. Se guardan en memoria y
+ * se mantienen al día con cada cambio, así que "las 10 películas con más opiniones" o
+ * "los 10 usuarios más activos" son leer los 10 primeros de un TreeSet ordenado por
+ * recuento, sin recorrer la tabla opiniones.
+ * - Tras cada importación se recalculan en segundo plano con una pasada por la tabla
+ *   (las importaciones insertan en bloque, muchas veces con JDBC directo).
+ * - {@link ServicioFilmoteca#borrarOpinion} resta y {@link ServicioFilmoteca#modificarOpinion}
+ *   actualiza la fecha. Si pasa durante un recálculo, el borrado se repite sobre el nuevo
+ *   solo si la pasada llegó a ver la opinión (si no, ya no estaba y se restaría dos veces).
+ * Las opiniones no tienen fecha en la BD: tras un recálculo la fecha es la del recálculo.
+ */
+public class Agregados {
+
+    private static final int TAMANO_FETCH = 10_000;
+
+    /** Recuentos de una película (copia: no cambia aunque cambien los de verdad). */
+    public record ContadoresPelicula(int peliculaId, int opiniones, int usuarios, long actualizada) {
+    }
+
+    private static volatile Almacen actual = new Almacen();
+    private static volatile boolean listo;
+
+    /** Cambios llegados durante el recálculo en curso (null si no hay ninguno). */
+    private static List<Cambio> pendientes;
+    private static final Object CERROJO = new Object();
+
+    /** Un cambio que hay que repetir sobre el almacén nuevo; "vistas" = opiniones que leyó la pasada. */
+    private interface Cambio {
+        void aplicar(Almacen almacen, BitSet vistas);
+    }
+
+    /** 🧵 Recalcular en un hilo aparte (daemon); mientras tanto se siguen usando los anteriores. */
+    public static void recalcularEnSegundoPlano(SessionFactory sessionFactory) {
+        Thread.ofPlatform().name("agregados").daemon().start(() -> {
+            try {
+                recalcular(sessionFactory);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudieron calcular los recuentos de opiniones: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 🧮 RECALCULAR DESDE LA BD
+     * Una pasada con cursor de solo avance por (id, película, usuario) de todas las opiniones.
+     */
+    public static synchronized void recalcular(SessionFactory sessionFactory) {
+        recalcular((nuevo, vistas, ahora) -> {
+            long filas = 0;
+            try (Session session = sessionFactory.openSession();
+                 ScrollableResults resultados = session.createQuery(
+                                 "SELECT o.id, o.pelicula.id, o.usuario FROM ejercicio6.Opinion o")
+                         .setFetchSize(TAMANO_FETCH)
+                         .setReadOnly(true)
+                         .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (resultados.next()) {
+                    Object[] fila = resultados.get();
+                    vistas.set((Integer) fila[0]);
+                    nuevo.anadir((Integer) fila[1], (String) fila[2], ahora);
+                    filas++;
+                }
+            }
+            Metricas.filasLeidas(filas);
+        });
+    }
+
+    /** 📦 Igual, pero con las opiniones de la instantánea en disco en vez de leer la BD. */
+    static synchronized void recalcular(ArchivoInstantanea.Contenido contenido) {
+        recalcular((nuevo, vistas, ahora) -> {
+            InstantaneaColumnar.Columnas columnas = contenido.columnas();
+            int[] ids = contenido.opinionIds();
+            for (int fila = 0; fila < ids.length; fila++) {
+                vistas.set(ids[fila]);
+                nuevo.anadir(columnas.peliculaIds()[columnas.opinionPelicula()[fila]],
+                        columnas.textosUsuario()[columnas.opinionUsuario()[fila]], ahora);
+            }
+        });
+    }
+
+    /** Mete en "nuevo" todas las opiniones y marca en "vistas" sus ids. */
+    private interface Pasada {
+        void leer(Almacen nuevo, BitSet vistas, long ahora);
+    }
+
+    private static void recalcular(Pasada pasada) {
+        synchronized (CERROJO) {
+            pendientes = new ArrayList<>();
+        }
+        try {
+            Metricas.medirAccion("recalcularAgregados", () -> {
+                long ahora = System.currentTimeMillis();
+                Almacen nuevo = new Almacen();
+                BitSet vistas = new BitSet();
+                pasada.leer(nuevo, vistas, ahora);
+                synchronized (CERROJO) {
+                    for (Cambio cambio : pendientes) {
+                        cambio.aplicar(nuevo, vistas);
+                    }
+                    actual = nuevo;
+                    listo = true;
+                }
+            });
+        } finally {
+            synchronized (CERROJO) {
+                pendientes = null;
+            }
+        }
+    }
+
+    /** 🗑️ Se ha borrado la opinión "opinionId" de "usuario" sobre "peliculaId". */
+    public static void opinionBorrada(int opinionId, int peliculaId, String usuario) {
+        long ahora = System.currentTimeMillis();
+        cambiar((almacen, vistas) -> {
+            if (vistas == null || vistas.get(opinionId)) {
+                almacen.quitar(peliculaId, usuario, ahora);
+            }
+        });
+    }
+
+    /** ✍️ Ha cambiado el texto de una opinión de "peliculaId" (solo cambia la fecha). */
+    public static void opinionModificada(int peliculaId) {
+        long ahora = System.currentTimeMillis();
+        cambiar((almacen, vistas) -> almacen.tocar(peliculaId, ahora));
+    }
+
+    private static void cambiar(Cambio cambio) {
+        synchronized (CERROJO) {
+            cambio.aplicar(actual, null);
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+        }
+    }
+
+    /** 🏆 Las "n" películas con más opiniones (empate: la de menor id). */
+    public static List<ContadoresPelicula> peliculasMasOpinadas(int n) {
+        return actual.primerasPeliculas(n);
+    }
+
+    /** 🏆 Los "n" usuarios con más opiniones (empate: por nombre). */
+    public static List<EstadisticaUsuario> usuariosMasActivos(int n) {
+        return actual.primerosUsuarios(n);
+    }
+
+    /** Recuentos de una película (null si no tiene opiniones). */
+    public static ContadoresPelicula pelicula(int peliculaId) {
+        return actual.pelicula(peliculaId);
+    }
+
+    /** false hasta que termina el primer recálculo. */
+    public static boolean listo() {
+        return listo;
+    }
+
+    /**
+     * 🗄️ LOS RECUENTOS
+     * Todo bajo el cerrojo del objeto: los cambios son de uno en uno y pedir los
+     * primeros "n" es recorrer "n" elementos.
+     * Para los usuarios distintos de cada película se cuenta cuántas opiniones tiene cada
+     * par (película, usuario), con el usuario como número para no guardar un String por par.
+     */
+    private static final class Almacen {
+
+        private final Map<Integer, PorPelicula> peliculas = new HashMap<>();
+        private final Map<String, PorUsuario> usuarios = new HashMap<>();
+        private final ContadorPares pares = new ContadorPares();
+        private int siguienteUsuario = 1;
+
+        private final TreeSet<PorPelicula> rankingPeliculas = new TreeSet<>(
+                Comparator.comparingInt((PorPelicula p) -> -p.opiniones).thenComparingInt(p -> p.peliculaId));
+        private final TreeSet<PorUsuario> rankingUsuarios = new TreeSet<>(
+                Comparator.comparingInt((PorUsuario u) -> -u.opiniones).thenComparing(u -> u.usuario));
+
+        synchronized void anadir(int peliculaId, String usuario, long ahora) {
+            PorUsuario u = usuarios.get(usuario);
+            if (u == null) {
+                u = new PorUsuario(usuario, siguienteUsuario++);
+                usuarios.put(usuario, u);
+            } else {
+                rankingUsuarios.remove(u);
+            }
+            u.opiniones++;
+            rankingUsuarios.add(u);
+
+            PorPelicula p = peliculas.get(peliculaId);
+            if (p == null) {
+                p = new PorPelicula(peliculaId);
+                peliculas.put(peliculaId, p);
+            } else {
+                rankingPeliculas.remove(p);
+            }
+            p.opiniones++;
+            if (pares.sumar(par(peliculaId, u), 1) == 1) {
+                p.usuarios++;
+            }
+            p.actualizada = ahora;
+            rankingPeliculas.add(p);
+        }
+
+        synchronized void quitar(int peliculaId, String usuario, long ahora) {
+            PorUsuario u = usuarios.get(usuario);
+            PorPelicula p = peliculas.get(peliculaId);
+            if (u == null || p == null) {
+                return;
+            }
+            rankingUsuarios.remove(u);
+            if (--u.opiniones == 0) {
+                usuarios.remove(usuario);
+            } else {
+                rankingUsuarios.add(u);
+            }
+
+            rankingPeliculas.remove(p);
+            if (pares.sumar(par(peliculaId, u), -1) == 0) {
+                p.usuarios--;
+            }
+            if (--p.opiniones == 0) {
+                peliculas.remove(peliculaId);
+            } else {
+                p.actualizada = ahora;
+                rankingPeliculas.add(p);
+            }
+        }
+
+        synchronized void tocar(int peliculaId, long ahora) {
+            PorPelicula p = peliculas.get(peliculaId);
+            if (p != null) {
+                p.actualizada = ahora;
+            }
+        }
+
+        synchronized List<ContadoresPelicula> primerasPeliculas(int n) {
+            List<ContadoresPelicula> primeras = new ArrayList<>(Math.min(n, rankingPeliculas.size()));
+            Iterator<PorPelicula> it = rankingPeliculas.iterator();
+            while (primeras.size() < n && it.hasNext()) {
+                primeras.add(it.next().copia());
+            }
+            return primeras;
+        }
+
+        synchronized List<EstadisticaUsuario> primerosUsuarios(int n) {
+            List<EstadisticaUsuario> primeros = new ArrayList<>(Math.min(n, rankingUsuarios.size()));
+            Iterator<PorUsuario> it = rankingUsuarios.iterator();
+            while (primeros.size() < n && it.hasNext()) {
+                PorUsuario u = it.next();
+                primeros.add(new EstadisticaUsuario(u.usuario, u.opiniones));
+            }
+            return primeros;
+        }
+
+        synchronized ContadoresPelicula pelicula(int peliculaId) {
+            PorPelicula p = peliculas.get(peliculaId);
+            return p == null ? null : p.copia();
+        }
+
+        private static long par(int peliculaId, PorUsuario u) {
+            return (long) peliculaId << 32 | u.numero;
+        }
+    }
+
+    private static final class PorPelicula {
+        final int peliculaId;
+        int opiniones;
+        int usuarios;
+        long actualizada;
+
+        PorPelicula(int peliculaId) {
+            this.peliculaId = peliculaId;
+        }
+
+        ContadoresPelicula copia() {
+            return new ContadoresPelicula(peliculaId, opiniones, usuarios, actualizada);
+        }
+    }
+
+    private static final class PorUsuario {
+        final String usuario;
+        final int numero;
+        int opiniones;
+
+        PorUsuario(String usuario, int numero) {
+            this.usuario = usuario;
+            this.numero = numero;
+        }
+    }
+
+    /**
+     * 🔢 CONTADOR POR PAR (película, usuario)
+     * Tabla de direccionamiento abierto sobre long[] / int[] (como
+     * {@link ImportacionIncremental.IndiceClaves}); al llegar a 0 el par se quita
+     * desplazando hacia atrás los que venían detrás, sin dejar marcas de borrado.
+     * La clave 0 significa hueco libre (los ids de película empiezan en 1).
+     */
+    static final class ContadorPares {
+        private long[] claves = new long[1 << 10];
+        private int[] valores = new int[1 << 10];
+        private int tamano;
+
+        /** Suma "delta" al par y devuelve el valor nuevo (0 = el par ya no está). */
+        int sumar(long clave, int delta) {
+            int i = hueco(claves, clave);
+            if (claves[i] == 0) {
+                if (delta <= 0) {
+                    return 0;
+                }
+                claves[i] = clave;
+                valores[i] = delta;
+                if (++tamano * 4 >= claves.length * 3) {
+                    crecer();
+                }
+                return delta;
+            }
+            int valor = valores[i] + delta;
+            if (valor > 0) {
+                valores[i] = valor;
+                return valor;
+            }
+            quitar(i);
+            return 0;
+        }
+
+        private void quitar(int i) {
+            int mascara = claves.length - 1;
+            int libre = i;
+            for (int j = (i + 1) & mascara; claves[j] != 0; j = (j + 1) & mascara) {
+                int ideal = posicion(claves[j], mascara);
+                // Se mueve si el hueco libre queda entre su posición ideal y donde está
+                if (((j - ideal) & mascara) >= ((j - libre) & mascara)) {
+                    claves[libre] = claves[j];
+                    valores[libre] = valores[j];
+                    libre = j;
+                }
+            }
+            claves[libre] = 0;
+            valores[libre] = 0;
+            tamano--;
+        }
+
+        private void crecer() {
+            long[] viejasClaves = claves;
+            int[] viejosValores = valores;
+            claves = new long[viejasClaves.length * 2];
+            valores = new int[viejasClaves.length * 2];
+            for (int i = 0; i < viejasClaves.length; i++) {
+                if (viejasClaves[i] != 0) {
+                    int j = hueco(claves, viejasClaves[i]);
+                    claves[j] = viejasClaves[i];
+                    valores[j] = viejosValores[i];
+                }
+            }
+        }
+
+        /** Posición de la clave o primer hueco libre (sondeo lineal). */
+        private static int hueco(long[] claves, long clave) {
+            int mascara = claves.length - 1;
+            int i = posicion(clave, mascara);
+            while (claves[i] != 0 && claves[i] != clave) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+
+        private static int posicion(long clave, int mascara) {
+            return (int) ((clave * 0x9E3779B97F4A7C15L) >>> 32) & mascara;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ejercicio6;
+
+import java.io.File;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 📂 ARCHIVOS CSV DE LA FILMOTECA
+ * Cada constante sabe cómo se llama su archivo, en qué tabla acaba y cómo
+ * convertir una fila ya separada por ";" (un {@link LectorCSV.Registro}) en su entidad.
+ * Opiniones y cines apuntan a su película por id: el título se resuelve con un
+ * {@link ResolutorPeliculas}. Si el título no existe la fila se ignora (el mapeo devuelve null).
+ */
+public enum ArchivoCSV {
+
+    /** Formato: Título;Director;Año */
+    PELICULAS("peliculas.csv", "peliculas",
+            (linea, peliculas) -> new Pelicula(linea.campo(0), linea.campo(1), linea.campoInt(2))),
+
+    /** Formato: Título;Usuario;Opinión */
+    OPINIONES("opiniones.csv", "opiniones", (linea, peliculas) -> {
+        Pelicula pelicula = peliculas.referencia(linea, 0);
+        return pelicula == null ? null : new Opinion(pelicula, linea.campo(1), linea.campo(2));
+    }),
+
+    /** Formato: Nombre del cine;Título de la película */
+    CINES("cines.csv", "cines", (linea, peliculas) -> {
+        Pelicula pelicula = peliculas.referencia(linea, 1);
+        return pelicula == null ? null : new Cine(linea.campo(0), pelicula);
+    });
+
+    private final String nombreArchivo;
+    private final String tabla;
+    private final BiFunction<LectorCSV.Registro, ResolutorPeliculas, Object> mapeo;
+
+    ArchivoCSV(String nombreArchivo, String tabla, BiFunction<LectorCSV.Registro, ResolutorPeliculas, Object> mapeo) {
+        this.nombreArchivo = nombreArchivo;
+        this.tabla = tabla;
+        this.mapeo = mapeo;
+    }
+
+    public File archivo() {
+        return new File(ejercicio6.RUTA_RECURSOS, nombreArchivo);
+    }
+
+    public String tabla() {
+        return tabla;
+    }
+
+    /** ¿Necesita que las películas estén ya cargadas? */
+    public boolean dependeDePeliculas() {
+        return this != PELICULAS;
+    }
+
+    /**
+     * Mapeo de fila a entidad usando "peliculas" para resolver los títulos. Lee del
+     * {@link LectorCSV.Registro} solo los campos que usa (los números sin pasar por
+     * String), y si la película no existe no decodifica el resto de la línea.
+     */
+    public Function<LectorCSV.Registro, Object> mapeo(ResolutorPeliculas peliculas) {
+        return linea -> mapeo.apply(linea, peliculas);
+    }
+}
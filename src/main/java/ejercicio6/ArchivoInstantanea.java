@@ -0,0 +1,533 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 📦 INSTANTÁNEA DEL CATÁLOGO EN DISCO (-Dejercicio6.instantanea=archivo)
+ * Sin ella, cada arranque vacía las tablas, vuelve a importar los CSV y después recorre
+ * la BD para construir el índice de búsqueda, los recuentos y la instantánea en columnas.
+ * Con ella:
+ * - Tras cada importación se guarda en un archivo binario lo que necesitan esas tres
+ *   estructuras, con la huella de cada CSV y una marca al azar que también se apunta en
+ *   la BD (tabla {@link ImportacionIncremental#TABLA_HUELLAS}).
+ * - Al arrancar, si los CSV tienen la misma huella y la BD la misma marca, no se importa
+ *   nada (las tablas ya tienen esos datos) y las estructuras en memoria salen del archivo
+ *   mapeado, sin recorrer la BD.
+ * - Cualquier cambio de una opinión en la BD (menú, HTTP, diario de escrituras) borra la
+ *   marca en la misma transacción ({@link #olvidarMarca}): así vale para cualquier
+ *   instancia y aunque el programa se corte justo después del commit. El archivo local
+ *   se borra también, solo por limpieza. Vaciar o intercambiar las tablas borra la marca.
+ * Formato (big-endian, como DataOutputStream):
+ *   "EJ6I" [formato int] [marca long]
+ *   [número de CSV int] y por cada uno: [nombre] [tamaño long] [fecha long] [SHA-256]
+ *   diccionarios de título, director, usuario y cine: [n int] y n textos
+ *   películas: ids, títulos, directores, años; opiniones: ids, película, usuario, textos;
+ *   cines: película, cine. Cada columna es [n int] y n int.
+ *   [CRC32 int de todo lo anterior]
+ * Cada texto es [longitud int][UTF-8]. Se escribe en un .tmp y se renombra de golpe: si
+ * se corta a medias queda el archivo anterior (o ninguno), nunca uno a medio escribir.
+ * Hasta 2 GB (se mapea de una vez); si ocupa más, no se guarda.
+ */
+public class ArchivoInstantanea {
+
+    /** Ruta del archivo; sin ella no se usa. */
+    public static final String PROPIEDAD_ARCHIVO = "ejercicio6.instantanea";
+
+    private static final int MAGICO = 0x454A3649; // "EJ6I"
+    private static final int FORMATO = 1;
+    /** Fila de la tabla de huellas con la marca de la instantánea que tiene la BD. */
+    static final String NOMBRE_MARCA = "instantanea";
+    private static final int TAMANO_FETCH = 10_000;
+
+    /** La huella de un CSV, con el nombre del archivo. */
+    private record HuellaCsv(String nombre, ImportacionIncremental.Huella huella) {
+    }
+
+    /** Lo que va en el archivo: las columnas de {@link InstantaneaColumnar} y los ids y textos de las opiniones. */
+    public record Contenido(InstantaneaColumnar.Columnas columnas, int[] opinionIds, String[] opiniones) {
+    }
+
+    /**
+     * Lo leído del archivo a falta de mirar la BD: su marca, la generación de cuando se
+     * leyó, el contenido, y bytes y milisegundos de la lectura.
+     */
+    public record Leida(long marca, long generacion, Contenido contenido, long bytes, long millis) {
+    }
+
+    /**
+     * Cambios del catálogo desde el arranque, y si puede haber un archivo en disco (al
+     * arrancar puede quedar el de la ejecución anterior). Con CERROJO.
+     */
+    private static long generacion;
+    private static boolean enDisco = true;
+    private static final Object CERROJO = new Object();
+
+    /** ¿Existe ya la tabla de huellas? Solo se recuerda el sí (otra instancia puede crearla). */
+    private static volatile boolean hayTablaHuellas;
+
+    /** ¿Se ha pedido con -Dejercicio6.instantanea=archivo? */
+    public static boolean activado() {
+        return System.getProperty(PROPIEDAD_ARCHIVO) != null;
+    }
+
+    static File archivo() {
+        return new File(System.getProperty(PROPIEDAD_ARCHIVO));
+    }
+
+    /**
+     * 📂 ABRIR LA INSTANTÁNEA SI SIGUE VALIENDO
+     * null (y dice por qué) si no hay archivo, está dañado, algún CSV ha cambiado o la BD
+     * no tiene su marca: entonces hay que importar como siempre.
+     */
+    public static Contenido abrir(SessionFactory sessionFactory) {
+        return abrir(sessionFactory, leer());
+    }
+
+    /**
+     * 📂 ABRIR LO YA LEÍDO CON {@link #leer}
+     * Falta lo que necesita la BD: que tenga la marca de la instantánea y que desde la
+     * lectura no haya cambiado ninguna opinión (p. ej. al aplicar el diario de escrituras).
+     */
+    public static Contenido abrir(SessionFactory sessionFactory, Leida leida) {
+        if (leida == null) {
+            return null;
+        }
+        return Metricas.medir("abrirInstantanea", () -> {
+            if (!hex(leida.marca()).equals(marcaEnBd(sessionFactory))) {
+                System.out.println("📦 La BD ya no tiene el catálogo de la instantánea: se importan los CSV.");
+                return null;
+            }
+            synchronized (CERROJO) {
+                if (generacion != leida.generacion()) {
+                    System.out.println("📦 El catálogo ha cambiado desde que se leyó la instantánea: se importan los CSV.");
+                    return null;
+                }
+            }
+            System.out.printf("📦 Instantánea del catálogo leída de %s (%.1f MB) en %d ms: los CSV no han cambiado, no se importa nada.%n",
+                    archivo(), leida.bytes() / 1e6, leida.millis());
+            return leida.contenido();
+        });
+    }
+
+    /**
+     * 📖 LEER LA INSTANTÁNEA SIN TOCAR LA BD
+     * Tamaño, CRC, versión, huellas de los CSV y todo el contenido: no necesita la
+     * SessionFactory, así que se puede hacer mientras se construye. null (y dice por
+     * qué) si no hay archivo o no vale.
+     */
+    public static Leida leer() {
+        File archivo = archivo();
+        if (!archivo.isFile()) {
+            System.out.println("📦 No hay instantánea del catálogo en " + archivo + ": se importan los CSV.");
+            return null;
+        }
+        return Metricas.medir("leerInstantanea", () -> {
+            long inicio = System.nanoTime();
+            long desde;
+            synchronized (CERROJO) {
+                desde = generacion;
+            }
+            try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+                if (canal.size() > Integer.MAX_VALUE || canal.size() < 20) {
+                    System.out.println("⚠️ La instantánea del catálogo no tiene un tamaño válido: se importan los CSV.");
+                    return null;
+                }
+                MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                if (!crcCorrecto(datos) || datos.getInt() != MAGICO || datos.getInt() != FORMATO) {
+                    System.out.println("⚠️ La instantánea del catálogo está dañada o es de otra versión: se importan los CSV.");
+                    return null;
+                }
+                long marca = datos.getLong();
+                String cambiado = csvCambiado(datos);
+                if (cambiado != null) {
+                    System.out.println("📦 " + cambiado + " ha cambiado desde la instantánea: se importan los CSV.");
+                    return null;
+                }
+                Contenido contenido = leerContenido(datos);
+                return new Leida(marca, desde, contenido, canal.size(), (System.nanoTime() - inicio) / 1_000_000);
+            } catch (IOException | UncheckedIOException | BufferUnderflowException | IllegalArgumentException e) {
+                System.out.println("⚠️ No se pudo leer la instantánea del catálogo (" + e.getMessage() + "): se importan los CSV.");
+                return null;
+            }
+        });
+    }
+
+    private static boolean crcCorrecto(ByteBuffer datos) {
+        int fin = datos.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(datos.slice(0, fin));
+        return (int) crc.getValue() == datos.getInt(fin);
+    }
+
+    /** Nombre del primer CSV que no tiene la huella guardada (null si ninguno). */
+    private static String csvCambiado(ByteBuffer datos) {
+        int guardados = datos.getInt();
+        if (guardados != ArchivoCSV.values().length) {
+            return "La lista de CSV";
+        }
+        for (int i = 0; i < guardados; i++) {
+            String nombre = texto(datos);
+            ImportacionIncremental.Huella guardada = new ImportacionIncremental.Huella(datos.getLong(), datos.getLong(), texto(datos));
+            File csv = new File(ejercicio6.RUTA_RECURSOS, nombre);
+            if (!csv.isFile()) {
+                return nombre;
+            }
+            ImportacionIncremental.Huella actual = ImportacionIncremental.Huella.rapida(csv);
+            // Misma fecha y tamaño: ni se abre. Si solo cambió la fecha, decide el SHA-256
+            if (!guardada.mismoArchivo(actual) && !guardada.mismoContenido(actual.conHash(csv))) {
+                return nombre;
+            }
+        }
+        return null;
+    }
+
+    private static String marcaEnBd(SessionFactory sessionFactory) {
+        try (Session session = sessionFactory.openSession()) {
+            return session.doReturningWork(conexion -> {
+                ImportacionIncremental.crearTablaHuellas(conexion);
+                ImportacionIncremental.Huella huella = ImportacionIncremental.leerHuella(conexion, NOMBRE_MARCA);
+                return huella == null ? null : huella.hash();
+            });
+        }
+    }
+
+    private static Contenido leerContenido(ByteBuffer datos) {
+        String[] textosTitulo = textos(datos);
+        String[] textosDirector = textos(datos);
+        String[] textosUsuario = textos(datos);
+        String[] textosCine = textos(datos);
+        int[] peliculaIds = enteros(datos);
+        int[] titulos = enteros(datos);
+        int[] directores = enteros(datos);
+        int[] anyos = enteros(datos);
+        int[] opinionIds = enteros(datos);
+        int[] opinionPelicula = enteros(datos);
+        int[] opinionUsuario = enteros(datos);
+        String[] opiniones = textos(datos);
+        int[] cinePelicula = enteros(datos);
+        int[] cineCine = enteros(datos);
+        return new Contenido(new InstantaneaColumnar.Columnas(peliculaIds, titulos, directores, anyos,
+                opinionPelicula, opinionUsuario, cinePelicula, cineCine,
+                textosTitulo, textosDirector, textosUsuario, textosCine), opinionIds, opiniones);
+    }
+
+    private static int[] enteros(ByteBuffer datos) {
+        int n = cuantos(datos, 4);
+        int[] valores = new int[n];
+        // Copia en bloque desde el mapeo (sin pasar entero a entero por el ByteBuffer)
+        datos.asIntBuffer().get(valores);
+        datos.position(datos.position() + 4 * n);
+        return valores;
+    }
+
+    private static String[] textos(ByteBuffer datos) {
+        int n = cuantos(datos, 4);
+        String[] textos = new String[n];
+        for (int i = 0; i < n; i++) {
+            textos[i] = texto(datos);
+        }
+        return textos;
+    }
+
+    private static String texto(ByteBuffer datos) {
+        byte[] bytes = new byte[cuantos(datos, 1)];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Un número de elementos, comprobando que caben en lo que queda (cada uno ocupa al menos "bytes"). */
+    private static int cuantos(ByteBuffer datos, int bytes) {
+        int n = datos.getInt();
+        if (n < 0 || (long) n * bytes > datos.remaining()) {
+            throw new IllegalArgumentException("longitud fuera de rango: " + n);
+        }
+        return n;
+    }
+
+    /**
+     * 🚀 USAR LA INSTANTÁNEA
+     * Instantánea en columnas, índice de búsqueda y recuentos, desde el contenido del
+     * archivo en vez de desde la BD. Vuelve cuando están los tres.
+     */
+    public static void usar(Contenido contenido) {
+        synchronized (CERROJO) {
+            enDisco = true;
+        }
+        InstantaneaColumnar.cargar(contenido.columnas());
+        IndiceBusqueda.construir(contenido);
+        Agregados.recalcular(contenido);
+    }
+
+    /** 🧵 Igual, pero índice y recuentos en un hilo aparte (la instantánea en columnas ya al volver). */
+    public static void usarEnSegundoPlano(Contenido contenido) {
+        synchronized (CERROJO) {
+            enDisco = true;
+        }
+        InstantaneaColumnar.cargar(contenido.columnas());
+        System.out.println(InstantaneaColumnar.resumen());
+        Thread.ofPlatform().name("instantanea-disco").daemon().start(() -> {
+            try {
+                IndiceBusqueda.construir(contenido);
+                System.out.println(IndiceBusqueda.resumen());
+                Agregados.recalcular(contenido);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudo construir el índice o los recuentos desde la instantánea: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 🧹 BORRAR LA MARCA DE LA BD (dentro de la transacción que cambia una opinión)
+     * Con la marca fuera, ningún archivo de ninguna instancia vuelve a valer, y si se
+     * deshace la transacción la marca vuelve con ella. Se hace aunque esta instancia no
+     * use la instantánea: puede usarla otra. Sin CREATE TABLE (en MySQL cerraría la
+     * transacción): si la tabla no existe todavía, tampoco hay marca que borrar.
+     */
+    static void olvidarMarca(Connection conexion) throws SQLException {
+        if (!hayTablaHuellas) {
+            DatabaseMetaData metadatos = conexion.getMetaData();
+            for (String nombre : List.of(ImportacionIncremental.TABLA_HUELLAS, ImportacionIncremental.TABLA_HUELLAS.toUpperCase())) {
+                try (ResultSet tablas = metadatos.getTables(conexion.getCatalog(), null, nombre, new String[]{"TABLE"})) {
+                    hayTablaHuellas |= tablas.next();
+                }
+            }
+            if (!hayTablaHuellas) {
+                return;
+            }
+        }
+        try (PreparedStatement borrar = conexion.prepareStatement(
+                "DELETE FROM " + ImportacionIncremental.TABLA_HUELLAS + " WHERE archivo = ?")) {
+            borrar.setString(1, NOMBRE_MARCA);
+            borrar.executeUpdate();
+        }
+    }
+
+    /**
+     * ✍️ HA CAMBIADO UNA OPINIÓN EN LA BD (después del commit, que ya borró la marca)
+     * El archivo local ya no vale: se borra para no dejarlo por ahí, y si se está
+     * guardando uno en ese momento, no se llega a guardar.
+     */
+    static void catalogoCambiado() {
+        if (!activado()) {
+            return;
+        }
+        synchronized (CERROJO) {
+            generacion++;
+            if (enDisco) {
+                try {
+                    Files.deleteIfExists(archivo().toPath());
+                    enDisco = false;
+                } catch (IOException e) {
+                    System.err.println("⚠️ No se pudo borrar la instantánea del catálogo: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** 🧵 Guardar en un hilo aparte (daemon): no retrasa el menú. */
+    public static void guardarEnSegundoPlano(SessionFactory sessionFactory) {
+        Thread.ofPlatform().name("instantanea-guardar").daemon().start(() -> {
+            try {
+                guardar(sessionFactory);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudo guardar la instantánea del catálogo: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 💾 GUARDAR LA INSTANTÁNEA (justo después de importar)
+     * Huellas de los CSV, una pasada por la BD con proyecciones escalares y escritura
+     * en el .tmp; al final, con el cerrojo, marca en la BD y renombrado. Si mientras
+     * tanto ha cambiado alguna opinión, no se guarda (lo leído puede ser de antes).
+     * false si no se ha guardado.
+     */
+    public static boolean guardar(SessionFactory sessionFactory) {
+        return Metricas.medir("guardarInstantanea", () -> {
+            long inicio = System.nanoTime();
+            long desde;
+            synchronized (CERROJO) {
+                desde = generacion;
+            }
+            File destino = archivo();
+            File temporal = new File(destino.getPath() + ".tmp");
+            long marca = ThreadLocalRandom.current().nextLong();
+            try {
+                List<HuellaCsv> huellas = new ArrayList<>();
+                for (ArchivoCSV csv : ArchivoCSV.values()) {
+                    File archivo = csv.archivo();
+                    huellas.add(new HuellaCsv(archivo.getName(), ImportacionIncremental.Huella.rapida(archivo).conHash(archivo)));
+                }
+                // Primero la marca y luego la lectura: un cambio que llegue después la borra,
+                // y uno de antes ya está en lo que se lee
+                guardarMarca(sessionFactory, marca);
+                escribir(temporal, marca, huellas, leerBd(sessionFactory));
+                long bytes = temporal.length();
+                if (bytes > Integer.MAX_VALUE) {
+                    Files.deleteIfExists(temporal.toPath());
+                    System.out.println("⚠️ La instantánea del catálogo ocuparía más de 2 GB: no se guarda.");
+                    return false;
+                }
+                synchronized (CERROJO) {
+                    if (generacion != desde) {
+                        Files.deleteIfExists(temporal.toPath());
+                        System.out.println("📦 El catálogo ha cambiado mientras se guardaba la instantánea: no se guarda.");
+                        return false;
+                    }
+                    // La marca ya está: si se corta antes de renombrar, la del archivo viejo ya no coincide
+                    Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    enDisco = true;
+                }
+                System.out.printf("📦 Instantánea del catálogo guardada en %s (%.1f MB) en %d ms.%n",
+                        destino, bytes / 1e6, (System.nanoTime() - inicio) / 1_000_000);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("❌ No se pudo escribir " + temporal, e);
+            }
+        });
+    }
+
+    /** Todo lo que va en el archivo, leído de la BD de una pasada por tabla. */
+    private static Contenido leerBd(SessionFactory sessionFactory) {
+        InstantaneaColumnar.Constructor constructor = new InstantaneaColumnar.Constructor();
+        InstantaneaColumnar.Enteros opinionIds = new InstantaneaColumnar.Enteros();
+        List<String> opiniones = new ArrayList<>();
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            recorrer(session, "SELECT p.id, p.titulo, p.director, p.anyo FROM ejercicio6.Pelicula p ORDER BY p.id",
+                    fila -> constructor.pelicula((Integer) fila[0], (String) fila[1], (String) fila[2], (Integer) fila[3]));
+            recorrer(session, "SELECT o.id, o.pelicula.id, o.usuario, o.opinion FROM ejercicio6.Opinion o ORDER BY o.id", fila -> {
+                if (constructor.opinion((Integer) fila[1], (String) fila[2])) {
+                    opinionIds.anadir((Integer) fila[0]);
+                    opiniones.add(fila[3] == null ? "" : (String) fila[3]);
+                }
+            });
+            recorrer(session, "SELECT c.pelicula.id, c.cine FROM ejercicio6.Cine c",
+                    fila -> constructor.cine((Integer) fila[0], (String) fila[1]));
+        }
+        return new Contenido(constructor.construir().columnas(), opinionIds.array(), opiniones.toArray(new String[0]));
+    }
+
+    private interface Fila {
+        void leer(Object[] fila);
+    }
+
+    private static void recorrer(Session session, String hql, Fila fila) {
+        long filas = 0;
+        try (ScrollableResults resultados = session.createQuery(hql)
+                .setFetchSize(TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (resultados.next()) {
+                fila.leer(resultados.get());
+                filas++;
+            }
+        }
+        Metricas.filasLeidas(filas);
+    }
+
+    /** Escribe el archivo completo y lo fuerza a disco. */
+    private static void escribir(File archivo, long marca, List<HuellaCsv> huellas, Contenido contenido) throws IOException {
+        if (archivo.getParentFile() != null) {
+            Files.createDirectories(archivo.getParentFile().toPath());
+        }
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fichero = new FileOutputStream(archivo);
+             DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fichero, crc), 1 << 16))) {
+            salida.writeInt(MAGICO);
+            salida.writeInt(FORMATO);
+            salida.writeLong(marca);
+            salida.writeInt(huellas.size());
+            for (HuellaCsv csv : huellas) {
+                escribir(salida, csv.nombre());
+                salida.writeLong(csv.huella().tamano());
+                salida.writeLong(csv.huella().modificado());
+                escribir(salida, csv.huella().hash());
+            }
+            InstantaneaColumnar.Columnas c = contenido.columnas();
+            escribir(salida, c.textosTitulo());
+            escribir(salida, c.textosDirector());
+            escribir(salida, c.textosUsuario());
+            escribir(salida, c.textosCine());
+            escribir(salida, c.peliculaIds());
+            escribir(salida, c.titulos());
+            escribir(salida, c.directores());
+            escribir(salida, c.anyos());
+            escribir(salida, contenido.opinionIds());
+            escribir(salida, c.opinionPelicula());
+            escribir(salida, c.opinionUsuario());
+            escribir(salida, contenido.opiniones());
+            escribir(salida, c.cinePelicula());
+            escribir(salida, c.cineCine());
+            salida.flush();
+            // El CRC cubre todo lo anterior; lo que se escribe ahora ya no cuenta
+            salida.writeInt((int) crc.getValue());
+            salida.flush();
+            fichero.getChannel().force(true);
+        }
+    }
+
+    private static void escribir(DataOutputStream salida, int[] valores) throws IOException {
+        salida.writeInt(valores.length);
+        for (int valor : valores) {
+            salida.writeInt(valor);
+        }
+    }
+
+    private static void escribir(DataOutputStream salida, String[] textos) throws IOException {
+        salida.writeInt(textos.length);
+        for (String texto : textos) {
+            escribir(salida, texto);
+        }
+    }
+
+    private static void escribir(DataOutputStream salida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        salida.writeInt(bytes.length);
+        salida.write(bytes);
+    }
+
+    private static void guardarMarca(SessionFactory sessionFactory, long marca) {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.doWork(conexion -> {
+                ImportacionIncremental.crearTablaHuellas(conexion);
+                ImportacionIncremental.guardarHuella(conexion, NOMBRE_MARCA, new ImportacionIncremental.Huella(0, 0, hex(marca)));
+            });
+            session.getTransaction().commit();
+        }
+    }
+
+    private static String hex(long marca) {
+        return HexFormat.of().toHexDigits(marca);
+    }
+}
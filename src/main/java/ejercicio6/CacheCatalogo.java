@@ -0,0 +1,63 @@
+package ejercicio6;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.io.PrintStream;
+
+/**
+ * 🗄️ CACHÉ DEL CATÁLOGO
+ * Pelicula y Cine viven en la caché de segundo nivel y la consulta de
+ * cartelera de un cine en la región {@link #REGION_CARTELERA} de la caché de consultas.
+ * El tamaño y la caducidad de cada región están en application.conf.
+ * Aquí se vacía todo cuando se recargan los datos y se muestran aciertos/fallos.
+ */
+public class CacheCatalogo {
+
+    public static final String REGION_PELICULAS = "peliculas";
+    public static final String REGION_CINES = "cines";
+    public static final String REGION_CARTELERA = "cartelera";
+
+    /**
+     * 🧹 VACIAR TODAS LAS REGIONES
+     * Se llama al borrar los datos y después de cada importación.
+     */
+    public static void vaciar(SessionFactory sessionFactory) {
+        sessionFactory.getCache().evictAllRegions();
+    }
+
+    /**
+     * 📊 ESTADÍSTICAS DE ACIERTOS / FALLOS
+     */
+    public static void imprimirEstadisticas(SessionFactory sessionFactory, PrintStream salida) {
+        Statistics estadisticas = sessionFactory.getStatistics();
+        if (!estadisticas.isStatisticsEnabled()) {
+            salida.println("📊 Estadísticas desactivadas (hibernate.generate_statistics=false).");
+            return;
+        }
+
+        salida.println("📊 Caché de segundo nivel:");
+        imprimirRegion(salida, REGION_PELICULAS, estadisticas.getDomainDataRegionStatistics(REGION_PELICULAS));
+        imprimirRegion(salida, REGION_CINES, estadisticas.getDomainDataRegionStatistics(REGION_CINES));
+        imprimirRegion(salida, REGION_CARTELERA, estadisticas.getQueryRegionStatistics(REGION_CARTELERA));
+        salida.println("   Total entidades: " + estadisticas.getSecondLevelCacheHitCount() + " aciertos / "
+                + estadisticas.getSecondLevelCacheMissCount() + " fallos");
+        salida.println("   Total consultas: " + estadisticas.getQueryCacheHitCount() + " aciertos / "
+                + estadisticas.getQueryCacheMissCount() + " fallos");
+    }
+
+    private static void imprimirRegion(PrintStream salida, String nombre, CacheRegionStatistics region) {
+        if (region == null) {
+            salida.println("   - " + nombre + ": sin uso todavía");
+            return;
+        }
+        long aciertos = region.getHitCount();
+        long fallos = region.getMissCount();
+        long total = aciertos + fallos;
+        salida.println("   - " + nombre + ": " + aciertos + " aciertos / " + fallos + " fallos ("
+                + (total == 0 ? 0 : aciertos * 100 / total) + "%), " + region.getPutCount() + " escrituras"
+                // JCache no siempre sabe cuántos elementos tiene (devuelve un valor negativo)
+                + (region.getElementCountInMemory() >= 0 ? ", " + region.getElementCountInMemory() + " en memoria" : ""));
+    }
+}
@@ -0,0 +1,139 @@
+package ejercicio6;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 🚚 CARGADOR MASIVO DE CSV
+ * Lee un archivo .csv línea a línea (sin guardarlo entero en memoria) y lo
+ * inserta en la base de datos por lotes:
+ * - Cada "hibernate.jdbc.batch_size" filas hace flush + clear de la sesión,
+ *   así las entidades no se acumulan en la caché de primer nivel.
+ * - Cada {@link #FILAS_POR_TRANSACCION} filas hace commit y abre otra transacción.
+ * Al terminar informa de filas, tiempo, filas/segundo y pico de heap.
+ */
+public class CargadorCSV {
+
+    /** Tamaño de lote si hibernate.cfg.xml no define "hibernate.jdbc.batch_size". */
+    public static final int TAMANO_LOTE_POR_DEFECTO = 50;
+
+    /** Filas que se confirman en cada transacción (se puede cambiar con -Dejercicio6.carga.filas_por_transaccion). */
+    public static final int FILAS_POR_TRANSACCION = Integer.getInteger("ejercicio6.carga.filas_por_transaccion", 10_000);
+
+    private static final MemoryMXBean MEMORIA = ManagementFactory.getMemoryMXBean();
+
+    /**
+     * 📊 RESUMEN DE UNA CARGA
+     * Filas insertadas, filas ignoradas (película desconocida), milisegundos
+     * empleados y pico de heap observado (en bytes).
+     */
+    public record Resumen(String archivo, long filas, long ignoradas, long millis, long picoHeap) {
+
+        public long filasPorSegundo() {
+            return millis == 0 ? filas * 1000 : filas * 1000 / millis;
+        }
+
+        @Override
+        public String toString() {
+            return archivo + ": " + filas + " filas en " + millis + " ms (" + filasPorSegundo()
+                    + " filas/s, pico de heap " + (picoHeap / (1024 * 1024)) + " MB)"
+                    + (ignoradas > 0 ? " ⚠️ " + ignoradas + " filas ignoradas: película desconocida" : "");
+        }
+    }
+
+    /**
+     * 📖 RECORRER ARCHIVO CSV
+     * Lee el archivo en UTF-8 con {@link LectorCSV} y entrega cada línea ya separada
+     * por ";" al consumidor, sin acumular nada en memoria. Las líneas vacías se ignoran.
+     * El {@link LectorCSV.Registro} se reutiliza: hay que sacar los campos dentro de la llamada.
+     */
+    public static void recorrerArchivoCSV(File archivo, Consumer<LectorCSV.Registro> consumidor) throws IOException {
+        recorrerTramoCSV(archivo, 0, archivo.length(), consumidor);
+    }
+
+    /**
+     * ✂️ RECORRER UN TRAMO DEL ARCHIVO
+     * Procesa solo las líneas que EMPIEZAN en el rango de bytes [inicio, fin).
+     * Así varios hilos pueden repartirse un archivo grande por tramos sin
+     * perder ni repetir líneas: la que cruza un límite es del tramo donde empieza.
+     */
+    public static void recorrerTramoCSV(File archivo, long inicio, long fin, Consumer<LectorCSV.Registro> consumidor) throws IOException {
+        LectorCSV.recorrerTramo(archivo, inicio, fin, consumidor);
+    }
+
+    /**
+     * 📥 CARGAR UN ARCHIVO
+     * Convierte cada fila con "mapeo" en una entidad y la guarda en lotes
+     * (si el mapeo devuelve null la fila se cuenta como ignorada).
+     * Si algo falla se hace rollback de la transacción en curso y se relanza el error
+     * (las transacciones ya confirmadas se mantienen).
+     */
+    public static Resumen cargar(Session session, File archivo, Function<LectorCSV.Registro, Object> mapeo) {
+        int tamanoLote = tamanoLote(session);
+        long inicio = System.nanoTime();
+        long[] filas = {0};
+        long[] ignoradas = {0};
+        long[] picoHeap = {heapUsado()};
+
+        session.beginTransaction();
+        try {
+            recorrerArchivoCSV(archivo, linea -> {
+                Object entidad = mapeo.apply(linea);
+                if (entidad == null) {
+                    ignoradas[0]++;
+                    return;
+                }
+                session.save(entidad);
+                filas[0]++;
+
+                if (filas[0] % tamanoLote == 0) {
+                    // 🧽 Enviar el lote por JDBC y vaciar la caché de primer nivel
+                    session.flush();
+                    session.clear();
+                    picoHeap[0] = Math.max(picoHeap[0], heapUsado());
+                }
+                if (filas[0] % FILAS_POR_TRANSACCION == 0) {
+                    session.getTransaction().commit();
+                    session.beginTransaction();
+                }
+            });
+            session.getTransaction().commit();
+        } catch (IOException e) {
+            session.getTransaction().rollback();
+            throw new IllegalStateException("❌ Error al leer el archivo: " + archivo.getName(), e);
+        } catch (RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.clear();
+            CacheCatalogo.vaciar(session.getSessionFactory());
+        }
+
+        picoHeap[0] = Math.max(picoHeap[0], heapUsado());
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        return new Resumen(archivo.getName(), filas[0], ignoradas[0], millis, picoHeap[0]);
+    }
+
+    /** Bytes de heap en uso ahora mismo. */
+    static long heapUsado() {
+        return MEMORIA.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * 📏 TAMAÑO DE LOTE
+     * Usa el "hibernate.jdbc.batch_size" configurado para que cada flush
+     * coincida con un lote JDBC.
+     */
+    static int tamanoLote(Session session) {
+        int configurado = ((SessionFactoryImplementor) session.getSessionFactory())
+                .getSessionFactoryOptions().getJdbcBatchSize();
+        return configurado > 0 ? configurado : TAMANO_LOTE_POR_DEFECTO;
+    }
+}
@@ -4,19 +4,19 @@ public class Cine {
 
     private int id;
     private String cine;
-    private String titulo;
+    private Pelicula pelicula;
 
     public Cine() {}
 
-    public Cine(String cine, String titulo) {
+    public Cine(String cine, Pelicula pelicula) {
         this.cine = cine;
-        this.titulo = titulo;
+        this.pelicula = pelicula;
     }
 
-    public Cine(int id, String cine, String titulo) {
+    public Cine(int id, String cine, Pelicula pelicula) {
         this.id = id;
         this.cine = cine;
-        this.titulo = titulo;
+        this.pelicula = pelicula;
     }
 
     public int getId() {
@@ -35,12 +35,12 @@ public class Cine {
         this.cine = cine;
     }
 
-    public String getTitulo() {
-        return titulo;
+    public Pelicula getPelicula() {
+        return pelicula;
     }
 
-    public void setTitulo(String titulo) {
-        this.titulo = titulo;
+    public void setPelicula(Pelicula pelicula) {
+        this.pelicula = pelicula;
     }
 
     @Override
@@ -48,7 +48,7 @@ public class Cine {
         return "Cine {" +
                 "id=" + id +
                 ", cine='" + cine + '\'' +
-                ", titulo='" + titulo + '\'' +
+                ", pelicula=" + (pelicula == null ? null : pelicula.getId()) +
                 '}';
     }
 }
@@ -0,0 +1,206 @@
+package ejercicio6;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 📒 DIARIO DE ESCRITURAS (archivo de solo añadir)
+ * Cada cambio de una opinión es un registro:
+ *   [longitud int][CRC32 int][formato byte = 2][tipo byte][id int][versionBase int][version int][texto UTF-8]
+ * (la longitud y el CRC cuentan desde el formato): versionBase es la versión de la fila
+ * sobre la que se hizo el cambio y version la que tendrá cuando se aplique.
+ * Los diarios de antes (formato 1, sin versiones: [tipo byte][id int][texto UTF-8] detrás
+ * del CRC) se siguen leyendo; se distinguen por el primer byte, que ahí es el tipo.
+ * Al abrirlo se leen los registros
+ * completos y con CRC correcto; lo que venga detrás (un registro a medio escribir
+ * cuando se cortó el programa) se descarta.
+ * Escribir en disco de verdad (force) es lo caro, así que se agrupa: {@link #anadir}
+ * solo copia el registro a memoria y {@link #sincronizar} escribe y fuerza de una vez
+ * todo lo acumulado. Mientras un hilo espera al disco, los demás van acumulando y el
+ * siguiente force se lleva los de todos.
+ */
+class DiarioEscrituras implements AutoCloseable {
+
+    static final byte BORRAR = 'B';
+    static final byte MODIFICAR = 'M';
+
+    /** Primer byte de los registros con versiones; los del formato 1 empiezan por el tipo. */
+    private static final byte FORMATO_VERSIONES = 2;
+
+    /** versionBase / version de los registros del formato 1. */
+    static final int SIN_VERSION = -1;
+
+    /** Un registro leído del diario (versionBase y version, {@link #SIN_VERSION} en el formato 1). */
+    record Registro(byte tipo, int id, String texto, int versionBase, int version) {
+
+        boolean conVersiones() {
+            return versionBase != SIN_VERSION;
+        }
+    }
+
+    private final FileChannel canal;
+    private final ByteArrayOutputStream bufferBytes = new ByteArrayOutputStream(1 << 12);
+    private final DataOutputStream buffer = new DataOutputStream(bufferBytes);
+    private final CRC32 crc = new CRC32();
+
+    /** Registros copiados a memoria / ya forzados a disco (se numeran desde 1). */
+    private long anadidos;
+    private long sincronizados;
+    private final Object disco = new Object();
+
+    private DiarioEscrituras(FileChannel canal) {
+        this.canal = canal;
+    }
+
+    /**
+     * 📂 ABRIR (Y LEER) EL DIARIO
+     * Devuelve los registros válidos en "recuperados" y deja el archivo cortado justo
+     * detrás del último, listo para seguir añadiendo.
+     */
+    static DiarioEscrituras abrir(Path archivo, List<Registro> recuperados) throws IOException {
+        if (archivo.getParent() != null) {
+            Files.createDirectories(archivo.getParent());
+        }
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valido = leer(canal, recuperados);
+        canal.truncate(valido);
+        canal.position(valido);
+        return new DiarioEscrituras(canal);
+    }
+
+    private static long leer(FileChannel canal, List<Registro> recuperados) throws IOException {
+        ByteBuffer todo = ByteBuffer.allocate((int) canal.size());
+        while (todo.hasRemaining() && canal.read(todo, todo.position()) > 0) {
+            // read con posición no mueve el canal: se avanza con la del buffer
+        }
+        todo.flip();
+        CRC32 crc = new CRC32();
+        long valido = 0;
+        while (todo.remaining() >= 8) {
+            int longitud = todo.getInt();
+            int esperado = todo.getInt();
+            if (longitud < 1 || longitud > todo.remaining()) {
+                break;
+            }
+            byte[] cuerpo = new byte[longitud];
+            todo.get(cuerpo);
+            crc.reset();
+            crc.update(cuerpo);
+            if ((int) crc.getValue() != esperado) {
+                break;
+            }
+            ByteBuffer registro = ByteBuffer.wrap(cuerpo);
+            boolean conVersiones = cuerpo[0] == FORMATO_VERSIONES;
+            int cabecera = conVersiones ? 14 : 5;
+            if (longitud < cabecera) {
+                break;
+            }
+            if (conVersiones) {
+                registro.get();
+            }
+            byte tipo = registro.get();
+            int id = registro.getInt();
+            int versionBase = conVersiones ? registro.getInt() : SIN_VERSION;
+            int version = conVersiones ? registro.getInt() : SIN_VERSION;
+            String texto = new String(cuerpo, cabecera, longitud - cabecera, StandardCharsets.UTF_8);
+            recuperados.add(new Registro(tipo, id, texto, versionBase, version));
+            valido = todo.position();
+        }
+        return valido;
+    }
+
+    /**
+     * ➕ AÑADIR UN REGISTRO (en memoria)
+     * Devuelve su número para pasárselo a {@link #sincronizar}.
+     */
+    synchronized long anadir(byte tipo, int id, String texto, int versionBase, int version) {
+        byte[] bytesTexto = texto == null ? new byte[0] : texto.getBytes(StandardCharsets.UTF_8);
+        byte[] cuerpo = ByteBuffer.allocate(14 + bytesTexto.length).put(FORMATO_VERSIONES).put(tipo).putInt(id)
+                .putInt(versionBase).putInt(version).put(bytesTexto).array();
+        crc.reset();
+        crc.update(cuerpo);
+        try {
+            buffer.writeInt(cuerpo.length);
+            buffer.writeInt((int) crc.getValue());
+            buffer.write(cuerpo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // ByteArrayOutputStream no lanza
+        }
+        return ++anadidos;
+    }
+
+    /**
+     * 💾 ESPERAR A QUE EL REGISTRO "numero" ESTÉ EN DISCO
+     * Si otro hilo ya lo ha escrito con su force, no hace nada.
+     */
+    void sincronizar(long numero) {
+        synchronized (disco) {
+            if (sincronizados >= numero) {
+                return;
+            }
+            byte[] datos;
+            long hasta;
+            synchronized (this) {
+                datos = bufferBytes.toByteArray();
+                bufferBytes.reset();
+                hasta = anadidos;
+            }
+            try {
+                ByteBuffer pendiente = ByteBuffer.wrap(datos);
+                while (pendiente.hasRemaining()) {
+                    canal.write(pendiente);
+                }
+                canal.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("❌ No se pudo escribir el diario de escrituras", e);
+            }
+            sincronizados = hasta;
+        }
+    }
+
+    /**
+     * 🧹 VACIAR EL ARCHIVO
+     * Solo cuando todo lo que hay en él ya está en la BD (lo decide quien llama).
+     */
+    void vaciar() {
+        synchronized (disco) {
+            synchronized (this) {
+                try {
+                    canal.truncate(0);
+                    canal.position(0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("❌ No se pudo vaciar el diario de escrituras", e);
+                }
+            }
+        }
+    }
+
+    /** Tamaño actual del archivo en bytes. */
+    long tamano() {
+        try {
+            return canal.size();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long ultimo;
+        synchronized (this) {
+            ultimo = anadidos;
+        }
+        sincronizar(ultimo);
+        canal.close();
+    }
+}
@@ -0,0 +1,568 @@
+package ejercicio6;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * ✍️ BORRADOS Y MODIFICACIONES DE OPINIONES EN DIFERIDO
+ * Con -Dejercicio6.escrituras.diario=ruta/al/archivo, borrar o modificar una opinión
+ * no espera a la BD: el cambio se apunta en el {@link DiarioEscrituras} (en disco, con
+ * force) y en un mapa de cambios pendientes, y ya se da por hecho. Un hilo aparte
+ * los va pasando a la BD en lotes JDBC de hasta {@link #CAMBIOS_POR_LOTE}, una
+ * transacción por lote:
+ * - varios cambios a la misma opinión se quedan en el último (borrar gana a modificar:
+ *   una opinión borrada ya no se puede modificar),
+ * - mientras están pendientes, las lecturas de {@link ServicioFilmoteca} los superponen
+ *   a lo que devuelve la BD ({@link #superponer}, con los de {@link #antesDeLeer}), así
+ *   cada uno ve sus propios cambios,
+ * - cuando no queda nada pendiente el diario se vacía,
+ * - al arrancar, lo que hubiera en el diario (el programa se cortó antes de aplicarlo)
+ *   se aplica antes de nada, con la versión guardada en cada registro,
+ * - cada cambio lleva la versión de la fila sobre la que se hizo: el hilo escribe con
+ *   "AND version = ?" y, si otra instancia la cambió antes, se queda lo de la BD (ver
+ *   {@link ResultadoEdicion}: aquí el conflicto ya no se le puede devolver al usuario),
+ * - un cambio que la BD rechaza por sus datos se descarta y se avisa, sin parar la cola.
+ * Los listados que se escriben según salen de la BD (filmoteca completa, exportaciones)
+ * ven el cambio cuando el hilo lo aplica, normalmente a los pocos milisegundos.
+ */
+public class EscrituraDiferida {
+
+    public static final String PROPIEDAD_DIARIO = "ejercicio6.escrituras.diario";
+
+    static final int CAMBIOS_POR_LOTE = 1000;
+
+    /** Milisegundos que espera el hilo tras el primer aviso para juntar más cambios en el lote. */
+    private static final long ESPERA_AGRUPAR_MS = 5;
+
+    /**
+     * Un cambio pendiente; peliculaId y usuario son para los recuentos (0 / null en los
+     * recuperados del diario). versionBase es la versión que tiene la fila en la BD (el
+     * UPDATE/DELETE solo la toca si sigue en ella) y version la que se ve mientras está pendiente.
+     */
+    record Cambio(byte tipo, int id, String texto, int peliculaId, String usuario, int versionBase, int version) {
+
+        boolean borrado() {
+            return tipo == DiarioEscrituras.BORRAR;
+        }
+
+        /** El mismo cambio, escrito sobre otra versión de la BD. */
+        Cambio sobreVersion(int base) {
+            return new Cambio(tipo, id, texto, peliculaId, usuario, base, version);
+        }
+    }
+
+    private static final Map<Integer, Cambio> PENDIENTES = new ConcurrentHashMap<>();
+    /** Ordena los cambios entre sí y con el vaciado del diario. */
+    private static final Object CERROJO = new Object();
+    /** Un lote detrás de otro: si no, uno viejo podría pisar en la BD a uno más nuevo de la misma opinión. */
+    private static final Object APLICANDO = new Object();
+    private static final Semaphore AVISO = new Semaphore(0);
+
+    /**
+     * Lotes aplicados hasta ahora, opiniones que acaban de escribir (id → número de lote) y
+     * escrituras leyendo ahora mismo (número de lote con el que empezaron → cuántas); todo
+     * con CERROJO. Ver {@link #leerParaEscribir}.
+     */
+    private static long lotes;
+    private static final Map<Integer, Long> ESCRITAS = new HashMap<>();
+    private static final TreeMap<Long, Integer> EN_CURSO = new TreeMap<>();
+
+    private static volatile DiarioEscrituras diario;
+    private static volatile SessionFactory sessionFactory;
+    private static volatile Thread hilo;
+    private static volatile boolean parando;
+
+    /** ¿Está activado (-Dejercicio6.escrituras.diario)? */
+    public static boolean activado() {
+        return System.getProperty(PROPIEDAD_DIARIO) != null;
+    }
+
+    /** ¿Está arrancado y aceptando cambios? */
+    public static boolean arrancado() {
+        return diario != null;
+    }
+
+    /**
+     * 🚀 ARRANCAR
+     * Abre el diario, aplica lo que quedara de la ejecución anterior y arranca el hilo
+     * que aplica los cambios. Va antes de cualquier importación: los ids del diario son
+     * los de los datos de antes de recargar.
+     */
+    public static void arrancar(SessionFactory sessionFactory) {
+        Path archivo = Path.of(System.getProperty(PROPIEDAD_DIARIO));
+        List<DiarioEscrituras.Registro> recuperados = new ArrayList<>();
+        try {
+            diario = DiarioEscrituras.abrir(archivo, recuperados);
+        } catch (IOException e) {
+            throw new UncheckedIOException("❌ No se pudo abrir el diario de escrituras " + archivo, e);
+        }
+        EscrituraDiferida.sessionFactory = sessionFactory;
+
+        if (!recuperados.isEmpty()) {
+            // Mismas reglas que al encolar: el último cambio de cada id, borrar gana
+            Map<Integer, List<DiarioEscrituras.Registro>> porId = new LinkedHashMap<>();
+            for (DiarioEscrituras.Registro r : recuperados) {
+                List<DiarioEscrituras.Registro> anteriores = porId.computeIfAbsent(r.id(), id -> new ArrayList<>());
+                if (anteriores.isEmpty() || anteriores.get(anteriores.size() - 1).tipo() != DiarioEscrituras.BORRAR) {
+                    anteriores.add(r);
+                }
+            }
+            anadirRecuperados(porId);
+            int cambios = PENDIENTES.size();
+            aplicarTodo();
+            System.out.println("📒 Diario de escrituras: " + recuperados.size() + " registros de la ejecución anterior, "
+                    + cambios + " cambios recuperados.");
+        }
+
+        hilo = Thread.ofPlatform().name("escritura-diferida").daemon().start(EscrituraDiferida::trabajar);
+    }
+
+    /**
+     * 🔢 LA VERSIÓN DE LO RECUPERADO
+     * Cada registro lleva la versión sobre la que se hizo, y se aplica como en el hilo:
+     * "AND version = versionBase", y si la fila ya no está en ella es un conflicto (se
+     * queda lo de la BD). La única excepción es que la fila vaya por la versión y el texto
+     * que dejó un registro anterior de la misma opinión: ese se llegó a aplicar y el
+     * último se escribe encima, como hace el hilo al juntar cambios.
+     * Los registros del formato 1 no tienen versión: se escriben sobre lo que haya ahora
+     * en la BD, y si la opinión ya no está se descartan.
+     */
+    private static void anadirRecuperados(Map<Integer, List<DiarioEscrituras.Registro>> porId) {
+        List<Integer> ids = new ArrayList<>(porId.keySet());
+        Map<Integer, Object[]> enBd = new HashMap<>();
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            for (int desde = 0; desde < ids.size(); desde += CAMBIOS_POR_LOTE) {
+                session.createQuery("SELECT o.id, o.version, o.opinion FROM ejercicio6.Opinion o WHERE o.id IN (:ids)", Object[].class)
+                        .setParameterList("ids", ids.subList(desde, Math.min(desde + CAMBIOS_POR_LOTE, ids.size())))
+                        .list()
+                        .forEach(fila -> enBd.put((Integer) fila[0], fila));
+            }
+        }
+        for (List<DiarioEscrituras.Registro> registros : porId.values()) {
+            DiarioEscrituras.Registro r = registros.get(registros.size() - 1);
+            Object[] fila = enBd.get(r.id());
+            if (!r.conVersiones()) {
+                if (fila != null) {
+                    int version = (Integer) fila[1];
+                    PENDIENTES.put(r.id(), new Cambio(r.tipo(), r.id(), r.texto(), 0, null, version, version + 1));
+                }
+                continue;
+            }
+            int base = r.versionBase();
+            if (fila != null) {
+                for (DiarioEscrituras.Registro anterior : registros.subList(0, registros.size() - 1)) {
+                    if (anterior.tipo() == DiarioEscrituras.MODIFICAR && anterior.version() == (Integer) fila[1]
+                            && anterior.texto().equals(fila[2])) {
+                        base = anterior.version();
+                    }
+                }
+            }
+            PENDIENTES.put(r.id(), new Cambio(r.tipo(), r.id(), r.texto(), 0, null, base, r.version()));
+        }
+    }
+
+    /**
+     * 📖 UNA LECTURA PARA LUEGO ESCRIBIR
+     * Los pendientes de antes de leer (como {@link #antesDeLeer}) y el lote por el que iba
+     * el hilo. Si mientras se lee la BD el hilo aplica un cambio de esa opinión y lo quita
+     * del mapa, lo leído puede ser de antes del cambio sin que nada lo diga; con el número
+     * de lote, {@link #borrar} / {@link #modificar} lo detectan. Se cierra al terminar.
+     */
+    record Lectura(Map<Integer, Cambio> antes, long lote) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            synchronized (CERROJO) {
+                EN_CURSO.computeIfPresent(lote, (l, n) -> n == 1 ? null : n - 1);
+            }
+        }
+    }
+
+    static Lectura leerParaEscribir() {
+        long lote;
+        synchronized (CERROJO) {
+            lote = lotes;
+            EN_CURSO.merge(lote, 1, Integer::sum);
+        }
+        return new Lectura(antesDeLeer(), lote);
+    }
+
+    /**
+     * 🗑️ APUNTAR UN BORRADO
+     * "leida" es la opinión tal como se leyó en "lectura", con lo pendiente superpuesto.
+     * Vuelve cuando el cambio está en disco; false si desde esa lectura ha cambiado la
+     * opinión (hay que volver a leerla y decidir otra vez).
+     */
+    static boolean borrar(Lectura lectura, Opinion leida) {
+        return encolar(lectura, DiarioEscrituras.BORRAR, leida, null);
+    }
+
+    /** ✏️ APUNTAR UNA MODIFICACIÓN (false como en {@link #borrar}). */
+    static boolean modificar(Lectura lectura, Opinion leida, String texto) {
+        return encolar(lectura, DiarioEscrituras.MODIFICAR, leida, texto);
+    }
+
+    private static boolean encolar(Lectura lectura, byte tipo, Opinion leida, String texto) {
+        int id = leida.getId();
+        long numero;
+        synchronized (CERROJO) {
+            Cambio anterior = PENDIENTES.get(id);
+            int vigente = anterior == null ? leida.getVersion() : anterior.version();
+            if (anterior != null && anterior.borrado() || vigente != leida.getVersion()) {
+                return false;
+            }
+            if (anterior == null && ESCRITAS.getOrDefault(id, -1L) > lectura.lote()) {
+                // El hilo la escribió mientras se leía: la lectura puede ser de antes
+                return false;
+            }
+            // En la BD sigue la versión sobre la que se hizo el primer cambio pendiente
+            int base = anterior == null ? leida.getVersion() : anterior.versionBase();
+            String usuario = tipo == DiarioEscrituras.BORRAR ? leida.getUsuario() : null;
+            Cambio cambio = new Cambio(tipo, id, texto, leida.getPelicula().getId(), usuario, base, vigente + 1);
+            numero = diario.anadir(tipo, id, texto, base, cambio.version());
+            PENDIENTES.put(id, cambio);
+        }
+        diario.sincronizar(numero);
+        AVISO.release();
+        return true;
+    }
+
+    /**
+     * 📸 LOS PENDIENTES DE ANTES DE LEER
+     * Se toman antes de consultar la BD y se pasan a {@link #pendiente} / {@link #superponer}:
+     * si el hilo aplica un cambio y lo quita del mapa mientras la consulta está en curso,
+     * la consulta puede haber leído la fila de antes y el cambio ya no estaría en el mapa.
+     */
+    static Map<Integer, Cambio> antesDeLeer() {
+        return PENDIENTES.isEmpty() ? Map.of() : Map.copyOf(PENDIENTES);
+    }
+
+    /**
+     * Cambio pendiente de la opinión "id", ahora o antes de leer, que la fila leída (en
+     * "version") todavía no tiene; null si no hay. Si la fila ya va por esa versión o una
+     * posterior, el cambio se aplicó mientras se leía y lo de la BD es más nuevo.
+     */
+    static Cambio pendiente(Map<Integer, Cambio> antes, int id, int version) {
+        Cambio ahora = PENDIENTES.get(id);
+        Cambio cambio = ahora != null ? ahora : antes.get(id);
+        return cambio != null && version < cambio.version() ? cambio : null;
+    }
+
+    /** Cambios apuntados que todavía no están en la BD. */
+    public static int pendientes() {
+        return PENDIENTES.size();
+    }
+
+    /**
+     * 🪞 SUPERPONER LOS CAMBIOS PENDIENTES A UN LISTADO DE LA BD
+     * Quita las opiniones borradas y pasa las modificadas por "conCambio". Las filas sin
+     * opinión (id null) se dejan como están.
+     */
+    static <T> List<T> superponer(Map<Integer, Cambio> antes, List<T> filas, ToIntFunction<T> id, ToIntFunction<T> version,
+                                  BiFunction<T, Cambio, T> conCambio) {
+        if (antes.isEmpty() && PENDIENTES.isEmpty() || filas.isEmpty()) {
+            return filas;
+        }
+        List<T> resultado = new ArrayList<>(filas.size());
+        for (T fila : filas) {
+            int clave = id.applyAsInt(fila);
+            Cambio cambio = clave == 0 ? null : pendiente(antes, clave, version.applyAsInt(fila));
+            if (cambio == null) {
+                resultado.add(fila);
+            } else if (!cambio.borrado()) {
+                resultado.add(conCambio.apply(fila, cambio));
+            }
+        }
+        return resultado;
+    }
+
+    /** 🧵 El hilo: espera un aviso, deja pasar unos milisegundos para juntar más y aplica. */
+    private static void trabajar() {
+        while (!parando) {
+            try {
+                AVISO.acquire();
+                if (parando) {
+                    return;
+                }
+                Thread.sleep(ESPERA_AGRUPAR_MS);
+                AVISO.drainPermits();
+                while (!PENDIENTES.isEmpty()) {
+                    aplicarLote();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                // La BD no está disponible: se reintenta en un segundo con lo que haya pendiente
+                System.err.println("⚠️ No se pudieron aplicar las escrituras pendientes (" + PENDIENTES.size() + "): " + e.getMessage());
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                AVISO.release();
+            }
+        }
+    }
+
+    /**
+     * 📦 APLICAR UN LOTE
+     * Los primeros {@link #CAMBIOS_POR_LOTE} pendientes en una transacción. Cada uno se
+     * quita del mapa solo si no ha llegado otro cambio a esa opinión mientras tanto.
+     * Los borrados que de verdad quitan una fila se restan de {@link Agregados}.
+     * Los que no encuentran la fila en su versión (otra instancia la cambió o la borró)
+     * no se aplican: se cuentan como conflictos y el índice de búsqueda vuelve a lo que hay en la BD.
+     * Si la BD rechaza el lote por los datos (SQLState 22 / 23, p. ej. un texto que no cabe
+     * en la columna), se aplican de uno en uno y el que sigue fallando se descarta como un
+     * conflicto: si no, ese cambio tumbaría el lote en cada reintento y nada avanzaría.
+     */
+    private static void aplicarLote() {
+        synchronized (APLICANDO) {
+            aplicarLoteEnOrden();
+        }
+    }
+
+    private static void aplicarLoteEnOrden() {
+        Map<Integer, Cambio> lote = new LinkedHashMap<>();
+        for (Cambio cambio : PENDIENTES.values()) {
+            lote.put(cambio.id(), cambio);
+            if (lote.size() == CAMBIOS_POR_LOTE) {
+                break;
+            }
+        }
+        Set<Cambio> enConflicto = new HashSet<>();
+        Set<Cambio> descartados = new HashSet<>();
+        try {
+            Metricas.medirAccion("aplicarEscriturasDiferidas", () -> ejecutar(lote.values(), enConflicto));
+        } catch (RuntimeException e) {
+            if (rechazoDeLaBd(e) == null) {
+                throw e;
+            }
+            aplicarDeUnoEnUno(lote, enConflicto, descartados);
+        }
+        asentar(lote, enConflicto, descartados);
+    }
+
+    /**
+     * Cada cambio del lote en su propia transacción. Si la BD deja de responder a mitad,
+     * se asienta lo ya hecho y lo demás se queda pendiente para el siguiente intento.
+     */
+    private static void aplicarDeUnoEnUno(Map<Integer, Cambio> lote, Set<Cambio> enConflicto, Set<Cambio> descartados) {
+        Set<Integer> hechos = new HashSet<>();
+        for (Cambio c : lote.values()) {
+            try {
+                Metricas.medirAccion("aplicarEscriturasDiferidas", () -> ejecutar(List.of(c), enConflicto));
+            } catch (RuntimeException e) {
+                SQLException rechazo = rechazoDeLaBd(e);
+                if (rechazo == null) {
+                    lote.keySet().retainAll(hechos);
+                    asentar(lote, enConflicto, descartados);
+                    throw e;
+                }
+                descartados.add(c);
+                System.err.println("⚠️ Cambio diferido descartado: la BD no admite " + (c.borrado() ? "el borrado" : "la modificación")
+                        + " de la opinión " + c.id() + " (" + rechazo.getMessage() + "). Se queda lo que hay en la BD.");
+            }
+            hechos.add(c.id());
+        }
+    }
+
+    /** Los cambios en una transacción; los que no encuentran la fila en su versión van a "enConflicto". */
+    private static void ejecutar(Collection<Cambio> cambios, Set<Cambio> enConflicto) {
+        List<Cambio> borrados = new ArrayList<>();
+        List<Cambio> modificados = new ArrayList<>();
+        cambios.forEach(c -> (c.borrado() ? borrados : modificados).add(c));
+
+        int[][] filas = new int[2][];
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            try {
+                session.doWork(conexion -> {
+                    try (PreparedStatement borrar = conexion.prepareStatement("DELETE FROM opiniones WHERE id = ? AND version = ?");
+                         PreparedStatement modificar = conexion.prepareStatement(
+                                 "UPDATE opiniones SET opinion = ?, version = ? WHERE id = ? AND version = ?")) {
+                        for (Cambio c : borrados) {
+                            borrar.setInt(1, c.id());
+                            borrar.setInt(2, c.versionBase());
+                            borrar.addBatch();
+                        }
+                        for (Cambio c : modificados) {
+                            modificar.setString(1, c.texto());
+                            modificar.setInt(2, c.version());
+                            modificar.setInt(3, c.id());
+                            modificar.setInt(4, c.versionBase());
+                            modificar.addBatch();
+                        }
+                        filas[0] = borrados.isEmpty() ? new int[0] : borrar.executeBatch();
+                        filas[1] = modificados.isEmpty() ? new int[0] : modificar.executeBatch();
+                    }
+                    ArchivoInstantanea.olvidarMarca(conexion);
+                });
+                session.getTransaction().commit();
+            } catch (RuntimeException e) {
+                if (session.getTransaction().getStatus().canRollback()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+        }
+        ArchivoInstantanea.catalogoCambiado();
+
+        // SUCCESS_NO_INFO (-2): el driver no dice cuántas filas; se da por aplicado
+        int conflictos = 0;
+        for (int i = 0; i < borrados.size(); i++) {
+            Cambio c = borrados.get(i);
+            if (filas[0][i] == 0) {
+                enConflicto.add(c);
+                conflictos++;
+            } else if (c.usuario() != null) {
+                Agregados.opinionBorrada(c.id(), c.peliculaId(), c.usuario());
+            }
+        }
+        for (int i = 0; i < modificados.size(); i++) {
+            if (filas[1][i] == 0) {
+                enConflicto.add(modificados.get(i));
+                conflictos++;
+            }
+        }
+        if (conflictos > 0) {
+            for (int i = 0; i < conflictos; i++) {
+                Metricas.conflicto();
+            }
+            System.err.println("⚠️ " + conflictos + " cambios diferidos sin aplicar: otra instancia "
+                    + "cambió o borró esas opiniones antes. Se queda lo que hay en la BD.");
+        }
+    }
+
+    /**
+     * El error de la BD si falla por los datos (SQLState 22 o 23) y no porque la BD no esté;
+     * null si no. Reintentar no lo arreglaría.
+     */
+    private static SQLException rechazoDeLaBd(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            for (SQLException sql = causa instanceof SQLException s ? s : null; sql != null; sql = sql.getNextException()) {
+                String estado = sql.getSQLState();
+                if (estado != null && (estado.startsWith("22") || estado.startsWith("23"))) {
+                    return sql;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Quita del mapa lo aplicado, lo que chocó y lo descartado, y vacía el diario si no queda nada. */
+    private static void asentar(Map<Integer, Cambio> lote, Set<Cambio> enConflicto, Set<Cambio> descartados) {
+        List<Integer> reindexar = new ArrayList<>();
+        synchronized (CERROJO) {
+            lotes++;
+            for (Cambio c : lote.values()) {
+                if (enConflicto.contains(c) || descartados.contains(c)) {
+                    // Si llegó otro después, se hizo sobre la misma versión y también chocará
+                    PENDIENTES.remove(c.id(), c);
+                    if (!PENDIENTES.containsKey(c.id())) {
+                        reindexar.add(c.id());
+                    }
+                    continue;
+                }
+                if (!EN_CURSO.isEmpty()) {
+                    ESCRITAS.put(c.id(), lotes);
+                }
+                if (!PENDIENTES.remove(c.id(), c)) {
+                    // Llegó otro cambio mientras se aplicaba este: en la BD ya está la versión de este
+                    PENDIENTES.computeIfPresent(c.id(), (id, nuevo) -> nuevo.sobreVersion(c.version()));
+                }
+            }
+            // Las lecturas que empezaron después de un lote ya ven lo que escribió
+            long masAntigua = EN_CURSO.isEmpty() ? lotes : EN_CURSO.firstKey();
+            ESCRITAS.values().removeIf(l -> l <= masAntigua);
+            if (PENDIENTES.isEmpty()) {
+                diario.vaciar();
+            }
+        }
+        if (!reindexar.isEmpty()) {
+            reindexar(reindexar);
+        }
+    }
+
+    /**
+     * El índice de búsqueda tenía el texto del cambio descartado: se vuelve a poner el de la BD,
+     * con su versión (la misma o posterior a la del cambio descartado, así que se aplica).
+     */
+    private static void reindexar(List<Integer> ids) {
+        try (Session session = sessionFactory.openSession()) {
+            session.setDefaultReadOnly(true);
+            List<Object[]> textos = session.createQuery(
+                            "SELECT o.id, o.version, o.opinion FROM ejercicio6.Opinion o WHERE o.id IN (:ids)", Object[].class)
+                    .setParameterList("ids", ids)
+                    .list();
+            Set<Integer> borradas = new HashSet<>(ids);
+            for (Object[] fila : textos) {
+                IndiceBusqueda.opinionModificada((Integer) fila[0], (Integer) fila[1], (String) fila[2]);
+                borradas.remove(fila[0]);
+            }
+            borradas.forEach(id -> IndiceBusqueda.opinionBorrada(id, IndiceBusqueda.BORRADA_DEL_TODO));
+        }
+    }
+
+    /**
+     * ⏩ APLICAR TODO LO PENDIENTE YA
+     * Antes de recargar el catálogo (los ids pendientes son de los datos actuales) y al salir.
+     */
+    public static void aplicarTodo() {
+        if (diario == null) {
+            return;
+        }
+        while (!PENDIENTES.isEmpty()) {
+            aplicarLote();
+        }
+        synchronized (CERROJO) {
+            if (PENDIENTES.isEmpty()) {
+                diario.vaciar();
+            }
+        }
+    }
+
+    /** 🛑 PARAR: aplica lo pendiente y cierra el diario. */
+    public static void parar() {
+        if (diario == null) {
+            return;
+        }
+        if (hilo != null) {
+            // Sin interrupt: el hilo termina el lote que esté aplicando y sale
+            parando = true;
+            AVISO.release();
+            try {
+                hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        aplicarTodo();
+        try {
+            diario.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo cerrar el diario de escrituras: " + e.getMessage());
+        }
+        diario = null;
+    }
+}
@@ -0,0 +1,16 @@
+package ejercicio6;
+
+import java.time.Instant;
+
+/**
+ * 🎬 OPINIONES DE UNA PELÍCULA
+ * Fila del ranking de películas más opinadas: cuántas opiniones tiene, de cuántos
+ * usuarios distintos y cuándo cambió la última (ver {@link Agregados}).
+ */
+public record EstadisticaPelicula(FichaPelicula pelicula, int opiniones, int usuarios, Instant actualizada) {
+
+    @Override
+    public String toString() {
+        return pelicula + ": " + opiniones + " opiniones de " + usuarios + " usuarios (última el " + actualizada + ")";
+    }
+}
@@ -0,0 +1,13 @@
+package ejercicio6;
+
+/**
+ * 👤 OPINIONES DE UN USUARIO
+ * Fila del ranking de usuarios más activos (ver {@link Agregados}).
+ */
+public record EstadisticaUsuario(String usuario, int opiniones) {
+
+    @Override
+    public String toString() {
+        return usuario + " (" + opiniones + " opiniones)";
+    }
+}
@@ -0,0 +1,139 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 📤 EXPORTADOR DE CSV EN STREAMING
+ * Cada exportación es una consulta de proyección recorrida con un cursor de solo
+ * avance ({@link ejercicio6#TAMANO_FETCH} filas por viaje) que se escribe según llega:
+ * - Nada se acumula en listas: la memoria no crece con el tamaño de la exportación.
+ * - La sesión se vacía cada {@link ejercicio6#TAMANO_FETCH} filas.
+ * - Se escribe en UTF-8 con un buffer de {@link #TAMANO_BUFFER} bytes y, con
+ *   -Dejercicio6.exportar.gzip=true, comprimido en gzip (el archivo acaba en .csv.gz).
+ * Los campos con ";", comillas o saltos de línea se escriben entre comillas, de forma
+ * que {@link LectorCSV} los vuelve a leer igual.
+ */
+public class ExportadorCSV {
+
+    public static final String PROPIEDAD_GZIP = "ejercicio6.exportar.gzip";
+
+    /** Buffer del escritor (1 MB). */
+    static final int TAMANO_BUFFER = 1 << 20;
+
+    /** ¿Se comprimen las exportaciones? */
+    public static boolean comprimir() {
+        return Boolean.getBoolean(PROPIEDAD_GZIP);
+    }
+
+    /** "nombre.csv" o "nombre.csv.gz" según {@link #comprimir()}. */
+    public static File archivo(String nombreSinExtension) {
+        return new File(nombreSinExtension + (comprimir() ? ".csv.gz" : ".csv"));
+    }
+
+    /**
+     * 💬 OPINIONES DE UN USUARIO
+     * Formato: Título;Opinión (en el orden de la filmoteca). Devuelve las filas escritas.
+     */
+    public static long exportarOpinionesUsuario(Session session, String usuario, File destino) throws IOException {
+        return exportar(session, destino, session.createQuery(
+                        "SELECT p.titulo, o.opinion FROM ejercicio6.Opinion o JOIN o.pelicula p "
+                                + "WHERE o.usuario = :usuario ORDER BY p.id, o.id", Object[].class)
+                .setParameter("usuario", usuario));
+    }
+
+    /**
+     * 🏢 CARTELERA DE UN CINE
+     * Formato: Cine;Título;Director;Año
+     */
+    public static long exportarCartelera(Session session, String cine, File destino) throws IOException {
+        return exportar(session, destino, session.createQuery(
+                        "SELECT c.cine, p.titulo, p.director, p.anyo FROM ejercicio6.Cine c JOIN c.pelicula p "
+                                + "WHERE c.cine = :nombre ORDER BY p.titulo", Object[].class)
+                .setParameter("nombre", cine));
+    }
+
+    /**
+     * 🗃️ TODAS LAS OPINIONES, AGRUPADAS POR USUARIO
+     * Formato: Usuario;Título;Opinión, ordenado por usuario (índice idx_opiniones_usuario)
+     * y dentro de cada usuario en el orden de la filmoteca.
+     */
+    public static long exportarTodasLasOpiniones(Session session, File destino) throws IOException {
+        return exportar(session, destino, session.createQuery(
+                "SELECT o.usuario, p.titulo, o.opinion FROM ejercicio6.Opinion o JOIN o.pelicula p "
+                        + "ORDER BY o.usuario, p.id, o.id", Object[].class));
+    }
+
+    /**
+     * 🔁 RECORRER LA CONSULTA Y ESCRIBIR CADA FILA
+     */
+    private static long exportar(Session session, File destino, Query<Object[]> consulta) throws IOException {
+        long filas = 0;
+        session.beginTransaction();
+        try (Writer salida = abrir(destino);
+             ScrollableResults cursor = consulta
+                     .setFetchSize(ejercicio6.TAMANO_FETCH)
+                     .setReadOnly(true)
+                     .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (cursor.next()) {
+                escribirLinea(salida, cursor.get());
+                if (++filas % ejercicio6.TAMANO_FETCH == 0) {
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+            Metricas.filasLeidas(filas);
+        } catch (IOException | RuntimeException e) {
+            session.getTransaction().rollback();
+            throw e;
+        } finally {
+            session.clear();
+        }
+        return filas;
+    }
+
+    /** Escritor UTF-8 con buffer grande, sobre gzip si está activado. */
+    static Writer abrir(File destino) throws IOException {
+        OutputStream archivo = new FileOutputStream(destino);
+        if (destino.getName().endsWith(".gz")) {
+            archivo = new GZIPOutputStream(archivo, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(archivo, StandardCharsets.UTF_8), TAMANO_BUFFER);
+    }
+
+    /** Escribe los campos separados por ";" y un salto de línea. */
+    static void escribirLinea(Writer salida, Object[] campos) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) {
+                salida.write(';');
+            }
+            escribirCampo(salida, campos[i] == null ? "" : campos[i].toString());
+        }
+        salida.write('\n');
+    }
+
+    /** Entre comillas (y con "" para las comillas) solo si hace falta. */
+    static void escribirCampo(Writer salida, String campo) throws IOException {
+        boolean comillas = campo.indexOf(';') >= 0 || campo.indexOf('"') >= 0
+                || campo.indexOf('\n') >= 0 || campo.indexOf('\r') >= 0;
+        if (!comillas) {
+            salida.write(campo);
+            return;
+        }
+        salida.write('"');
+        salida.write(campo.replace("\"", "\"\""));
+        salida.write('"');
+    }
+}
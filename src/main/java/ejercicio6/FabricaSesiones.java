@@ -0,0 +1,215 @@
+package ejercicio6;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.hibernate.MappingException;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.cfgxml.spi.MappingReference;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 🏭 FÁBRICA DE SESSIONFACTORY
+ * Construye la SessionFactory a partir de hibernate.cfg.xml con el pool HikariCP.
+ * Cualquier propiedad "hibernate.*" pasada como -D (p. ej.
+ * -Dhibernate.hikari.maximumPoolSize=20) tiene prioridad sobre el archivo; con
+ * -Dhibernate.temp.use_jdbc_metadata_defaults=false no se consultan los metadatos JDBC
+ * al construir (el dialecto ya está fijado en el archivo).
+ * Todas las SessionFactory salen con el contador de entidades cargadas de {@link Metricas}.
+ */
+public class FabricaSesiones {
+
+    /** Prefijo de las propiedades de HikariCP que se pasan tal cual al driver JDBC. */
+    static final String PREFIJO_DATASOURCE = "hibernate.hikari.dataSource.";
+
+    /** Carpeta donde guardar los mappings ya procesados entre ejecuciones; sin ella no se guardan. */
+    public static final String PROPIEDAD_CACHE_MAPEOS = "ejercicio6.mapeos.cache";
+
+    /**
+     * 🔧 SESSIONFACTORY NORMAL (MySQL, según hibernate.cfg.xml)
+     */
+    public static SessionFactory crear() {
+        return crear(new Properties());
+    }
+
+    /**
+     * 🔧 SESSIONFACTORY CON PROPIEDADES EXTRA
+     * Orden de prioridad: "extra" > propiedades del sistema > hibernate.cfg.xml.
+     */
+    public static SessionFactory crear(Properties extra) {
+        Configuration configuration = new Configuration().configure("hibernate.cfg.xml");
+        for (String clave : System.getProperties().stringPropertyNames()) {
+            if (clave.startsWith("hibernate.")) {
+                configuration.setProperty(clave, System.getProperty(clave));
+            }
+        }
+        configuration.addProperties(extra);
+        return construir(configuration);
+    }
+
+    /**
+     * 🧵 SESSIONFACTORY NORMAL EN OTRO HILO
+     * Para ir haciendo en el hilo principal lo que no necesita la BD mientras se
+     * conecta el pool y se procesan los mappings. El resultado, con {@link #esperar}.
+     */
+    public static Future<SessionFactory> crearEnSegundoPlano() {
+        FutureTask<SessionFactory> tarea = new FutureTask<>(() -> Metricas.medir("crearSessionFactory", () -> {
+            long inicio = System.nanoTime();
+            SessionFactory sessionFactory = crear();
+            System.out.println("🏭 SessionFactory lista en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+            return sessionFactory;
+        }));
+        Thread.ofPlatform().name("sessionfactory").daemon().start(tarea);
+        return tarea;
+    }
+
+    /** Espera a la SessionFactory de {@link #crearEnSegundoPlano}; si falló, lanza el mismo error. */
+    public static SessionFactory esperar(Future<SessionFactory> futura) {
+        try {
+            return futura.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando la SessionFactory", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException error) {
+                throw error;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 🏗️ CONSTRUIR
+     * Los mappings son los {@code <mapping>} de hibernate.cfg.xml, que Hibernate lee y
+     * procesa una vez al construir. Con -Dejercicio6.mapeos.cache=carpeta se copian ahí
+     * y se cargan con addCacheableFile: Hibernate guarda al lado cada .hbm.xml ya
+     * procesado (.hbm.xml.bin) y en los arranques siguientes lo deserializa en vez de
+     * volver a validar y procesar el XML, mientras el .xml no cambie.
+     */
+    private static SessionFactory construir(Configuration configuration) {
+        String cache = System.getProperty(PROPIEDAD_CACHE_MAPEOS);
+        if (cache != null) {
+            usarMapeosCacheados(configuration, new File(cache));
+        }
+        return conMetricas(configuration.buildSessionFactory());
+    }
+
+    /**
+     * 💾 MAPPINGS DE hibernate.cfg.xml COMO ARCHIVOS CACHEABLES
+     * Cada recurso se copia a la carpeta solo si ha cambiado (si no, la fecha del .xml
+     * invalidaría su .bin) y se quita de la lista de cfg.xml para que no se añada dos veces.
+     */
+    private static void usarMapeosCacheados(Configuration configuration, File carpeta) {
+        Iterator<MappingReference> mapeos = configuration.getStandardServiceRegistryBuilder()
+                .getAggregatedCfgXml().getMappingReferences().iterator();
+        while (mapeos.hasNext()) {
+            MappingReference mapeo = mapeos.next();
+            if (mapeo.getType() == MappingReference.Type.RESOURCE) {
+                configuration.addCacheableFile(copiarSiCambia(mapeo.getReference(), carpeta));
+                mapeos.remove();
+            }
+        }
+    }
+
+    private static File copiarSiCambia(String recurso, File carpeta) {
+        try (InputStream entrada = FabricaSesiones.class.getClassLoader().getResourceAsStream(recurso)) {
+            if (entrada == null) {
+                throw new MappingException("No se encuentra el mapping " + recurso);
+            }
+            byte[] contenido = entrada.readAllBytes();
+            File copia = new File(carpeta, recurso);
+            if (!copia.isFile() || !Arrays.equals(contenido, Files.readAllBytes(copia.toPath()))) {
+                Files.createDirectories(copia.getParentFile().toPath());
+                Files.write(copia.toPath(), contenido);
+            }
+            return copia;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo copiar el mapping " + recurso + " a " + carpeta, e);
+        }
+    }
+
+    /**
+     * 🧪 SESSIONFACTORY SOBRE H2 EN MEMORIA
+     * Mismo pool y mismos mappings, pero contra "jdbc:h2:mem:nombre" con el esquema
+     * generado desde los .hbm.xml. Necesita H2 en el classpath (perfil "bench").
+     * Las opciones del driver de MySQL (cachePrepStmts...) no se pasan a H2.
+     */
+    public static SessionFactory crearH2(String nombre) {
+        Properties h2 = new Properties();
+        h2.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        h2.setProperty("hibernate.connection.url", "jdbc:h2:mem:" + nombre + ";DB_CLOSE_DELAY=-1");
+        h2.setProperty("hibernate.connection.username", "sa");
+        h2.setProperty("hibernate.connection.password", "");
+        h2.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        h2.setProperty("hibernate.hbm2ddl.auto", "create");
+
+        Configuration configuration = new Configuration().configure("hibernate.cfg.xml");
+        configuration.getProperties().stringPropertyNames().stream()
+                .filter(clave -> clave.startsWith(PREFIJO_DATASOURCE))
+                .forEach(clave -> configuration.getProperties().remove(clave));
+        configuration.addProperties(h2);
+        return construir(configuration);
+    }
+
+    /**
+     * 📊 CONTAR LAS ENTIDADES CARGADAS POR OPERACIÓN
+     * Hibernate no avisa a la SessionEventListener de cada entidad, así que se añade
+     * un PostLoadEventListener (salta tanto si viene de la BD como de la caché).
+     */
+    private static SessionFactory conMetricas(SessionFactory sessionFactory) {
+        sessionFactory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                .getService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, (PostLoadEventListener) evento -> Metricas.entidadCargada());
+        return sessionFactory;
+    }
+
+    /**
+     * 🏊 POOL DE CONEXIONES
+     * Devuelve el HikariDataSource que hay debajo de la SessionFactory, o null si no se usa Hikari.
+     */
+    public static HikariDataSource pool(SessionFactory sessionFactory) {
+        ConnectionProvider proveedor = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        if (proveedor == null || !proveedor.isUnwrappableAs(HikariDataSource.class)) {
+            return null;
+        }
+        return proveedor.unwrap(HikariDataSource.class);
+    }
+
+    /**
+     * 📊 ESTADO DEL POOL
+     * Conexiones activas, libres, totales e hilos esperando una conexión.
+     */
+    public static void imprimirPool(SessionFactory sessionFactory, PrintStream salida) {
+        HikariDataSource pool = pool(sessionFactory);
+        if (pool == null || pool.getHikariPoolMXBean() == null) {
+            salida.println("🏊 No hay pool HikariCP activo.");
+            return;
+        }
+        HikariPoolMXBean estado = pool.getHikariPoolMXBean();
+        salida.println("🏊 Pool '" + pool.getPoolName() + "': " + estado.getActiveConnections() + " activas, "
+                + estado.getIdleConnections() + " libres, " + estado.getTotalConnections() + " de "
+                + pool.getMaximumPoolSize() + " como máximo, " + estado.getThreadsAwaitingConnection()
+                + " hilos esperando");
+    }
+}
@@ -0,0 +1,16 @@
+package ejercicio6;
+
+/**
+ * 🎞️ FICHA DE UNA PELÍCULA (SOLO LECTURA)
+ * Lo que se imprime de una película en los listados, sacado con
+ * "SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo)":
+ * sin entidad gestionada, sin instantánea para el dirty checking y sin colecciones.
+ */
+public record FichaPelicula(int id, String titulo, String director, int anyo) {
+
+    /** "Matrix (Lana Wachowski, 1999)" */
+    @Override
+    public String toString() {
+        return titulo + " (" + director + ", " + anyo + ")";
+    }
+}
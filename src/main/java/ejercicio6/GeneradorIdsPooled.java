@@ -0,0 +1,53 @@
+package ejercicio6;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * 🔢 GENERADOR DE IDS POR BLOQUES
+ * Sustituye a "increment" (SELECT max(id) en memoria de una sola JVM).
+ * Guarda el siguiente id de cada tabla en la tabla {@link #TABLA}, y cada JVM
+ * reserva un bloque de ids de golpe con el optimizador "pooled-lo":
+ * - Varias instancias pueden insertar a la vez sin repetir claves.
+ * - Los ids se conocen antes del INSERT, así que el batching JDBC sigue funcionando.
+ * El tamaño del bloque se configura con "ejercicio6.id.tamano_bloque"
+ * (en hibernate.cfg.xml o como -D), y en el .hbm.xml solo hay que indicar el segment_value.
+ */
+public class GeneradorIdsPooled extends TableGenerator {
+
+    public static final String TABLA = "id_generadores";
+    public static final String COLUMNA_ENTIDAD = "entidad";
+    public static final String COLUMNA_SIGUIENTE = "siguiente";
+
+    public static final String PROPIEDAD_TAMANO_BLOQUE = "ejercicio6.id.tamano_bloque";
+    public static final int TAMANO_BLOQUE_POR_DEFECTO = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.putIfAbsent(TABLE_PARAM, TABLA);
+        params.putIfAbsent(SEGMENT_COLUMN_PARAM, COLUMNA_ENTIDAD);
+        params.putIfAbsent(VALUE_COLUMN_PARAM, COLUMNA_SIGUIENTE);
+        params.putIfAbsent(OPT_PARAM, "pooled-lo");
+        params.putIfAbsent(INCREMENT_PARAM, String.valueOf(tamanoBloque(serviceRegistry)));
+        super.configure(type, params, serviceRegistry);
+    }
+
+    /**
+     * 📏 TAMAÑO DEL BLOQUE
+     * Prioridad: -Dejercicio6.id.tamano_bloque, después hibernate.cfg.xml, después 50.
+     */
+    static int tamanoBloque(ServiceRegistry serviceRegistry) {
+        Integer sistema = Integer.getInteger(PROPIEDAD_TAMANO_BLOQUE);
+        if (sistema != null) {
+            return sistema;
+        }
+        return ConfigurationHelper.getInt(PROPIEDAD_TAMANO_BLOQUE,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), TAMANO_BLOQUE_POR_DEFECTO);
+    }
+}
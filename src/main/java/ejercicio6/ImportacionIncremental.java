@@ -0,0 +1,655 @@
+package ejercicio6;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🔄 IMPORTACIÓN INCREMENTAL
+ * Alternativa a borrar e importar todo en cada arranque (-Dejercicio6.modo.carga=incremental):
+ * 1. Cada CSV tiene una huella en la tabla {@link #TABLA_HUELLAS} (tamaño, fecha y SHA-256).
+ *    Si tamaño y fecha no han cambiado el archivo ni se abre; si cambió la fecha pero
+ *    el hash es el mismo, tampoco se importa.
+ * 2. Si el archivo cambió, se compara fila a fila con la tabla por su clave natural
+ *    (titulo / titulo + usuario / cine + titulo) y solo se escriben las diferencias:
+ *    INSERT ... ON DUPLICATE KEY UPDATE (MERGE en H2) para altas y cambios, y DELETE
+ *    para lo que ya no está en el CSV.
+ * Si cambian las películas se vuelven a comparar también opiniones y cines, porque
+ * filas que antes se ignoraban (título desconocido) pueden tener ahora película.
+ * ⚠️ Los cambios hechos desde el menú se mantienen mientras su CSV no cambie.
+ */
+public class ImportacionIncremental {
+
+    public static final String MODO_INCREMENTAL = "incremental";
+
+    public static final String TABLA_HUELLAS = "importaciones";
+
+    /** Filas por executeBatch y por commit. */
+    static final int FILAS_POR_LOTE = 1000;
+
+    /** ¿Está activado el modo incremental? */
+    public static boolean activado() {
+        return MODO_INCREMENTAL.equalsIgnoreCase(System.getProperty(RecargaSombra.PROPIEDAD_MODO, RecargaSombra.MODO_TRUNCAR));
+    }
+
+    /**
+     * 📊 RESULTADO DE UN ARCHIVO
+     */
+    public record Cambios(String archivo, boolean sinCambios, long insertadas, long actualizadas,
+                          long borradas, long iguales, long ignoradas, long millis) {
+
+        @Override
+        public String toString() {
+            if (sinCambios) {
+                return archivo + ": sin cambios (" + millis + " ms)";
+            }
+            return archivo + ": +" + insertadas + " nuevas, ~" + actualizadas + " modificadas, -" + borradas
+                    + " borradas, " + iguales + " iguales en " + millis + " ms"
+                    + (ignoradas > 0 ? " ⚠️ " + ignoradas + " filas ignoradas: película desconocida" : "");
+        }
+    }
+
+    /**
+     * 🚀 IMPORTAR SOLO LO QUE HA CAMBIADO
+     * Los archivos se procesan en el orden recibido (las películas tienen que ir antes).
+     */
+    public static List<Cambios> importar(SessionFactory sessionFactory, ArchivoCSV... archivos) {
+        ConnectionProvider proveedor = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        boolean mysql = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+
+        List<Cambios> resultado = new ArrayList<>();
+        Connection conexion = null;
+        try {
+            conexion = proveedor.getConnection();
+            conexion.setAutoCommit(false);
+            crearTablaHuellas(conexion);
+
+            boolean peliculasCambiadas = false;
+            for (ArchivoCSV archivo : archivos) {
+                long inicio = System.nanoTime();
+                File csv = archivo.archivo();
+                Huella actual = Huella.rapida(csv);
+                Huella guardada = leerHuella(conexion, csv.getName());
+                boolean forzar = archivo.dependeDePeliculas() && peliculasCambiadas;
+
+                if (!forzar && guardada != null && guardada.mismoArchivo(actual)) {
+                    resultado.add(new Cambios(csv.getName(), true, 0, 0, 0, 0, 0, millisDesde(inicio)));
+                    continue;
+                }
+                actual = actual.conHash(csv);
+                if (!forzar && guardada != null && guardada.mismoContenido(actual)) {
+                    guardarHuella(conexion, csv.getName(), actual);
+                    conexion.commit();
+                    resultado.add(new Cambios(csv.getName(), true, 0, 0, 0, 0, 0, millisDesde(inicio)));
+                    continue;
+                }
+
+                Cambios cambios = aplicarDiferencias(conexion, mysql, archivo, inicio);
+                guardarHuella(conexion, csv.getName(), actual);
+                conexion.commit();
+                resultado.add(cambios);
+                if (archivo == ArchivoCSV.PELICULAS && (cambios.insertadas + cambios.actualizadas + cambios.borradas) > 0) {
+                    peliculasCambiadas = true;
+                }
+            }
+        } catch (SQLException e) {
+            deshacer(conexion);
+            throw new IllegalStateException("❌ Error en la importación incremental", e);
+        } catch (RuntimeException e) {
+            deshacer(conexion);
+            throw e;
+        } finally {
+            if (conexion != null) {
+                try {
+                    conexion.setAutoCommit(true);
+                    proveedor.closeConnection(conexion);
+                } catch (SQLException e) {
+                    System.err.println("⚠️ No se pudo devolver la conexión al pool: " + e.getMessage());
+                }
+            }
+        }
+
+        CacheCatalogo.vaciar(sessionFactory);
+        resultado.forEach(cambios -> System.out.println("🔄 " + cambios));
+        return resultado;
+    }
+
+    /**
+     * 🧹 OLVIDAR TODAS LAS HUELLAS
+     * Lo llaman los otros modos de carga: después de truncar o de intercambiar tablas
+     * la próxima importación incremental tiene que volver a comparar.
+     */
+    public static void olvidarHuellas(Connection conexion) throws SQLException {
+        crearTablaHuellas(conexion);
+        try (Statement sql = conexion.createStatement()) {
+            sql.executeUpdate("DELETE FROM " + TABLA_HUELLAS);
+        }
+    }
+
+    static void crearTablaHuellas(Connection conexion) throws SQLException {
+        try (Statement sql = conexion.createStatement()) {
+            sql.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLA_HUELLAS + " ("
+                    + "archivo VARCHAR(255) NOT NULL PRIMARY KEY, "
+                    + "tamano BIGINT NOT NULL, "
+                    + "modificado BIGINT NOT NULL, "
+                    + "hash VARCHAR(64) NOT NULL)");
+        }
+    }
+
+    /**
+     * 🔍 COMPARAR UN CSV CON SU TABLA Y APLICAR LAS DIFERENCIAS
+     * Se indexan las filas actuales (clave natural y resto de columnas) en un
+     * {@link IndiceClaves} y se recorre el CSV una vez. Cada fila del CSV se empareja
+     * con una fila de la tabla con la misma clave que aún no se haya usado, prefiriendo
+     * la que además tenga los mismos valores:
+     * - sin pareja → alta; pareja con otros valores → modificación; pareja igual → nada;
+     * - lo que se queda sin pareja en la tabla → se borra (las películas, con sus opiniones y cines).
+     * La clave no tiene por qué ser única (un usuario puede opinar dos veces de la misma
+     * película): igual que en la importación completa, cada fila repetida del CSV tiene la suya.
+     */
+    private static Cambios aplicarDiferencias(Connection conexion, boolean mysql, ArchivoCSV archivo, long inicio) throws SQLException {
+        String tabla = archivo.tabla();
+        IndiceClaves existentes = new IndiceClaves(archivo == ArchivoCSV.PELICULAS ? 1 : 2);
+        Map<String, Integer> idsPorTitulo = archivo.dependeDePeliculas() ? leerIdsPorTitulo(conexion) : new HashMap<>();
+
+        try (Statement consulta = conexion.createStatement()) {
+            consulta.setFetchSize(ejercicio6.TAMANO_FETCH);
+            try (ResultSet filas = consulta.executeQuery(switch (archivo) {
+                case PELICULAS -> "SELECT id, titulo, director, anyo FROM peliculas";
+                case OPINIONES -> "SELECT o.id, p.titulo, o.usuario, o.opinion FROM opiniones o JOIN peliculas p ON p.id = o.pelicula_id";
+                case CINES -> "SELECT c.id, c.cine, p.titulo FROM cines c JOIN peliculas p ON p.id = c.pelicula_id";
+            })) {
+                while (filas.next()) {
+                    existentes.anadir(filas.getInt(1), switch (archivo) {
+                        case PELICULAS -> new String[]{filas.getString(2), filas.getString(3), filas.getString(4)};
+                        case OPINIONES -> new String[]{filas.getString(2), filas.getString(3), filas.getString(4)};
+                        case CINES -> new String[]{filas.getString(2), filas.getString(3)};
+                    });
+                }
+            }
+        }
+
+        long[] contadores = new long[4]; // insertadas, actualizadas, iguales, ignoradas
+        RecargaSombra.ReservaIds ids = new RecargaSombra.ReservaIds(conexion, tabla);
+        File csv = archivo.archivo();
+        try (PreparedStatement upsert = conexion.prepareStatement(sentenciaUpsert(archivo, mysql))) {
+            int[] pendientes = {0};
+            LectorCSV.recorrer(csv, registro -> {
+                try {
+                    String[] campos = registro.campos();
+                    Integer pelicula = null;
+                    String[] fila;
+                    switch (archivo) {
+                        case PELICULAS -> fila = new String[]{campos[0], campos[1], String.valueOf(Integer.parseInt(campos[2]))};
+                        case OPINIONES -> {
+                            pelicula = idsPorTitulo.get(campos[0]);
+                            fila = campos;
+                        }
+                        default -> {
+                            pelicula = idsPorTitulo.get(campos[1]);
+                            fila = campos;
+                        }
+                    }
+                    if (archivo.dependeDePeliculas() && pelicula == null) {
+                        contadores[3]++;
+                        return;
+                    }
+
+                    int posicion = existentes.emparejar(fila);
+                    int id;
+                    if (posicion < 0) {
+                        id = ids.siguiente();
+                        contadores[0]++;
+                    } else {
+                        existentes.marcarVista(posicion);
+                        if (existentes.mismosValores(posicion, fila)) {
+                            contadores[2]++;
+                            return;
+                        }
+                        id = existentes.id(posicion);
+                        contadores[1]++;
+                    }
+
+                    upsert.setInt(1, id);
+                    switch (archivo) {
+                        case PELICULAS -> {
+                            upsert.setString(2, campos[0]);
+                            upsert.setString(3, campos[1]);
+                            upsert.setInt(4, Integer.parseInt(campos[2]));
+                        }
+                        case OPINIONES -> {
+                            upsert.setInt(2, pelicula);
+                            upsert.setString(3, campos[1]);
+                            upsert.setString(4, campos[2]);
+                        }
+                        case CINES -> {
+                            upsert.setString(2, campos[0]);
+                            upsert.setInt(3, pelicula);
+                        }
+                    }
+                    upsert.addBatch();
+                    if (++pendientes[0] % FILAS_POR_LOTE == 0) {
+                        upsert.executeBatch();
+                        conexion.commit();
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("❌ Error escribiendo en " + tabla + " (byte "
+                            + registro.posicion() + " de " + csv.getName() + ")", e);
+                }
+            });
+            upsert.executeBatch();
+        } catch (IOException e) {
+            throw new UncheckedIOException("❌ Error al leer el archivo: " + csv.getName(), e);
+        }
+
+        List<Integer> borrar = existentes.noVistas();
+        borrarPorId(conexion, archivo, borrar);
+
+        return new Cambios(csv.getName(), false, contadores[0], contadores[1], borrar.size(),
+                contadores[2], contadores[3], millisDesde(inicio));
+    }
+
+    /**
+     * INSERT ... ON DUPLICATE KEY UPDATE en MySQL, MERGE ... KEY (id) en H2.
+     * Una opinión que cambia sube de versión, como si la hubieran editado desde el menú:
+     * quien la tenga leída de antes choca al guardar en vez de pisar el texto del CSV.
+     */
+    private static String sentenciaUpsert(ArchivoCSV archivo, boolean mysql) {
+        String columnas = switch (archivo) {
+            case PELICULAS -> "id, titulo, director, anyo";
+            case OPINIONES -> "id, pelicula_id, usuario, opinion";
+            case CINES -> "id, cine, pelicula_id";
+        };
+        String huecos = switch (archivo) {
+            case PELICULAS, OPINIONES -> "?, ?, ?, ?";
+            case CINES -> "?, ?, ?";
+        };
+        if (!mysql && archivo == ArchivoCSV.OPINIONES) {
+            // MERGE ... KEY no deja calcular columnas: MERGE ... USING, mismos parámetros
+            return "MERGE INTO opiniones t USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS VARCHAR), CAST(? AS VARCHAR))) "
+                    + "s (id, pelicula_id, usuario, opinion) ON t.id = s.id "
+                    + "WHEN MATCHED THEN UPDATE SET opinion = s.opinion, version = t.version + 1 "
+                    + "WHEN NOT MATCHED THEN INSERT (" + columnas + ", version) VALUES (s.id, s.pelicula_id, s.usuario, s.opinion, 0)";
+        }
+        if (!mysql) {
+            return "MERGE INTO " + archivo.tabla() + " (" + columnas + ") KEY (id) VALUES (" + huecos + ")";
+        }
+        String actualizar = switch (archivo) {
+            case PELICULAS -> "director = VALUES(director), anyo = VALUES(anyo)";
+            case OPINIONES -> "version = version + 1, opinion = VALUES(opinion)";
+            case CINES -> "cine = VALUES(cine)";
+        };
+        return "INSERT INTO " + archivo.tabla() + " (" + columnas + ") VALUES (" + huecos + ") ON DUPLICATE KEY UPDATE " + actualizar;
+    }
+
+    /**
+     * 🗑️ BORRAR POR ID EN LOTES
+     * Una película que desaparece se lleva sus opiniones y sus cines (si no, la FK no deja borrarla).
+     */
+    private static void borrarPorId(Connection conexion, ArchivoCSV archivo, List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<String> sentencias = new ArrayList<>();
+        if (archivo == ArchivoCSV.PELICULAS) {
+            sentencias.add("DELETE FROM opiniones WHERE pelicula_id = ?");
+            sentencias.add("DELETE FROM cines WHERE pelicula_id = ?");
+        }
+        sentencias.add("DELETE FROM " + archivo.tabla() + " WHERE id = ?");
+
+        for (String sentencia : sentencias) {
+            try (PreparedStatement borrar = conexion.prepareStatement(sentencia)) {
+                int pendientes = 0;
+                for (int id : ids) {
+                    borrar.setInt(1, id);
+                    borrar.addBatch();
+                    if (++pendientes % FILAS_POR_LOTE == 0) {
+                        borrar.executeBatch();
+                    }
+                }
+                borrar.executeBatch();
+            }
+        }
+    }
+
+    /** Título → id de todas las películas (si un título se repite gana el primer id). */
+    private static Map<String, Integer> leerIdsPorTitulo(Connection conexion) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (Statement consulta = conexion.createStatement();
+             ResultSet filas = consulta.executeQuery("SELECT titulo, id FROM peliculas ORDER BY id")) {
+            while (filas.next()) {
+                ids.putIfAbsent(filas.getString(1), filas.getInt(2));
+            }
+        }
+        return ids;
+    }
+
+    static Huella leerHuella(Connection conexion, String archivo) throws SQLException {
+        try (PreparedStatement consulta = conexion.prepareStatement(
+                "SELECT tamano, modificado, hash FROM " + TABLA_HUELLAS + " WHERE archivo = ?")) {
+            consulta.setString(1, archivo);
+            try (ResultSet fila = consulta.executeQuery()) {
+                return fila.next() ? new Huella(fila.getLong(1), fila.getLong(2), fila.getString(3)) : null;
+            }
+        }
+    }
+
+    static void guardarHuella(Connection conexion, String archivo, Huella huella) throws SQLException {
+        try (PreparedStatement borrar = conexion.prepareStatement("DELETE FROM " + TABLA_HUELLAS + " WHERE archivo = ?");
+             PreparedStatement insertar = conexion.prepareStatement("INSERT INTO " + TABLA_HUELLAS
+                     + " (archivo, tamano, modificado, hash) VALUES (?, ?, ?, ?)")) {
+            borrar.setString(1, archivo);
+            borrar.executeUpdate();
+            insertar.setString(1, archivo);
+            insertar.setLong(2, huella.tamano());
+            insertar.setLong(3, huella.modificado());
+            insertar.setString(4, huella.hash());
+            insertar.executeUpdate();
+        }
+    }
+
+    private static void deshacer(Connection conexion) {
+        if (conexion == null) {
+            return;
+        }
+        try {
+            conexion.rollback();
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudo hacer rollback: " + e.getMessage());
+        }
+    }
+
+    private static long millisDesde(long inicio) {
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+
+    /**
+     * 🔑 HASH DE 64 BITS DE LAS PRIMERAS PARTES DE UNA FILA
+     * FNV-1a sobre los caracteres (con un separador entre partes) y mezcla final de
+     * MurmurHash3. NULL entra como un valor más, distinto de la cadena vacía.
+     * Solo sirve para repartir: dos claves con el mismo hash se siguen comparando enteras.
+     */
+    static long hash(String[] partes, int numero) {
+        long h = 0xcbf29ce484222325L;
+        for (int p = 0; p < numero; p++) {
+            String parte = partes[p];
+            if (parte == null) {
+                h = (h ^ 0x10000) * 0x100000001b3L;
+            } else {
+                for (int i = 0; i < parte.length(); i++) {
+                    h = (h ^ parte.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            h = (h ^ 0xFFFF) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 🖐️ HUELLA DE UN ARCHIVO
+     * El hash solo se calcula si tamaño o fecha han cambiado.
+     */
+    record Huella(long tamano, long modificado, String hash) {
+
+        static Huella rapida(File archivo) {
+            if (!archivo.isFile()) {
+                throw new UncheckedIOException(new IOException("No existe el archivo " + archivo));
+            }
+            return new Huella(archivo.length(), archivo.lastModified(), null);
+        }
+
+        Huella conHash(File archivo) {
+            return new Huella(tamano, modificado, sha256(archivo));
+        }
+
+        boolean mismoArchivo(Huella otra) {
+            return tamano == otra.tamano && modificado == otra.modificado;
+        }
+
+        boolean mismoContenido(Huella otra) {
+            return tamano == otra.tamano && hash != null && hash.equals(otra.hash);
+        }
+
+        /** SHA-256 leyendo el archivo mapeado en ventanas. */
+        static String sha256(File archivo) {
+            try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+                MessageDigest resumen = MessageDigest.getInstance("SHA-256");
+                long tamano = canal.size();
+                for (long posicion = 0; posicion < tamano; posicion += LectorCSV.TAMANO_VENTANA) {
+                    long longitud = Math.min(LectorCSV.TAMANO_VENTANA, tamano - posicion);
+                    MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitud);
+                    resumen.update(ventana);
+                }
+                return HexFormat.of().formatHex(resumen.digest());
+            } catch (IOException e) {
+                throw new UncheckedIOException("❌ Error al leer el archivo: " + archivo.getName(), e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 🗂️ ÍNDICE HASH DE FILAS POR CLAVE NATURAL
+     * Tabla de direccionamiento abierto sobre arrays de primitivos (hash de la clave, id,
+     * posición de la fila). Los textos de cada fila se guardan aparte en UTF-8 en bloques
+     * de bytes, sin un String por campo: el hash solo elige el hueco, y tanto la clave como
+     * los valores se confirman comparando los bytes. Una misma clave puede estar varias veces.
+     */
+    static final class IndiceClaves {
+        private static final int TAMANO_BLOQUE = 1 << 20;
+        /** Longitud de un campo en un byte: 0-253, 254 = NULL, 255 = siguen cuatro bytes. */
+        private static final int NULO = 254;
+        private static final int LARGO = 255;
+
+        private final int camposClave;
+        private long[] claves = new long[1 << 10];
+        private int[] ids = new int[1 << 10];
+        private long[] filas = new long[1 << 10];
+        private boolean[] vistas = new boolean[1 << 10];
+        private boolean[] ocupadas = new boolean[1 << 10];
+        private int tamano;
+        private final List<byte[]> bloques = new ArrayList<>();
+        private byte[] bloque = new byte[0];
+        private int usado;
+
+        IndiceClaves(int camposClave) {
+            this.camposClave = camposClave;
+        }
+
+        /** Guarda una fila de la tabla: primero los campos de la clave y luego el resto. */
+        void anadir(int id, String... fila) {
+            // Carga máxima del 75 %: con sondeo lineal sigue habiendo pocos saltos
+            if (tamano * 4 >= claves.length * 3) {
+                crecer();
+            }
+            long clave = hash(fila, camposClave);
+            int posicion = libre(clave);
+            ocupadas[posicion] = true;
+            claves[posicion] = clave;
+            ids[posicion] = id;
+            filas[posicion] = guardar(fila);
+            tamano++;
+        }
+
+        /**
+         * Fila aún no vista con la misma clave, mejor si también tiene los mismos valores;
+         * -1 si no queda ninguna.
+         */
+        int emparejar(String... fila) {
+            byte[][] bytes = utf8(fila);
+            long clave = hash(fila, camposClave);
+            int mascara = claves.length - 1;
+            int candidata = -1;
+            for (int posicion = (int) clave & mascara; ocupadas[posicion]; posicion = (posicion + 1) & mascara) {
+                if (claves[posicion] != clave || vistas[posicion] || !iguales(posicion, bytes, 0, camposClave)) {
+                    continue;
+                }
+                if (iguales(posicion, bytes, camposClave, bytes.length)) {
+                    return posicion;
+                }
+                if (candidata < 0) {
+                    candidata = posicion;
+                }
+            }
+            return candidata;
+        }
+
+        boolean mismosValores(int posicion, String... fila) {
+            return iguales(posicion, utf8(fila), camposClave, fila.length);
+        }
+
+        int id(int posicion) {
+            return ids[posicion];
+        }
+
+        void marcarVista(int posicion) {
+            vistas[posicion] = true;
+        }
+
+        /** Ids de las filas que no aparecieron en el CSV. */
+        List<Integer> noVistas() {
+            List<Integer> resultado = new ArrayList<>();
+            for (int i = 0; i < claves.length; i++) {
+                if (ocupadas[i] && !vistas[i]) {
+                    resultado.add(ids[i]);
+                }
+            }
+            return resultado;
+        }
+
+        /** ¿Coinciden los campos [desde, hasta) de la fila guardada con estos? */
+        private boolean iguales(int posicion, byte[][] campos, int desde, int hasta) {
+            byte[] datos = bloques.get((int) (filas[posicion] >>> 32));
+            int i = (int) filas[posicion];
+            for (int campo = 0; campo < hasta; campo++) {
+                int longitud = datos[i++] & 0xFF;
+                if (longitud == LARGO) {
+                    longitud = (datos[i] & 0xFF) << 24 | (datos[i + 1] & 0xFF) << 16 | (datos[i + 2] & 0xFF) << 8 | (datos[i + 3] & 0xFF);
+                    i += 4;
+                }
+                if (campo >= desde) {
+                    byte[] otro = campos[campo];
+                    if (longitud == NULO ? otro != null
+                            : otro == null || !Arrays.equals(datos, i, i + longitud, otro, 0, otro.length)) {
+                        return false;
+                    }
+                }
+                if (longitud != NULO) {
+                    i += longitud;
+                }
+            }
+            return true;
+        }
+
+        /** Copia la fila al bloque actual (una fila nunca queda partida entre dos) y devuelve bloque << 32 | desplazamiento. */
+        private long guardar(String[] fila) {
+            byte[][] campos = utf8(fila);
+            int necesario = 0;
+            for (byte[] campo : campos) {
+                necesario += campo == null ? 1 : campo.length < NULO ? 1 + campo.length : 5 + campo.length;
+            }
+            if (usado + necesario > bloque.length) {
+                bloque = new byte[Math.max(TAMANO_BLOQUE, necesario)];
+                bloques.add(bloque);
+                usado = 0;
+            }
+            long referencia = (long) (bloques.size() - 1) << 32 | usado;
+            for (byte[] campo : campos) {
+                if (campo == null) {
+                    bloque[usado++] = (byte) NULO;
+                    continue;
+                }
+                if (campo.length < NULO) {
+                    bloque[usado++] = (byte) campo.length;
+                } else {
+                    bloque[usado++] = (byte) LARGO;
+                    bloque[usado++] = (byte) (campo.length >>> 24);
+                    bloque[usado++] = (byte) (campo.length >>> 16);
+                    bloque[usado++] = (byte) (campo.length >>> 8);
+                    bloque[usado++] = (byte) campo.length;
+                }
+                System.arraycopy(campo, 0, bloque, usado, campo.length);
+                usado += campo.length;
+            }
+            return referencia;
+        }
+
+        private static byte[][] utf8(String[] fila) {
+            byte[][] bytes = new byte[fila.length][];
+            for (int i = 0; i < fila.length; i++) {
+                bytes[i] = fila[i] == null ? null : fila[i].getBytes(StandardCharsets.UTF_8);
+            }
+            return bytes;
+        }
+
+        /** Primer hueco libre a partir del de la clave (sondeo lineal). */
+        private int libre(long clave) {
+            int mascara = claves.length - 1;
+            int posicion = (int) clave & mascara;
+            while (ocupadas[posicion]) {
+                posicion = (posicion + 1) & mascara;
+            }
+            return posicion;
+        }
+
+        private void crecer() {
+            long[] clavesViejas = claves;
+            int[] idsViejos = ids;
+            long[] filasViejas = filas;
+            boolean[] vistasViejas = vistas;
+            boolean[] ocupadasViejas = ocupadas;
+            int capacidad = claves.length * 2;
+            claves = new long[capacidad];
+            ids = new int[capacidad];
+            filas = new long[capacidad];
+            vistas = new boolean[capacidad];
+            ocupadas = new boolean[capacidad];
+            for (int i = 0; i < clavesViejas.length; i++) {
+                if (ocupadasViejas[i]) {
+                    int posicion = libre(clavesViejas[i]);
+                    ocupadas[posicion] = true;
+                    claves[posicion] = clavesViejas[i];
+                    ids[posicion] = idsViejos[i];
+                    filas[posicion] = filasViejas[i];
+                    vistas[posicion] = vistasViejas[i];
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "IndiceClaves[" + tamano + " filas, capacidad " + claves.length + ", "
+                    + bloques.size() + " bloques de texto]";
+        }
+    }
+}
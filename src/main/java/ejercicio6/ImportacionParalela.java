@@ -0,0 +1,337 @@
+package ejercicio6;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * ⚡ IMPORTACIÓN PARALELA DE LOS CSV
+ * Carga varios archivos a la vez, cada uno con su propia Session (y conexión):
+ * - Cada archivo se parte en tramos de bytes que se parsean en paralelo
+ *   ({@link CargadorCSV#recorrerTramoCSV}) y dejan lotes de entidades en una cola acotada.
+ * - Un "escritor" por archivo saca los lotes de la cola y los guarda con flush + clear.
+ * - Fallo atómico DENTRO DE CADA FASE: cada escritor lo deja todo en UNA transacción y
+ *   espera a los demás; si cualquier archivo de la fase falla, todos hacen rollback.
+ * - Las películas van primero (opiniones y cines tienen FK hacia ellas); ver {@link #importar}.
+ * ⚠️ Entre fases NO hay un único punto de confirmación: las películas se confirman al
+ * terminar la primera fase (las FK no dejan que otras conexiones inserten opiniones que
+ * apunten a películas sin confirmar), y si la segunda falla se borran después. Por eso:
+ * - mientras dura la segunda fase, otro lector ve las películas nuevas sin sus opiniones
+ *   ni sus cines;
+ * - si el proceso muere entre las dos fases (o antes de deshacer), las películas quedan
+ *   confirmadas sin opiniones; el siguiente arranque normal las borra al vaciar las tablas.
+ * Quien necesite que el catálogo cambie de golpe (todo o nada, también para los lectores)
+ * debe usar {@link RecargaSombra} (-Dejercicio6.modo.carga=sombra).
+ * Al final se compara el tiempo real con la suma de los tiempos de cada archivo.
+ */
+public class ImportacionParalela {
+
+    /** Tamaño mínimo de un tramo: los archivos pequeños no se trocean. */
+    public static final long TAMANO_MINIMO_TRAMO = 8L * 1024 * 1024;
+
+    /** Lotes que pueden esperar en la cola de cada archivo (acota la memoria). */
+    private static final int LOTES_EN_COLA = 16;
+
+    /** Marca de "este tramo ya terminó" dentro de la cola. */
+    private static final List<Object> FIN_TRAMO = Collections.unmodifiableList(new ArrayList<>());
+
+    /**
+     * 🚀 IMPORTAR TODOS LOS ARCHIVOS EN PARALELO
+     * Opiniones y cines apuntan a películas por FK, así que va en dos fases:
+     * 1. Los archivos sin dependencias (películas).
+     * 2. Se resuelven todos los títulos de una vez y se cargan los demás en paralelo.
+     * Si la fase 2 falla, se borran las películas que insertó la fase 1 para no dejar
+     * una carga a medias; es una compensación, no un rollback: entre medias se ven (ver
+     * la documentación de la clase). Devuelve el resumen de cada archivo.
+     */
+    public static List<CargadorCSV.Resumen> importar(SessionFactory sessionFactory, ArchivoCSV... archivos) {
+        long inicio = System.nanoTime();
+        List<ArchivoCSV> primeraFase = new ArrayList<>();
+        List<ArchivoCSV> segundaFase = new ArrayList<>();
+        for (ArchivoCSV archivo : archivos) {
+            (archivo.dependeDePeliculas() ? segundaFase : primeraFase).add(archivo);
+        }
+
+        List<CargadorCSV.Resumen> resumenes = new ArrayList<>();
+        Queue<Serializable> peliculasInsertadas = new ConcurrentLinkedQueue<>();
+        if (!primeraFase.isEmpty()) {
+            resumenes.addAll(importarFase(sessionFactory, null, primeraFase, peliculasInsertadas));
+        }
+        if (!segundaFase.isEmpty()) {
+            try {
+                ResolutorPeliculas resolutor;
+                try (Session session = sessionFactory.openSession()) {
+                    resolutor = ResolutorPeliculas.cargar(session);
+                }
+                resumenes.addAll(importarFase(sessionFactory, resolutor, segundaFase, null));
+            } catch (RuntimeException e) {
+                deshacerPeliculas(sessionFactory, peliculasInsertadas);
+                CacheCatalogo.vaciar(sessionFactory);
+                throw e;
+            }
+        }
+
+        CacheCatalogo.vaciar(sessionFactory);
+
+        long reloj = (System.nanoTime() - inicio) / 1_000_000;
+        long suma = resumenes.stream().mapToLong(CargadorCSV.Resumen::millis).sum();
+        for (CargadorCSV.Resumen resumen : resumenes) {
+            System.out.println("✅ " + resumen);
+        }
+        System.out.println("⏱️ Importación paralela: " + reloj + " ms de reloj frente a "
+                + suma + " ms sumando cada archivo.");
+        return resumenes;
+    }
+
+    /**
+     * 🧩 IMPORTAR UNA FASE
+     * Todos sus archivos a la vez; si uno falla, rollback de todos.
+     * Si "idsInsertados" no es null se apuntan ahí los ids guardados (para poder deshacer).
+     */
+    private static List<CargadorCSV.Resumen> importarFase(SessionFactory sessionFactory, ResolutorPeliculas resolutor,
+                                                          List<ArchivoCSV> archivos, Queue<Serializable> idsInsertados) {
+        int tramosPorArchivo = Runtime.getRuntime().availableProcessors();
+
+        // Un escritor (y una conexión) por archivo: todos deben estar vivos a la vez para el commit conjunto
+        ExecutorService escritores = Executors.newFixedThreadPool(
+                archivos.size(), Thread.ofVirtual().name("importador-", 0).factory());
+        ExecutorService parseadores = Executors.newFixedThreadPool(
+                tramosPorArchivo, Thread.ofVirtual().name("parseador-", 0).factory());
+
+        AtomicBoolean fallo = new AtomicBoolean(false);
+        CountDownLatch listos = new CountDownLatch(archivos.size());
+        List<Future<CargadorCSV.Resumen>> resultados = new ArrayList<>();
+
+        try {
+            for (ArchivoCSV archivo : archivos) {
+                resultados.add(escritores.submit(() -> importarArchivo(sessionFactory, archivo, archivo.mapeo(resolutor),
+                        parseadores, tramosPorArchivo, fallo, listos, idsInsertados)));
+            }
+
+            List<CargadorCSV.Resumen> resumenes = new ArrayList<>();
+            RuntimeException error = null;
+            for (Future<CargadorCSV.Resumen> resultado : resultados) {
+                try {
+                    resumenes.add(resultado.get());
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof RuntimeException r ? r : new IllegalStateException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("❌ Importación interrumpida", e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return resumenes;
+        } finally {
+            escritores.shutdownNow();
+            parseadores.shutdownNow();
+        }
+    }
+
+    /**
+     * ↩️ DESHACER LA PRIMERA FASE
+     * Borra (en bloques de 1000 ids) las películas que se acababan de insertar.
+     */
+    private static void deshacerPeliculas(SessionFactory sessionFactory, Queue<Serializable> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Serializable> todos = new ArrayList<>(ids);
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i = 0; i < todos.size(); i += 1000) {
+                session.createQuery("DELETE FROM ejercicio6.Pelicula p WHERE p.id IN (:ids)")
+                        .setParameterList("ids", todos.subList(i, Math.min(i + 1000, todos.size())))
+                        .executeUpdate();
+            }
+            session.getTransaction().commit();
+        }
+        System.err.println("↩️ Deshechas " + todos.size() + " películas de la importación fallida.");
+    }
+
+    /**
+     * 📥 IMPORTAR UN ARCHIVO (un escritor)
+     * Lanza los parseadores de sus tramos y guarda lo que van produciendo.
+     */
+    private static CargadorCSV.Resumen importarArchivo(SessionFactory sessionFactory, ArchivoCSV archivoCSV,
+                                                       Function<LectorCSV.Registro, Object> mapeo,
+                                                       ExecutorService parseadores, int maxTramos,
+                                                       AtomicBoolean fallo, CountDownLatch listos,
+                                                       Queue<Serializable> idsInsertados) throws Exception {
+        File archivo = archivoCSV.archivo();
+        long inicio = System.nanoTime();
+        long filas = 0;
+        AtomicLong ignoradas = new AtomicLong();
+        long picoHeap = CargadorCSV.heapUsado();
+        boolean avisado = false;
+
+        try (Session session = sessionFactory.openSession()) {
+            int tamanoLote = CargadorCSV.tamanoLote(session);
+            long[][] tramos = calcularTramos(archivo.length(), maxTramos);
+            BlockingQueue<List<Object>> cola = new ArrayBlockingQueue<>(LOTES_EN_COLA);
+
+            List<Future<?>> tareas = new ArrayList<>();
+            for (long[] tramo : tramos) {
+                tareas.add(parseadores.submit(() -> {
+                    parsearTramo(archivoCSV, mapeo, tramo[0], tramo[1], tamanoLote, cola, fallo, ignoradas);
+                    return null;
+                }));
+            }
+
+            session.beginTransaction();
+            try {
+                int tramosPendientes = tramos.length;
+                while (tramosPendientes > 0) {
+                    List<Object> lote = cola.poll(100, TimeUnit.MILLISECONDS);
+                    if (fallo.get()) {
+                        lanzarErrorDeParseo(tareas);
+                        throw new IllegalStateException("❌ Importación cancelada: falló otro archivo.");
+                    }
+                    if (lote == null) {
+                        continue;
+                    }
+                    if (lote == FIN_TRAMO) {
+                        tramosPendientes--;
+                        continue;
+                    }
+                    for (Object entidad : lote) {
+                        Serializable id = session.save(entidad);
+                        if (idsInsertados != null) {
+                            idsInsertados.add(id);
+                        }
+                    }
+                    session.flush();
+                    session.clear();
+                    filas += lote.size();
+                    picoHeap = Math.max(picoHeap, CargadorCSV.heapUsado());
+                }
+                lanzarErrorDeParseo(tareas);
+
+                // 🤝 Esperar a que todos los archivos estén escritos antes de confirmar
+                listos.countDown();
+                avisado = true;
+                listos.await();
+                if (fallo.get()) {
+                    throw new IllegalStateException("❌ Importación cancelada: falló otro archivo.");
+                }
+                session.getTransaction().commit();
+            } catch (Exception e) {
+                fallo.set(true);
+                if (session.getTransaction().isActive()) {
+                    session.getTransaction().rollback();
+                }
+                throw e;
+            }
+        } finally {
+            if (!avisado) {
+                listos.countDown();
+            }
+        }
+
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        return new CargadorCSV.Resumen(archivo.getName(), filas, ignoradas.get(), millis, picoHeap);
+    }
+
+    /**
+     * ✂️ PARSEAR UN TRAMO
+     * Convierte sus líneas en entidades y las deja en la cola en lotes de "tamanoLote".
+     */
+    @SuppressWarnings("unchecked")
+    private static void parsearTramo(ArchivoCSV archivoCSV, Function<LectorCSV.Registro, Object> mapeo, long inicio, long fin,
+                                     int tamanoLote, BlockingQueue<List<Object>> cola, AtomicBoolean fallo,
+                                     AtomicLong ignoradas) throws Exception {
+        List<Object>[] lote = new List[]{new ArrayList<>(tamanoLote)};
+        try {
+            CargadorCSV.recorrerTramoCSV(archivoCSV.archivo(), inicio, fin, linea -> {
+                Object entidad = mapeo.apply(linea);
+                if (entidad == null) {
+                    ignoradas.incrementAndGet();
+                    return;
+                }
+                lote[0].add(entidad);
+                if (lote[0].size() == tamanoLote) {
+                    encolar(cola, lote[0], fallo);
+                    lote[0] = new ArrayList<>(tamanoLote);
+                }
+            });
+            if (!lote[0].isEmpty()) {
+                encolar(cola, lote[0], fallo);
+            }
+            encolar(cola, FIN_TRAMO, fallo);
+        } catch (CancellationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            fallo.set(true);
+            throw new IllegalStateException("❌ Error en " + archivoCSV.archivo().getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Espera a los parseadores de este archivo y, si alguno falló de verdad
+     * (no por cancelación), relanza su error. Tras un fallo terminan en menos de 100 ms.
+     */
+    private static void lanzarErrorDeParseo(List<Future<?>> tareas) throws Exception {
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof CancellationException) && e.getCause() instanceof Exception causa) {
+                    throw causa;
+                }
+            }
+        }
+    }
+
+    /** Espera hueco en la cola, pero se rinde si otro hilo ya ha fallado. */
+    private static void encolar(BlockingQueue<List<Object>> cola, List<Object> lote, AtomicBoolean fallo) {
+        try {
+            while (!cola.offer(lote, 100, TimeUnit.MILLISECONDS)) {
+                if (fallo.get()) {
+                    throw new CancellationException("Importación cancelada");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Importación interrumpida");
+        }
+    }
+
+    /**
+     * 📐 CALCULAR TRAMOS
+     * Reparte [0, tamano) en como mucho "maxTramos" rangos de al menos {@link #TAMANO_MINIMO_TRAMO}.
+     */
+    static long[][] calcularTramos(long tamano, int maxTramos) {
+        int numero = (int) Math.max(1, Math.min(maxTramos, tamano / TAMANO_MINIMO_TRAMO));
+        long[][] tramos = new long[numero][];
+        long paso = tamano / numero;
+        for (int i = 0; i < numero; i++) {
+            long inicio = i * paso;
+            long fin = (i == numero - 1) ? tamano : inicio + paso;
+            tramos[i] = new long[]{inicio, fin};
+        }
+        return tramos;
+    }
+}
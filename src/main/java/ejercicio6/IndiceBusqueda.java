@@ -0,0 +1,191 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 🔎 BÚSQUEDA DE TEXTO
+ * Dos {@link IndiceInvertido} en memoria: uno de películas (título + director) y otro de
+ * opiniones (el texto de la opinión). Se buscan palabras o principios de palabra sin
+ * importar mayúsculas ni tildes: "clasico" encuentra "Clásico", "kubr" encuentra "Kubrick".
+ * Se construyen leyendo la BD de una pasada justo después de cada importación (los ids
+ * de las opiniones los pone la BD al insertar) y, mientras tanto, se sigue buscando en
+ * los anteriores. {@link ServicioFilmoteca#borrarOpinion} y
+ * {@link ServicioFilmoteca#modificarOpinion} los mantienen al día con la versión de cada
+ * cambio (uno que llega después que otro más nuevo se ignora); si pasa durante una
+ * reconstrucción, el cambio se vuelve a aplicar al índice nuevo antes de cambiarlo.
+ */
+public class IndiceBusqueda {
+
+    private static final int TAMANO_FETCH = 10_000;
+
+    /** Versión de un borrado que ya nada puede deshacer: la fila no está en la BD. */
+    public static final int BORRADA_DEL_TODO = Integer.MAX_VALUE;
+
+    private static volatile IndiceInvertido peliculas = IndiceInvertido.vacio();
+    private static volatile IndiceInvertido opiniones = IndiceInvertido.vacio();
+    private static volatile boolean listo;
+    private static volatile String resumen = "🔎 Índice de búsqueda: todavía no se ha construido.";
+
+    /** Cambios llegados durante la reconstrucción en curso (null si no hay ninguna). */
+    private static List<Consumer<IndiceInvertido>> pendientes;
+    private static final Object CERROJO = new Object();
+
+    /**
+     * 🧵 RECONSTRUIR SIN ESPERAR
+     * En un hilo aparte (daemon): el menú o el servidor arrancan ya y, hasta que
+     * termine, las búsquedas usan el índice anterior.
+     */
+    public static void reconstruirEnSegundoPlano(SessionFactory sessionFactory) {
+        Thread.ofPlatform().name("indice-busqueda").daemon().start(() -> {
+            try {
+                construir(sessionFactory);
+                System.out.println(resumen);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudo construir el índice de búsqueda: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 🧱 CONSTRUIR LOS DOS ÍNDICES
+     * Películas y opiniones por orden de id con un cursor de solo avance (como las
+     * exportaciones): en memoria solo queda el índice, nunca las filas.
+     * Dos reconstrucciones seguidas se hacen una detrás de otra.
+     */
+    public static synchronized void construir(SessionFactory sessionFactory) {
+        construir(() -> {
+            try (Session session = sessionFactory.openSession()) {
+                session.setDefaultReadOnly(true);
+                return new Indices(leer(session, "SELECT p.id, p.titulo, p.director FROM ejercicio6.Pelicula p ORDER BY p.id"),
+                        leer(session, "SELECT o.id, o.opinion FROM ejercicio6.Opinion o ORDER BY o.id"));
+            }
+        });
+    }
+
+    /** 📦 Igual, pero con los textos de la instantánea en disco en vez de leer la BD. */
+    static synchronized void construir(ArchivoInstantanea.Contenido contenido) {
+        construir(() -> {
+            InstantaneaColumnar.Columnas columnas = contenido.columnas();
+            IndiceInvertido.Constructor peliculas = new IndiceInvertido.Constructor();
+            int[] ids = columnas.peliculaIds();
+            for (int fila = 0; fila < ids.length; fila++) {
+                peliculas.anadir(ids[fila], columnas.textosTitulo()[columnas.titulos()[fila]],
+                        columnas.textosDirector()[columnas.directores()[fila]]);
+            }
+            IndiceInvertido.Constructor opiniones = new IndiceInvertido.Constructor();
+            for (int fila = 0; fila < contenido.opinionIds().length; fila++) {
+                opiniones.anadir(contenido.opinionIds()[fila], contenido.opiniones()[fila]);
+            }
+            return new Indices(peliculas.construir(), opiniones.construir());
+        });
+    }
+
+    private record Indices(IndiceInvertido peliculas, IndiceInvertido opiniones) {
+    }
+
+    private static void construir(Supplier<Indices> leer) {
+        synchronized (CERROJO) {
+            pendientes = new ArrayList<>();
+        }
+        Metricas.medirAccion("construirIndiceBusqueda", () -> {
+            long inicio = System.nanoTime();
+            IndiceInvertido nuevasPeliculas;
+            IndiceInvertido nuevasOpiniones;
+            try {
+                Indices nuevos = leer.get();
+                nuevasPeliculas = nuevos.peliculas();
+                nuevasOpiniones = nuevos.opiniones();
+            } catch (RuntimeException e) {
+                synchronized (CERROJO) {
+                    pendientes = null;
+                }
+                throw e;
+            }
+            synchronized (CERROJO) {
+                pendientes.forEach(cambio -> cambio.accept(nuevasOpiniones));
+                pendientes = null;
+                peliculas = nuevasPeliculas;
+                opiniones = nuevasOpiniones;
+                listo = true;
+            }
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            resumen = String.format("🔎 Índice de búsqueda: %d películas y %d opiniones, %d términos, %d entradas, ~%.1f MB, construido en %d ms.",
+                    nuevasPeliculas.getDocumentos(), nuevasOpiniones.getDocumentos(),
+                    nuevasPeliculas.getTerminos() + nuevasOpiniones.getTerminos(),
+                    nuevasPeliculas.getPosiciones() + nuevasOpiniones.getPosiciones(),
+                    (nuevasPeliculas.memoriaAproximada() + nuevasOpiniones.memoriaAproximada()) / 1e6, ms);
+        });
+    }
+
+    /** Primera columna = id, el resto = textos a indexar. */
+    private static IndiceInvertido leer(Session session, String hql) {
+        IndiceInvertido.Constructor constructor = new IndiceInvertido.Constructor();
+        long filas = 0;
+        try (ScrollableResults resultados = session.createQuery(hql)
+                .setFetchSize(TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (resultados.next()) {
+                Object[] fila = resultados.get();
+                String[] textos = new String[fila.length - 1];
+                for (int i = 1; i < fila.length; i++) {
+                    textos[i - 1] = (String) fila[i];
+                }
+                constructor.anadir((Integer) fila[0], textos);
+                filas++;
+            }
+        }
+        Metricas.filasLeidas(filas);
+        return constructor.construir();
+    }
+
+    /** 🎬 Películas cuyo título o director contienen todas las palabras de la consulta. */
+    public static IndiceInvertido.Coincidencias buscarPeliculas(String consulta, int limite) {
+        return peliculas.buscar(consulta, limite);
+    }
+
+    /** 💬 Opiniones que contienen todas las palabras de la consulta. */
+    public static IndiceInvertido.Coincidencias buscarOpiniones(String consulta, int limite) {
+        return opiniones.buscar(consulta, limite);
+    }
+
+    /** ✍️ Una opinión ha cambiado de texto ("version": la que tiene con él). */
+    public static void opinionModificada(int id, int version, String texto) {
+        cambiarOpiniones(indice -> indice.modificar(id, version, texto));
+    }
+
+    /**
+     * 🗑️ Una opinión se ha borrado. "version" es la siguiente a la que tenía al borrarla,
+     * para que vaya detrás de su última modificación ({@link #BORRADA_DEL_TODO} si ya no está en la BD).
+     */
+    public static void opinionBorrada(int id, int version) {
+        cambiarOpiniones(indice -> indice.borrar(id, version));
+    }
+
+    private static void cambiarOpiniones(Consumer<IndiceInvertido> cambio) {
+        synchronized (CERROJO) {
+            cambio.accept(opiniones);
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+        }
+    }
+
+    /** false mientras se construye por primera vez (las búsquedas no encuentran nada). */
+    public static boolean listo() {
+        return listo;
+    }
+
+    /** Documentos, términos, memoria y tiempo de la última construcción. */
+    public static String resumen() {
+        return resumen;
+    }
+}
@@ -0,0 +1,484 @@
+package ejercicio6;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 🔎 ÍNDICE INVERTIDO EN MEMORIA
+ * Para cada término (palabra en minúsculas y sin tildes: "Clásico" → "clasico"), la
+ * lista ordenada de ids de los documentos que lo contienen, en un int[] (sin Integer).
+ * Los términos están ordenados, así que los que empiezan por un prefijo son un tramo
+ * contiguo que se encuentra con dos búsquedas binarias.
+ * La parte principal no cambia después de construirla. Los cambios posteriores van aparte:
+ * - borrar un documento lo marca en un BitSet y se filtra al buscar,
+ * - modificarlo lo marca igual y guarda el texto nuevo en un pequeño índice de cambios
+ *   que se recorre entero (se vacía en la siguiente reconstrucción, tras cada importación),
+ * - cada cambio lleva la versión del documento, y uno más viejo que el último aplicado
+ *   se ignora: dos escritores que llegan en otro orden que sus commits no dejan el texto viejo.
+ * Se puede buscar desde muchos hilos a la vez mientras otro aplica cambios.
+ */
+public class IndiceInvertido {
+
+    /** Ids de los documentos que coinciden (los "limite" primeros, por id) y cuántos son en total. */
+    public record Coincidencias(int[] ids, int total) {
+    }
+
+    /** A partir de cuántas entradas la unión de un prefijo se hace con un mapa de bits. */
+    private static final int UNION_CON_MAPA_DE_BITS = 1 << 14;
+
+    /** Letras a partir de las que un término de la consulta también busca como prefijo. */
+    public static final int PREFIJO_MINIMO = 3;
+
+    private final String[] terminos;
+    private final int[][] listas;
+    private final int documentos;
+    private final long posiciones;
+    private final int idMaximo;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final BitSet borrados = new BitSet();
+    /** id → términos del texto modificado (solo documentos cambiados desde la construcción). */
+    private final Map<Integer, String[]> cambios = new HashMap<>();
+    /** id → versión del último cambio aplicado (borrados incluidos). */
+    private final Map<Integer, Integer> versiones = new HashMap<>();
+
+    private IndiceInvertido(String[] terminos, int[][] listas, int documentos, long posiciones, int idMaximo) {
+        this.terminos = terminos;
+        this.listas = listas;
+        this.documentos = documentos;
+        this.posiciones = posiciones;
+        this.idMaximo = idMaximo;
+    }
+
+    /** Índice sin nada (mientras se construye el de verdad). */
+    public static IndiceInvertido vacio() {
+        return new Constructor().construir();
+    }
+
+    /**
+     * 🧱 CONSTRUCTOR
+     * Los documentos se añaden en orden creciente de id (así cada lista sale ya ordenada).
+     */
+    public static class Constructor {
+
+        private final Map<String, ListaEnteros> listas = new HashMap<>();
+        private int documentos;
+        private long posiciones;
+        private int ultimoId = Integer.MIN_VALUE;
+
+        /** Añade los términos de "textos" (título, director...) al documento "id". */
+        public void anadir(int id, String... textos) {
+            if (id < ultimoId) {
+                throw new IllegalArgumentException("Los documentos tienen que llegar ordenados por id: " + id + " después de " + ultimoId);
+            }
+            if (id != ultimoId) {
+                documentos++;
+                ultimoId = id;
+            }
+            for (String texto : textos) {
+                for (String termino : terminos(texto)) {
+                    // Un término repetido en el mismo documento cuenta una vez
+                    if (listas.computeIfAbsent(termino, t -> new ListaEnteros()).anadirSiNoEsUltimo(id)) {
+                        posiciones++;
+                    }
+                }
+            }
+        }
+
+        public IndiceInvertido construir() {
+            String[] ordenados = listas.keySet().toArray(new String[0]);
+            Arrays.sort(ordenados);
+            int[][] arrays = new int[ordenados.length][];
+            for (int i = 0; i < ordenados.length; i++) {
+                arrays[i] = listas.remove(ordenados[i]).recortar();
+            }
+            return new IndiceInvertido(ordenados, arrays, documentos, posiciones, Math.max(0, ultimoId));
+        }
+    }
+
+    /**
+     * 🔍 BUSCAR
+     * Todos los términos de la consulta tienen que aparecer, cada uno como prefijo
+     * ("clasi" encuentra "clásico" y "clásicos"). Los de menos de {@link #PREFIJO_MINIMO}
+     * letras solo como palabra entera: "de" no trae todas las palabras que empiezan por "de".
+     * Se empieza por el término con menos documentos y los demás solo filtran esos.
+     */
+    public Coincidencias buscar(String consulta, int limite) {
+        String[] buscados = terminos(consulta);
+        if (buscados.length == 0) {
+            return new Coincidencias(new int[0], 0);
+        }
+
+        // Tramo de términos de cada prefijo, del más selectivo al menos
+        int[][] tramos = new int[buscados.length][];
+        long[] tamanos = new long[buscados.length];
+        Integer[] orden = new Integer[buscados.length];
+        for (int i = 0; i < buscados.length; i++) {
+            tramos[i] = tramo(buscados[i]);
+            for (int t = tramos[i][0]; t < tramos[i][1]; t++) {
+                tamanos[i] += listas[t].length;
+            }
+            orden[i] = i;
+        }
+        Arrays.sort(orden, (a, b) -> Long.compare(tamanos[a], tamanos[b]));
+
+        int[] resultado = union(tramos[orden[0]]);
+        for (int k = 1; k < orden.length && resultado.length > 0; k++) {
+            int[] tramo = tramos[orden[k]];
+            // Pocos candidatos frente a muchas entradas: buscarlos en cada lista sale más barato que juntarlas
+            resultado = (long) (tramo[1] - tramo[0]) * resultado.length * 16 < tamanos[orden[k]]
+                    ? filtrar(resultado, tramo)
+                    : interseccion(resultado, union(tramo));
+        }
+
+        cerrojo.readLock().lock();
+        try {
+            return filtrarYCompletar(resultado, buscados, limite);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /** Quita los borrados/modificados y añade los modificados que ahora coinciden. */
+    private Coincidencias filtrarYCompletar(int[] encontrados, String[] buscados, int limite) {
+        if (borrados.isEmpty() && cambios.isEmpty()) {
+            return new Coincidencias(Arrays.copyOf(encontrados, Math.min(limite, encontrados.length)), encontrados.length);
+        }
+        ListaEnteros vivos = new ListaEnteros();
+        for (int id : encontrados) {
+            if (!borrados.get(id)) {
+                vivos.anadir(id);
+            }
+        }
+        for (Map.Entry<Integer, String[]> cambio : cambios.entrySet()) {
+            if (contieneTodos(cambio.getValue(), buscados)) {
+                vivos.anadir(cambio.getKey());
+            }
+        }
+        int[] todos = vivos.recortar();
+        Arrays.sort(todos);
+        return new Coincidencias(Arrays.copyOf(todos, Math.min(limite, todos.length)), todos.length);
+    }
+
+    private static boolean contieneTodos(String[] terminosDocumento, String[] prefijos) {
+        for (String prefijo : prefijos) {
+            boolean encontrado = false;
+            for (String termino : terminosDocumento) {
+                if (coincide(termino, prefijo)) {
+                    encontrado = true;
+                    break;
+                }
+            }
+            if (!encontrado) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ✍️ EL DOCUMENTO CAMBIA DE TEXTO
+     * (también sirve para uno nuevo). "version" es la que tiene con este texto; si ya se
+     * aplicó un cambio de una versión posterior, este llega tarde y no se aplica. Con la
+     * misma versión gana el último (así se puede volver a poner lo que dice la BD).
+     */
+    public void modificar(int id, int version, String... textos) {
+        List<String> nuevos = new ArrayList<>();
+        for (String texto : textos) {
+            nuevos.addAll(Arrays.asList(terminos(texto)));
+        }
+        cerrojo.writeLock().lock();
+        try {
+            if (versiones.getOrDefault(id, Integer.MIN_VALUE) > version) {
+                return;
+            }
+            versiones.put(id, version);
+            borrados.set(id);
+            cambios.put(id, nuevos.toArray(new String[0]));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /** 🗑️ EL DOCUMENTO YA NO EXISTE (desde "version"; como en {@link #modificar}). */
+    public void borrar(int id, int version) {
+        cerrojo.writeLock().lock();
+        try {
+            if (versiones.getOrDefault(id, Integer.MIN_VALUE) > version) {
+                return;
+            }
+            versiones.put(id, version);
+            borrados.set(id);
+            cambios.remove(id);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    public int getDocumentos() {
+        return documentos;
+    }
+
+    public int getTerminos() {
+        return terminos.length;
+    }
+
+    public long getPosiciones() {
+        return posiciones;
+    }
+
+    /**
+     * 📏 MEMORIA APROXIMADA (bytes)
+     * Cabeceras de objeto de 16 bytes, Strings compactos (1 byte por carácter latino).
+     */
+    public long memoriaAproximada() {
+        long bytes = 16 + 4L * terminos.length + 16 + 4L * listas.length;
+        for (int i = 0; i < terminos.length; i++) {
+            bytes += 24 + 16 + terminos[i].length();
+            bytes += 16 + 4L * listas[i].length;
+        }
+        return bytes;
+    }
+
+    private static boolean coincide(String termino, String buscado) {
+        return buscado.length() < PREFIJO_MINIMO ? termino.equals(buscado) : termino.startsWith(buscado);
+    }
+
+    /** [primero, último + 1) de los términos que coinciden con "buscado" (ver {@link #coincide}). */
+    private int[] tramo(String buscado) {
+        int desde = primeroNoMenor(buscado);
+        int hasta = buscado.length() < PREFIJO_MINIMO
+                ? (desde < terminos.length && terminos[desde].equals(buscado) ? desde + 1 : desde)
+                : primeroNoMenor(buscado + Character.MAX_VALUE);
+        return new int[]{desde, hasta};
+    }
+
+    private int primeroNoMenor(String clave) {
+        int bajo = 0;
+        int alto = terminos.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (terminos[medio].compareTo(clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Unión ordenada y sin repetidos de las listas de un tramo de términos.
+     * Con pocas entradas se juntan y se ordenan; con muchas (un prefijo corto) se marcan
+     * en un mapa de bits de todos los ids y se leen en orden, sin ordenar nada.
+     */
+    private int[] union(int[] tramo) {
+        int desde = tramo[0];
+        int hasta = tramo[1];
+        if (hasta - desde == 0) {
+            return new int[0];
+        }
+        if (hasta - desde == 1) {
+            return listas[desde];
+        }
+        int total = 0;
+        for (int t = desde; t < hasta; t++) {
+            total += listas[t].length;
+        }
+        if (total > UNION_CON_MAPA_DE_BITS) {
+            return unionConMapaDeBits(desde, hasta, total);
+        }
+        int[] todos = new int[total];
+        int n = 0;
+        for (int t = desde; t < hasta; t++) {
+            System.arraycopy(listas[t], 0, todos, n, listas[t].length);
+            n += listas[t].length;
+        }
+        Arrays.sort(todos);
+        int unicos = 0;
+        for (int i = 0; i < todos.length; i++) {
+            if (unicos == 0 || todos[unicos - 1] != todos[i]) {
+                todos[unicos++] = todos[i];
+            }
+        }
+        return Arrays.copyOf(todos, unicos);
+    }
+
+    private int[] unionConMapaDeBits(int desde, int hasta, int total) {
+        long[] bits = new long[(idMaximo >>> 6) + 1];
+        for (int t = desde; t < hasta; t++) {
+            for (int id : listas[t]) {
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+        int[] resultado = new int[total];
+        int n = 0;
+        for (int palabra = 0; palabra < bits.length; palabra++) {
+            long b = bits[palabra];
+            while (b != 0) {
+                resultado[n++] = (palabra << 6) | Long.numberOfTrailingZeros(b);
+                b &= b - 1;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /** Los candidatos que están en alguna de las listas del tramo. */
+    private int[] filtrar(int[] candidatos, int[] tramo) {
+        boolean[] presentes = new boolean[candidatos.length];
+        for (int t = tramo[0]; t < tramo[1]; t++) {
+            int[] lista = listas[t];
+            int j = 0;
+            for (int i = 0; i < candidatos.length && j < lista.length; i++) {
+                int pos = Arrays.binarySearch(lista, j, lista.length, candidatos[i]);
+                if (pos >= 0) {
+                    presentes[i] = true;
+                    j = pos + 1;
+                } else {
+                    j = -pos - 1;
+                }
+            }
+        }
+        int[] resultado = new int[candidatos.length];
+        int n = 0;
+        for (int i = 0; i < candidatos.length; i++) {
+            if (presentes[i]) {
+                resultado[n++] = candidatos[i];
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * Intersección de dos listas ordenadas. Si una es mucho más corta, cada elemento
+     * suyo se busca en la otra a saltos (galloping) en vez de recorrerla entera.
+     */
+    static int[] interseccion(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        int[] resultado = new int[a.length];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < a.length && j < b.length; i++) {
+            int buscado = a[i];
+            // Saltos de 1, 2, 4, 8... hasta pasarse, y búsqueda binaria en el último salto
+            int salto = 1;
+            int alto = j;
+            while (alto < b.length && b[alto] < buscado) {
+                j = alto + 1;
+                alto = j + salto;
+                salto <<= 1;
+            }
+            int pos = Arrays.binarySearch(b, j, Math.min(alto + 1, b.length), buscado);
+            if (pos >= 0) {
+                resultado[n++] = buscado;
+                j = pos + 1;
+            } else {
+                j = -pos - 1;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * ✂️ TÉRMINOS DE UN TEXTO
+     * Minúsculas, sin tildes ni diéresis (ñ → n), partiendo por todo lo que no sea
+     * letra o número: "¡Clásico, imprescindible!" → ["clasico", "imprescindible"].
+     */
+    public static String[] terminos(String texto) {
+        if (texto == null || texto.isEmpty()) {
+            return new String[0];
+        }
+        List<String> terminos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = normalizar(texto.charAt(i));
+            if (c != 0) {
+                actual.append(c);
+            } else if (!actual.isEmpty()) {
+                terminos.add(actual.toString());
+                actual.setLength(0);
+            }
+        }
+        if (!actual.isEmpty()) {
+            terminos.add(actual.toString());
+        }
+        return terminos.toArray(new String[0]);
+    }
+
+    /** El carácter en minúscula y sin tilde, o 0 si separa términos. */
+    private static char normalizar(char c) {
+        if (c < 128) {
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                return c;
+            }
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : 0;
+        }
+        if (!Character.isLetterOrDigit(c)) {
+            return 0;
+        }
+        char minuscula = Character.toLowerCase(c);
+        switch (minuscula) {
+            case 'á', 'à', 'â', 'ä', 'ã' -> {
+                return 'a';
+            }
+            case 'é', 'è', 'ê', 'ë' -> {
+                return 'e';
+            }
+            case 'í', 'ì', 'î', 'ï' -> {
+                return 'i';
+            }
+            case 'ó', 'ò', 'ô', 'ö', 'õ' -> {
+                return 'o';
+            }
+            case 'ú', 'ù', 'û', 'ü' -> {
+                return 'u';
+            }
+            case 'ñ' -> {
+                return 'n';
+            }
+            case 'ç' -> {
+                return 'c';
+            }
+            default -> {
+                // Cualquier otra letra con marca: la letra base según Unicode
+                String base = Normalizer.normalize(String.valueOf(minuscula), Normalizer.Form.NFD);
+                return base.charAt(0);
+            }
+        }
+    }
+
+    /** int[] que crece (lo justo para no guardar Integer en las listas). */
+    static final class ListaEnteros {
+        private int[] valores = new int[4];
+        private int tamano;
+
+        void anadir(int valor) {
+            if (tamano == valores.length) {
+                valores = Arrays.copyOf(valores, tamano + (tamano >> 1) + 1);
+            }
+            valores[tamano++] = valor;
+        }
+
+        boolean anadirSiNoEsUltimo(int valor) {
+            if (tamano > 0 && valores[tamano - 1] == valor) {
+                return false;
+            }
+            anadir(valor);
+            return true;
+        }
+
+        int[] recortar() {
+            return tamano == valores.length ? valores : Arrays.copyOf(valores, tamano);
+        }
+    }
+}
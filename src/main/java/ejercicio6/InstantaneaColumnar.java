@@ -0,0 +1,530 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * 🧊 INSTANTÁNEA EN COLUMNAS DEL CATÁLOGO
+ * Para informes (películas por año, opiniones por director, cines por película...) sin
+ * ir a la BD ni crear entidades: una foto inmutable de las tres tablas guardada por
+ * columnas, en arrays de int.
+ * - Los textos (título, director, usuario, cine) van con un diccionario por columna:
+ *   cada fila guarda un código y cada texto está una sola vez, en el diccionario
+ *   ordenado (buscar un texto es una búsqueda binaria).
+ * - Opiniones y cines guardan la fila de su película, así que se filtra y se agrupa por
+ *   las columnas de la película (director, año...) sin join.
+ * - Las consultas ({@link Consulta}) recorren las filas por tramos de 64K en paralelo:
+ *   cada tramo cuenta en su propio array y al final se suman.
+ * Se reconstruye entera tras cada importación y se cambia de golpe: una consulta en
+ * curso termina con la foto con la que empezó. No guarda el texto de las opiniones, y
+ * las que se borren después de la importación siguen contando hasta la siguiente.
+ */
+public final class InstantaneaColumnar {
+
+    private static final int TAMANO_FETCH = 10_000;
+    /** Filas por tramo de las consultas en paralelo. */
+    static final int TRAMO = 1 << 16;
+
+    /** Tablas que se pueden consultar; cada una tiene las columnas de su película. */
+    public enum Tabla {PELICULAS, OPINIONES, CINES}
+
+    /** PELICULA y ANYO son números (id y año); el resto, textos. USUARIO solo en OPINIONES, CINE solo en CINES. */
+    public enum Columna {PELICULA, TITULO, DIRECTOR, ANYO, USUARIO, CINE}
+
+    /** Un grupo del resultado: el valor de la columna (como texto) y cuántas filas tiene. */
+    public record Recuento(String clave, long cuenta) {
+
+        @Override
+        public String toString() {
+            return clave + ": " + cuenta;
+        }
+    }
+
+    private static volatile InstantaneaColumnar actual = vacia();
+    private static volatile boolean lista;
+    private static volatile String resumen = "🧊 Instantánea en columnas: todavía no se ha construido.";
+
+    // Películas (una fila por película, por orden de id)
+    private final int[] peliculaIds;
+    private final int[] titulos;
+    private final int[] directores;
+    private final int[] anyos;
+    // Opiniones y cines: fila de su película + su propia columna de texto
+    private final int[] opinionPelicula;
+    private final int[] opinionUsuario;
+    private final int[] cinePelicula;
+    private final int[] cineCine;
+    // Diccionarios ordenados: código → texto
+    private final String[] textosTitulo;
+    private final String[] textosDirector;
+    private final String[] textosUsuario;
+    private final String[] textosCine;
+    private final int anyoMinimo;
+    private final int anyoMaximo;
+
+    /**
+     * 📦 LAS COLUMNAS TAL CUAL
+     * Para guardarlas y volver a cargarlas sin pasar por la BD ({@link ArchivoInstantanea}).
+     * Los diccionarios van ordenados y los códigos son posiciones en ellos.
+     */
+    public record Columnas(int[] peliculaIds, int[] titulos, int[] directores, int[] anyos,
+                    int[] opinionPelicula, int[] opinionUsuario, int[] cinePelicula, int[] cineCine,
+                    String[] textosTitulo, String[] textosDirector, String[] textosUsuario, String[] textosCine) {
+    }
+
+    InstantaneaColumnar(Columnas columnas) {
+        this.peliculaIds = columnas.peliculaIds();
+        this.titulos = columnas.titulos();
+        this.directores = columnas.directores();
+        this.anyos = columnas.anyos();
+        this.opinionPelicula = columnas.opinionPelicula();
+        this.opinionUsuario = columnas.opinionUsuario();
+        this.cinePelicula = columnas.cinePelicula();
+        this.cineCine = columnas.cineCine();
+        this.textosTitulo = columnas.textosTitulo();
+        this.textosDirector = columnas.textosDirector();
+        this.textosUsuario = columnas.textosUsuario();
+        this.textosCine = columnas.textosCine();
+        this.anyoMinimo = Arrays.stream(anyos).min().orElse(0);
+        this.anyoMaximo = Arrays.stream(anyos).max().orElse(-1);
+    }
+
+    Columnas columnas() {
+        return new Columnas(peliculaIds, titulos, directores, anyos, opinionPelicula, opinionUsuario, cinePelicula, cineCine,
+                textosTitulo, textosDirector, textosUsuario, textosCine);
+    }
+
+    private static InstantaneaColumnar vacia() {
+        return new Constructor().construir();
+    }
+
+    /** La instantánea de ahora (vacía hasta que termina la primera construcción). */
+    public static InstantaneaColumnar actual() {
+        return actual;
+    }
+
+    /** false hasta que termina la primera construcción. */
+    public static boolean lista() {
+        return lista;
+    }
+
+    /** Filas, memoria y tiempo de la última construcción. */
+    public static String resumen() {
+        return resumen;
+    }
+
+    /** 🧵 Reconstruir en un hilo aparte (daemon); mientras tanto se consulta la anterior. */
+    public static void reconstruirEnSegundoPlano(SessionFactory sessionFactory) {
+        Thread.ofPlatform().name("instantanea-columnar").daemon().start(() -> {
+            try {
+                construir(sessionFactory);
+                System.out.println(resumen);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudo construir la instantánea en columnas: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 🧱 CONSTRUIR DESDE LA BD
+     * Tres pasadas con cursor de solo avance y proyecciones escalares (ninguna entidad):
+     * películas por id, y opiniones y cines con el id de su película.
+     * Dos reconstrucciones seguidas se hacen una detrás de otra.
+     */
+    public static synchronized void construir(SessionFactory sessionFactory) {
+        Metricas.medirAccion("construirInstantaneaColumnar", () -> {
+            long inicio = System.nanoTime();
+            Constructor constructor = new Constructor();
+            try (Session session = sessionFactory.openSession()) {
+                session.setDefaultReadOnly(true);
+                recorrer(session, "SELECT p.id, p.titulo, p.director, p.anyo FROM ejercicio6.Pelicula p ORDER BY p.id",
+                        fila -> constructor.pelicula((Integer) fila[0], (String) fila[1], (String) fila[2], (Integer) fila[3]));
+                recorrer(session, "SELECT o.pelicula.id, o.usuario FROM ejercicio6.Opinion o",
+                        fila -> constructor.opinion((Integer) fila[0], (String) fila[1]));
+                recorrer(session, "SELECT c.pelicula.id, c.cine FROM ejercicio6.Cine c",
+                        fila -> constructor.cine((Integer) fila[0], (String) fila[1]));
+            }
+            usar(constructor.construir(), "construida", inicio);
+        });
+    }
+
+    /** 📦 Usar unas columnas ya hechas (las de la instantánea en disco) en vez de leer la BD. */
+    static synchronized void cargar(Columnas columnas) {
+        usar(new InstantaneaColumnar(columnas), "cargada del archivo", System.nanoTime());
+    }
+
+    private static void usar(InstantaneaColumnar nueva, String como, long inicio) {
+        actual = nueva;
+        lista = true;
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+        resumen = String.format("🧊 Instantánea en columnas: %d películas, %d opiniones y %d cines, ~%.1f MB (%.1f bytes/fila), %s en %d ms.",
+                nueva.filas(Tabla.PELICULAS), nueva.filas(Tabla.OPINIONES), nueva.filas(Tabla.CINES),
+                nueva.memoriaAproximada() / 1e6, nueva.memoriaAproximada() / (double) Math.max(1, nueva.filas()), como, ms);
+    }
+
+    private interface Fila {
+        void leer(Object[] fila);
+    }
+
+    private static void recorrer(Session session, String hql, Fila fila) {
+        long filas = 0;
+        try (ScrollableResults resultados = session.createQuery(hql)
+                .setFetchSize(TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (resultados.next()) {
+                fila.leer(resultados.get());
+                filas++;
+            }
+        }
+        Metricas.filasLeidas(filas);
+    }
+
+    /** Filas de una tabla. */
+    public int filas(Tabla tabla) {
+        return switch (tabla) {
+            case PELICULAS -> peliculaIds.length;
+            case OPINIONES -> opinionPelicula.length;
+            case CINES -> cinePelicula.length;
+        };
+    }
+
+    /** Filas de las tres tablas. */
+    public long filas() {
+        return (long) peliculaIds.length + opinionPelicula.length + cinePelicula.length;
+    }
+
+    /**
+     * 📏 MEMORIA APROXIMADA
+     * 4 bytes por celda más los diccionarios (~40 bytes de cabeceras por String + 1 byte
+     * por carácter, que casi todos los textos caben en Latin-1).
+     */
+    public long memoriaAproximada() {
+        long celdas = 4L * peliculaIds.length + 2L * opinionPelicula.length + 2L * cinePelicula.length;
+        return 4 * celdas + memoria(textosTitulo) + memoria(textosDirector) + memoria(textosUsuario) + memoria(textosCine);
+    }
+
+    private static long memoria(String[] textos) {
+        long bytes = 4L * textos.length;
+        for (String texto : textos) {
+            bytes += 40 + texto.length();
+        }
+        return bytes;
+    }
+
+    /** 🔍 Empezar una consulta sobre "tabla" (sin filtros: todas sus filas). */
+    public Consulta consulta(Tabla tabla) {
+        return new Consulta(tabla, List.of());
+    }
+
+    /**
+     * 📐 UNA COLUMNA VISTA DESDE UNA TABLA
+     * valor(fila) = valores[fila], o valores[aTraves[fila]] si la columna es de la película.
+     * "base" se suma al valor para que los grupos empiecen en 0 (el año mínimo en ANYO).
+     */
+    private record Vista(Columna columna, int[] valores, int[] aTraves, String[] textos, int base, int grupos) {
+
+        int valor(int fila) {
+            return aTraves == null ? valores[fila] : valores[aTraves[fila]];
+        }
+
+        String clave(InstantaneaColumnar instantanea, int grupo) {
+            return switch (columna) {
+                case ANYO -> String.valueOf(grupo + base);
+                case PELICULA -> instantanea.textosTitulo[instantanea.titulos[grupo]] + " (" + instantanea.anyos[grupo] + ")";
+                default -> textos[grupo];
+            };
+        }
+    }
+
+    private Vista vista(Tabla tabla, Columna columna) {
+        int[] aTraves = switch (tabla) {
+            case PELICULAS -> null;
+            case OPINIONES -> opinionPelicula;
+            case CINES -> cinePelicula;
+        };
+        return switch (columna) {
+            // Los grupos de PELICULA son las filas de película (el valor es su id)
+            case PELICULA -> new Vista(columna, identidad(aTraves, peliculaIds.length), null, null, 0, peliculaIds.length);
+            case TITULO -> new Vista(columna, titulos, aTraves, textosTitulo, 0, textosTitulo.length);
+            case DIRECTOR -> new Vista(columna, directores, aTraves, textosDirector, 0, textosDirector.length);
+            case ANYO -> new Vista(columna, anyos, aTraves, null, anyoMinimo, anyoMaximo - anyoMinimo + 1);
+            case USUARIO -> {
+                exigir(tabla == Tabla.OPINIONES, tabla, columna);
+                yield new Vista(columna, opinionUsuario, null, textosUsuario, 0, textosUsuario.length);
+            }
+            case CINE -> {
+                exigir(tabla == Tabla.CINES, tabla, columna);
+                yield new Vista(columna, cineCine, null, textosCine, 0, textosCine.length);
+            }
+        };
+    }
+
+    /** Fila de película de cada fila: la propia columna aTraves, o 0..n-1 para PELICULAS. */
+    private static int[] identidad(int[] aTraves, int peliculas) {
+        return aTraves != null ? aTraves : IntStream.range(0, peliculas).toArray();
+    }
+
+    private static void exigir(boolean condicion, Tabla tabla, Columna columna) {
+        if (!condicion) {
+            throw new IllegalArgumentException("La tabla " + tabla + " no tiene la columna " + columna + ".");
+        }
+    }
+
+    /**
+     * 🔍 UNA CONSULTA: FILTROS + RECUENTO
+     * Inmutable: cada {@code donde} devuelve otra, así que se puede preparar una y
+     * lanzarla muchas veces o desde varios hilos.
+     *   instantanea.consulta(Tabla.OPINIONES)
+     *           .donde(Columna.ANYO, anyo -> anyo >= 1970)
+     *           .contarPor(Columna.DIRECTOR);
+     */
+    public final class Consulta {
+
+        private final Tabla tabla;
+        private final List<IntPredicate> filtros;
+
+        private Consulta(Tabla tabla, List<IntPredicate> filtros) {
+            this.tabla = tabla;
+            this.filtros = filtros;
+        }
+
+        /** Solo las filas cuyo texto en "columna" es exactamente "texto". */
+        public Consulta donde(Columna columna, String texto) {
+            if (columna == Columna.PELICULA || columna == Columna.ANYO) {
+                throw new IllegalArgumentException(columna + " es un número: usa donde(columna, predicado).");
+            }
+            Vista vista = vista(tabla, columna);
+            int codigo = Arrays.binarySearch(vista.textos(), texto);
+            // Un texto que no está en el diccionario no coincide con ninguna fila
+            return con(codigo < 0 ? fila -> false : fila -> vista.valor(fila) == codigo);
+        }
+
+        /** Solo las filas cuyo número en "columna" (id de película o año) cumple "condicion". */
+        public Consulta donde(Columna columna, IntPredicate condicion) {
+            if (columna != Columna.PELICULA && columna != Columna.ANYO) {
+                throw new IllegalArgumentException(columna + " es un texto: usa donde(columna, texto).");
+            }
+            if (columna == Columna.PELICULA) {
+                int[] aTraves = vista(tabla, Columna.PELICULA).valores();
+                return con(fila -> condicion.test(peliculaIds[aTraves[fila]]));
+            }
+            Vista vista = vista(tabla, columna);
+            return con(fila -> condicion.test(vista.valor(fila)));
+        }
+
+        private Consulta con(IntPredicate filtro) {
+            List<IntPredicate> nuevos = new ArrayList<>(filtros);
+            nuevos.add(filtro);
+            return new Consulta(tabla, List.copyOf(nuevos));
+        }
+
+        /** 🔢 Cuántas filas pasan los filtros. */
+        public long contar() {
+            return tramos().mapToLong(tramo -> {
+                long cuenta = 0;
+                for (int fila = inicio(tramo), fin = fin(tramo); fila < fin; fila++) {
+                    if (pasa(fila)) {
+                        cuenta++;
+                    }
+                }
+                return cuenta;
+            }).sum();
+        }
+
+        /**
+         * 📊 CUÁNTAS FILAS HAY DE CADA VALOR DE "columna"
+         * Solo los valores con alguna fila, de más a menos (empate: por clave).
+         */
+        public List<Recuento> contarPor(Columna columna) {
+            Vista vista = vista(tabla, columna);
+            long[] cuentas = tramos()
+                    .mapToObj(tramo -> contarTramo(vista, tramo))
+                    .reduce(InstantaneaColumnar::sumar)
+                    .orElseGet(() -> new long[Math.max(0, vista.grupos())]);
+            List<Recuento> recuentos = new ArrayList<>();
+            for (int grupo = 0; grupo < cuentas.length; grupo++) {
+                if (cuentas[grupo] > 0) {
+                    recuentos.add(new Recuento(vista.clave(InstantaneaColumnar.this, grupo), cuentas[grupo]));
+                }
+            }
+            recuentos.sort(Comparator.comparingLong(Recuento::cuenta).reversed().thenComparing(Recuento::clave));
+            return recuentos;
+        }
+
+        private long[] contarTramo(Vista vista, int tramo) {
+            long[] cuentas = new long[vista.grupos()];
+            int base = vista.base();
+            int[] valores = vista.valores();
+            int[] aTraves = vista.aTraves();
+            for (int fila = inicio(tramo), fin = fin(tramo); fila < fin; fila++) {
+                if (pasa(fila)) {
+                    cuentas[(aTraves == null ? valores[fila] : valores[aTraves[fila]]) - base]++;
+                }
+            }
+            return cuentas;
+        }
+
+        private boolean pasa(int fila) {
+            for (IntPredicate filtro : filtros) {
+                if (!filtro.test(fila)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private IntStream tramos() {
+            int tramos = (filas(tabla) + TRAMO - 1) / TRAMO;
+            IntStream stream = IntStream.range(0, tramos);
+            return tramos > 1 ? stream.parallel() : stream;
+        }
+
+        private int inicio(int tramo) {
+            return tramo * TRAMO;
+        }
+
+        private int fin(int tramo) {
+            return Math.min(filas(tabla), (tramo + 1) * TRAMO);
+        }
+    }
+
+    private static long[] sumar(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+        }
+        return a;
+    }
+
+    /**
+     * 🧰 CONSTRUCTOR (un solo hilo)
+     * Las películas tienen que llegar por orden de id y antes que opiniones y cines
+     * (para buscar su fila con una búsqueda binaria). Las filas cuya película no está se saltan.
+     */
+    static final class Constructor {
+
+        private final Enteros peliculaIds = new Enteros();
+        private final Enteros anyos = new Enteros();
+        private final Diccionario titulos = new Diccionario();
+        private final Diccionario directores = new Diccionario();
+        private final Enteros opinionPelicula = new Enteros();
+        private final Diccionario usuarios = new Diccionario();
+        private final Enteros cinePelicula = new Enteros();
+        private final Diccionario cines = new Diccionario();
+        private int[] ids;
+
+        void pelicula(int id, String titulo, String director, int anyo) {
+            peliculaIds.anadir(id);
+            titulos.anadir(titulo);
+            directores.anadir(director);
+            anyos.anadir(anyo);
+        }
+
+        /** false si su película no está (y no se añade). */
+        boolean opinion(int peliculaId, String usuario) {
+            int fila = filaPelicula(peliculaId);
+            if (fila < 0) {
+                return false;
+            }
+            opinionPelicula.anadir(fila);
+            usuarios.anadir(usuario);
+            return true;
+        }
+
+        void cine(int peliculaId, String cine) {
+            int fila = filaPelicula(peliculaId);
+            if (fila >= 0) {
+                cinePelicula.anadir(fila);
+                cines.anadir(cine);
+            }
+        }
+
+        private int filaPelicula(int peliculaId) {
+            if (ids == null) {
+                ids = peliculaIds.array();
+            }
+            return Arrays.binarySearch(ids, peliculaId);
+        }
+
+        InstantaneaColumnar construir() {
+            String[] textosTitulo = titulos.ordenar();
+            String[] textosDirector = directores.ordenar();
+            String[] textosUsuario = usuarios.ordenar();
+            String[] textosCine = cines.ordenar();
+            return new InstantaneaColumnar(new Columnas(peliculaIds.array(), titulos.codigos(), directores.codigos(), anyos.array(),
+                    opinionPelicula.array(), usuarios.codigos(), cinePelicula.array(), cines.codigos(),
+                    textosTitulo, textosDirector, textosUsuario, textosCine));
+        }
+    }
+
+    /** int[] que crece al doble (como un ArrayList, pero sin un Integer por elemento). */
+    static final class Enteros {
+        private int[] datos = new int[1024];
+        private int tamano;
+
+        void anadir(int valor) {
+            if (tamano == datos.length) {
+                datos = Arrays.copyOf(datos, tamano * 2);
+            }
+            datos[tamano++] = valor;
+        }
+
+        int[] array() {
+            return Arrays.copyOf(datos, tamano);
+        }
+    }
+
+    /**
+     * 📖 DICCIONARIO DE UNA COLUMNA DE TEXTO
+     * Mientras se construye, los códigos van por orden de llegada; {@link #ordenar} los
+     * cambia por su posición en el orden alfabético (y reescribe los de cada fila), así
+     * la instantánea no necesita el HashMap, solo el array ordenado. null cuenta como "".
+     */
+    private static final class Diccionario {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> textos = new ArrayList<>();
+        private final Enteros filas = new Enteros();
+        private int[] ordenados;
+
+        void anadir(String texto) {
+            String clave = texto == null ? "" : texto;
+            Integer codigo = codigos.get(clave);
+            if (codigo == null) {
+                codigo = textos.size();
+                codigos.put(clave, codigo);
+                textos.add(clave);
+            }
+            filas.anadir(codigo);
+        }
+
+        String[] ordenar() {
+            String[] alfabetico = textos.toArray(new String[0]);
+            Arrays.sort(alfabetico);
+            int[] nuevo = new int[alfabetico.length];
+            for (int i = 0; i < alfabetico.length; i++) {
+                nuevo[codigos.get(alfabetico[i])] = i;
+            }
+            ordenados = filas.array();
+            for (int i = 0; i < ordenados.length; i++) {
+                ordenados[i] = nuevo[ordenados[i]];
+            }
+            return alfabetico;
+        }
+
+        /** Código de cada fila (después de {@link #ordenar}). */
+        int[] codigos() {
+            return ordenados;
+        }
+    }
+}
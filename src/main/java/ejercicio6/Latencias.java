@@ -0,0 +1,98 @@
+package ejercicio6;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ⏱️ HISTOGRAMA DE LATENCIAS
+ * Cuenta cada medida (en microsegundos) en cubos logarítmicos: 32 cubos por cada
+ * potencia de dos, así que cualquier percentil sale con menos de un 3% de error
+ * y el histograma ocupa siempre lo mismo (~15 KB) aunque se registren millones de medidas.
+ * Se puede registrar desde muchos hilos a la vez sin bloqueos.
+ */
+public class Latencias {
+
+    private static final int BITS_SUBCUBO = 5;
+    private static final int SUBCUBOS = 1 << BITS_SUBCUBO;
+
+    private final AtomicLongArray cubos = new AtomicLongArray((64 - BITS_SUBCUBO + 1) * SUBCUBOS);
+    private final AtomicLong maximo = new AtomicLong();
+
+    /** Registra una duración medida con System.nanoTime(). */
+    public void registrar(long nanos) {
+        long micros = Math.max(0, nanos / 1_000);
+        cubos.incrementAndGet(cubo(micros));
+        maximo.accumulateAndGet(micros, Math::max);
+    }
+
+    /** Número de medidas registradas. */
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < cubos.length(); i++) {
+            total += cubos.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 📈 PERCENTIL (0-100) EN MICROSEGUNDOS
+     * Devuelve el límite superior del cubo donde cae, sin pasar del máximo visto.
+     */
+    public long percentil(double percentil) {
+        long[] copia = new long[cubos.length()];
+        long total = 0;
+        for (int i = 0; i < copia.length; i++) {
+            copia[i] = cubos.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long posicion = Math.max(1, (long) Math.ceil(percentil / 100 * total));
+        long acumulado = 0;
+        for (int i = 0; i < copia.length; i++) {
+            acumulado += copia[i];
+            if (acumulado >= posicion) {
+                return Math.min(inicioCubo(i + 1) - 1, maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public long maximo() {
+        return maximo.get();
+    }
+
+    /** "n=1200 p50=1,2 ms p90=3,4 ms p99=8,0 ms p99.9=15,1 ms max=22,7 ms" */
+    public String resumen() {
+        return "n=" + total()
+                + " p50=" + ms(percentil(50))
+                + " p90=" + ms(percentil(90))
+                + " p99=" + ms(percentil(99))
+                + " p99.9=" + ms(percentil(99.9))
+                + " max=" + ms(maximo());
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.1f ms", micros / 1000.0);
+    }
+
+    /** Los valores pequeños van a su propio cubo; a partir de 32, 32 cubos por potencia de dos. */
+    static int cubo(long micros) {
+        if (micros < SUBCUBOS) {
+            return (int) micros;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(micros);
+        int subcubo = (int) (micros >>> (exponente - BITS_SUBCUBO)) & (SUBCUBOS - 1);
+        return (exponente - BITS_SUBCUBO + 1) * SUBCUBOS + subcubo;
+    }
+
+    /** Valor más pequeño que cae en el cubo "i". */
+    static long inicioCubo(int i) {
+        if (i < SUBCUBOS) {
+            return i;
+        }
+        int exponente = i / SUBCUBOS + BITS_SUBCUBO - 1;
+        return (long) (SUBCUBOS + i % SUBCUBOS) << (exponente - BITS_SUBCUBO);
+    }
+}
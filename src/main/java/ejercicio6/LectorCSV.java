@@ -0,0 +1,373 @@
+package ejercicio6;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 📖 LECTOR DE CSV SOBRE MEMORIA MAPEADA
+ * Recorre un archivo ";"-separado en UTF-8 sin leerlo línea a línea ni usar split():
+ * - El archivo se mapea en ventanas de {@link #TAMANO_VENTANA} bytes que se vuelcan de
+ *   golpe a un único byte[] (memoria constante aunque el archivo pese varios GB).
+ * - Los separadores se buscan de 8 en 8 bytes sobre ese array, sin regex ni String intermedios.
+ * - Cada registro se entrega al consumidor en un único {@link Registro} reutilizable que
+ *   apunta a los bytes de la ventana: los campos solo se convierten a String si se piden.
+ * Campos entre comillas: "a;b" es un campo con un ";" dentro y "" dentro de comillas
+ * es una comilla literal (como en RFC 4180). Las líneas vacías se ignoran, el "\r" final
+ * de Windows se quita y el BOM de UTF-8 al principio del archivo se salta.
+ */
+public final class LectorCSV {
+
+    public static final byte SEPARADOR = ';';
+    private static final byte COMILLA = '"';
+
+    private static final VarHandle COMO_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long UNOS = 0x0101010101010101L;
+    private static final long ALTOS = 0x8080808080808080L;
+    private static final long REPETIR_SEPARADOR = UNOS * SEPARADOR;
+    private static final long REPETIR_SALTO = UNOS * '\n';
+
+    /** Bytes leídos a la vez (un registro nunca puede ocupar más que esto). */
+    static final int TAMANO_VENTANA = 8 * 1024 * 1024;
+
+    private LectorCSV() {
+    }
+
+    /** Hash de bytes[desde, hasta) para buscar campos por sus bytes (ver {@link Registro#hashCampo}). */
+    public static int hash(byte[] bytes, int desde, int hasta) {
+        int h = 1;
+        for (int i = desde; i < hasta; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 🧾 REGISTRO ACTUAL
+     * Vista sobre los bytes de la línea que se está procesando: apunta directamente a la
+     * ventana, salvo si la línea tiene comillas (entonces se copia ya sin ellas).
+     * ⚠️ Se reutiliza: solo es válido dentro de la llamada al consumidor.
+     */
+    public static final class Registro {
+        private byte[] datos;
+        private byte[] copia = new byte[256];
+        private int longitudCopia;
+        private int[] inicioCampos = new int[8];
+        private int[] finCampos = new int[8];
+        private int numCampos;
+        private long posicion;
+
+        public int numCampos() {
+            return numCampos;
+        }
+
+        /** Byte del archivo en el que empieza la línea. */
+        public long posicion() {
+            return posicion;
+        }
+
+        /** Longitud en bytes (UTF-8) del campo i. */
+        public int longitudCampo(int i) {
+            comprobar(i);
+            return finCampos[i] - inicioCampos[i];
+        }
+
+        /** Campo i decodificado como UTF-8. */
+        public String campo(int i) {
+            comprobar(i);
+            return new String(datos, inicioCampos[i], finCampos[i] - inicioCampos[i], StandardCharsets.UTF_8);
+        }
+
+        /** Campo i como entero, sin crear un String. */
+        public int campoInt(int i) {
+            comprobar(i);
+            int p = inicioCampos[i];
+            int fin = finCampos[i];
+            boolean negativo = p < fin && datos[p] == '-';
+            if (negativo || (p < fin && datos[p] == '+')) {
+                p++;
+            }
+            if (p == fin) {
+                throw new NumberFormatException("Campo vacío en la columna " + i);
+            }
+            int valor = 0;
+            for (; p < fin; p++) {
+                int digito = datos[p] - '0';
+                if (digito < 0 || digito > 9) {
+                    throw new NumberFormatException("No es un número: \"" + campo(i) + "\"");
+                }
+                valor = Math.addExact(Math.multiplyExact(valor, 10), digito);
+            }
+            return negativo ? -valor : valor;
+        }
+
+        /** Hash de los bytes del campo i, el mismo que {@link LectorCSV#hash} de esos bytes. */
+        public int hashCampo(int i) {
+            comprobar(i);
+            return hash(datos, inicioCampos[i], finCampos[i]);
+        }
+
+        /** ¿Tiene el campo i exactamente estos bytes (UTF-8)? Sin crear un String. */
+        public boolean campoIgual(int i, byte[] bytes) {
+            comprobar(i);
+            return Arrays.equals(datos, inicioCampos[i], finCampos[i], bytes, 0, bytes.length);
+        }
+
+        /** Todos los campos como String[] (lo que devolvía split(";")). */
+        public String[] campos() {
+            String[] campos = new String[numCampos];
+            for (int i = 0; i < numCampos; i++) {
+                campos[i] = campo(i);
+            }
+            return campos;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(";", campos());
+        }
+
+        private void comprobar(int i) {
+            if (i < 0 || i >= numCampos) {
+                throw new ArrayIndexOutOfBoundsException("La línea del byte " + posicion + " tiene "
+                        + numCampos + " campos, no hay campo " + i);
+            }
+        }
+
+        private void empezar(byte[] datos, long posicion) {
+            this.datos = datos;
+            this.posicion = posicion;
+            numCampos = 0;
+        }
+
+        /** Pasa a copiar los bytes (la línea tiene comillas). */
+        private void empezarCopia(long posicion) {
+            empezar(copia, posicion);
+            longitudCopia = 0;
+        }
+
+        private void anadirCampo(int inicio, int fin) {
+            if (numCampos == finCampos.length) {
+                inicioCampos = Arrays.copyOf(inicioCampos, numCampos * 2);
+                finCampos = Arrays.copyOf(finCampos, numCampos * 2);
+            }
+            inicioCampos[numCampos] = inicio;
+            finCampos[numCampos++] = fin;
+        }
+
+        private void copiar(byte[] origen, int desde, int cuantos) {
+            asegurarHueco(cuantos);
+            System.arraycopy(origen, desde, copia, longitudCopia, cuantos);
+            longitudCopia += cuantos;
+        }
+
+        private void copiar(byte b) {
+            asegurarHueco(1);
+            copia[longitudCopia++] = b;
+        }
+
+        private void cerrarCampoCopiado(int inicio) {
+            anadirCampo(inicio, longitudCopia);
+        }
+
+        private void asegurarHueco(int cuantos) {
+            if (longitudCopia + cuantos > copia.length) {
+                copia = Arrays.copyOf(copia, Math.max(copia.length * 2, longitudCopia + cuantos));
+                datos = copia;
+            }
+        }
+
+        private boolean vacio() {
+            return numCampos == 1 && finCampos[0] == inicioCampos[0];
+        }
+    }
+
+    /**
+     * 📖 RECORRER TODO EL ARCHIVO
+     */
+    public static void recorrer(File archivo, Consumer<Registro> consumidor) throws IOException {
+        recorrerTramo(archivo, 0, archivo.length(), consumidor);
+    }
+
+    /**
+     * ✂️ RECORRER UN TRAMO
+     * Procesa solo las líneas que EMPIEZAN en el rango de bytes [inicio, fin): la que
+     * cruza un límite es del tramo donde empieza, así varios hilos se pueden repartir
+     * un archivo sin perder ni repetir líneas.
+     * ⚠️ Para partir en tramos las comillas no pueden contener saltos de línea
+     * (recorriendo el archivo entero sí se admiten).
+     */
+    public static void recorrerTramo(File archivo, long inicio, long fin, Consumer<Registro> consumidor) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo.toPath(), StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            fin = Math.min(fin, tamano);
+            byte[] bloque = new byte[(int) Math.min(TAMANO_VENTANA, Math.max(tamano, 1))];
+            long posicion = inicio;
+
+            if (inicio > 0) {
+                // La línea empieza justo en "inicio" solo si el byte anterior es '\n'
+                posicion = inicioDeLineaSiguiente(canal, bloque, inicio - 1, tamano);
+            }
+
+            Registro registro = new Registro();
+            while (posicion < fin) {
+                int limite = leerVentana(canal, bloque, posicion, tamano);
+                boolean ultimaVentana = posicion + limite == tamano;
+                int p = 0;
+
+                if (posicion == 0 && limite >= 3 && bloque[0] == (byte) 0xEF
+                        && bloque[1] == (byte) 0xBB && bloque[2] == (byte) 0xBF) {
+                    p = 3;
+                }
+
+                while (p < limite && posicion + p < fin) {
+                    int siguiente = leerRegistro(bloque, p, limite, ultimaVentana, posicion, registro);
+                    if (siguiente < 0) {
+                        break;
+                    }
+                    if (!registro.vacio()) {
+                        consumidor.accept(registro);
+                    }
+                    p = siguiente;
+                }
+
+                if (p == 0) {
+                    throw new IOException("Línea de más de " + TAMANO_VENTANA + " bytes en "
+                            + archivo.getName() + " (byte " + posicion + ")");
+                }
+                posicion += p;
+            }
+        }
+    }
+
+    /** Mapea [posicion, posicion + bloque.length) y lo vuelca en "bloque". Devuelve los bytes leídos. */
+    private static int leerVentana(FileChannel canal, byte[] bloque, long posicion, long tamano) throws IOException {
+        int longitud = (int) Math.min(bloque.length, tamano - posicion);
+        MappedByteBuffer ventana = canal.map(FileChannel.MapMode.READ_ONLY, posicion, longitud);
+        ventana.get(0, bloque, 0, longitud);
+        return longitud;
+    }
+
+    /** Posición del primer byte después del primer '\n' a partir de "desde" (o "tamano"). */
+    private static long inicioDeLineaSiguiente(FileChannel canal, byte[] bloque, long desde, long tamano) throws IOException {
+        long posicion = desde;
+        while (posicion < tamano) {
+            int limite = leerVentana(canal, bloque, posicion, tamano);
+            for (int p = 0; p < limite; p++) {
+                if (bloque[p] == '\n') {
+                    return posicion + p + 1;
+                }
+            }
+            posicion += limite;
+        }
+        return tamano;
+    }
+
+    /**
+     * 🔍 LEER UN REGISTRO QUE EMPIEZA EN "p"
+     * Camino rápido: campos sin comillas, que se quedan apuntando a "bloque".
+     * Si aparece una comilla al principio de un campo se vuelve a leer la línea copiándola.
+     * Devuelve la posición de la línea siguiente, o -1 si el registro no cabe entero
+     * en la ventana (hay que volver a leer empezando en él).
+     */
+    private static int leerRegistro(byte[] bloque, int p, int limite, boolean ultimaVentana, long base, Registro registro) {
+        int inicioLinea = p;
+        registro.empezar(bloque, base + p);
+        while (true) {
+            if (p < limite && bloque[p] == COMILLA) {
+                return leerRegistroConComillas(bloque, inicioLinea, limite, ultimaVentana, base, registro);
+            }
+            int desde = p;
+            p = buscarFinCampo(bloque, p, limite);
+            if (p >= limite && !ultimaVentana) {
+                return -1;
+            }
+            if (p >= limite || bloque[p] == '\n') {
+                int hasta = p > desde && bloque[p - 1] == '\r' ? p - 1 : p;
+                registro.anadirCampo(desde, hasta);
+                return p >= limite ? p : p + 1;
+            }
+            registro.anadirCampo(desde, p);
+            p++;
+        }
+    }
+
+    /**
+     * 🔎 BUSCAR EL PRÓXIMO ";" O "\n"
+     * Mira 8 bytes de golpe (un long): con la resta de 0x01 por byte se detecta si algún
+     * byte del long coincide, y el primer bit alto marca cuál. Los últimos bytes, uno a uno.
+     */
+    static int buscarFinCampo(byte[] bloque, int p, int limite) {
+        while (p + Long.BYTES <= limite) {
+            long palabra = (long) COMO_LONG.get(bloque, p);
+            long conSeparador = palabra ^ REPETIR_SEPARADOR;
+            long conSalto = palabra ^ REPETIR_SALTO;
+            long coincidencias = ((conSeparador - UNOS) & ~conSeparador | (conSalto - UNOS) & ~conSalto) & ALTOS;
+            if (coincidencias != 0) {
+                return p + (Long.numberOfTrailingZeros(coincidencias) >>> 3);
+            }
+            p += Long.BYTES;
+        }
+        while (p < limite && bloque[p] != SEPARADOR && bloque[p] != '\n') {
+            p++;
+        }
+        return p;
+    }
+
+    /** Igual que {@link #leerRegistro} pero copiando los campos para poder quitar las comillas. */
+    private static int leerRegistroConComillas(byte[] bloque, int p, int limite, boolean ultimaVentana, long base, Registro registro) {
+        registro.empezarCopia(base + p);
+        while (true) {
+            int inicioCampo = registro.longitudCopia;
+            if (p < limite && bloque[p] == COMILLA) {
+                // Entre comillas ";" y "\n" son texto y "" es una comilla
+                p++;
+                while (true) {
+                    if (p >= limite) {
+                        if (!ultimaVentana) {
+                            return -1;
+                        }
+                        break;
+                    }
+                    byte b = bloque[p++];
+                    if (b != COMILLA) {
+                        registro.copiar(b);
+                    } else if (p < limite && bloque[p] == COMILLA) {
+                        registro.copiar(COMILLA);
+                        p++;
+                    } else if (p >= limite && !ultimaVentana) {
+                        return -1;
+                    } else {
+                        break;
+                    }
+                }
+            }
+
+            // Resto del campo (o campo sin comillas) hasta ";" o fin de línea
+            int desde = p;
+            while (p < limite && bloque[p] != SEPARADOR && bloque[p] != '\n') {
+                p++;
+            }
+            if (p >= limite && !ultimaVentana) {
+                return -1;
+            }
+            boolean finLinea = p >= limite || bloque[p] == '\n';
+            int hasta = finLinea && p > desde && bloque[p - 1] == '\r' ? p - 1 : p;
+            registro.copiar(bloque, desde, hasta - desde);
+            registro.cerrarCampoCopiado(inicioCampo);
+
+            if (finLinea) {
+                return p >= limite ? p : p + 1;
+            }
+            p++;
+        }
+    }
+}
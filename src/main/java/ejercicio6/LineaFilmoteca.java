@@ -0,0 +1,29 @@
+package ejercicio6;
+
+/**
+ * 🎬 UNA LÍNEA DE LA FILMOTECA (SOLO LECTURA)
+ * Una película con una de sus opiniones; si la película no tiene ninguna, una sola
+ * línea con opinionId, usuario, opinion y versionOpinion a null.
+ */
+public record LineaFilmoteca(int peliculaId, String titulo, String director, int anyo,
+                             Integer opinionId, String usuario, String opinion, Integer versionOpinion) {
+
+    public FichaPelicula pelicula() {
+        return new FichaPelicula(peliculaId, titulo, director, anyo);
+    }
+
+    /** La misma línea con otro texto y versión (un cambio pendiente, ver {@link EscrituraDiferida}). */
+    public LineaFilmoteca conOpinion(String nueva, int nuevaVersion) {
+        return new LineaFilmoteca(peliculaId, titulo, director, anyo, opinionId, usuario, nueva, nuevaVersion);
+    }
+
+    /** Id de la opinión, o 0 si es la línea de una película sin opiniones. */
+    int idOpinion() {
+        return opinionId == null ? 0 : opinionId;
+    }
+
+    /** Versión de la opinión, o 0 si es la línea de una película sin opiniones. */
+    int version() {
+        return versionOpinion == null ? 0 : versionOpinion;
+    }
+}
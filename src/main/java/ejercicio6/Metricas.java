@@ -0,0 +1,217 @@
+package ejercicio6;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 📊 MÉTRICAS POR OPERACIÓN
+ * Cada operación del programa (importar, mostrar la filmoteca, iniciar sesión, las
+ * carteleras, las exportaciones...) se ejecuta dentro de {@link #medir}, que cuenta
+ * llamadas, errores y tiempos y marca la operación como "en curso" en el hilo.
+ * Mientras tanto {@link MetricasSesion} suma las consultas, lotes, flushes y la espera
+ * de conexión de las sesiones de Hibernate, y un PostLoadEventListener (ver
+ * {@link FabricaSesiones}) las entidades cargadas.
+ * La operación en curso se hereda en los hilos que se crean dentro de ella (las
+ * importaciones en paralelo cuentan entera su operación).
+ * Se ven en:
+ * - el log "ejercicio6.metricas", una línea cada -Dejercicio6.metricas.intervalo segundos
+ *   (60 por defecto, 0 = nunca) si ha habido actividad,
+ * - JMX: "ejercicio6:type=Metricas,operacion=NOMBRE" ({@link MetricasOperacionMXBean}),
+ * - la opción 10 del menú y GET /metricas del servidor HTTP.
+ */
+public class Metricas {
+
+    public static final String PROPIEDAD_INTERVALO = "ejercicio6.metricas.intervalo";
+
+    private static final Logger LOG = Logger.getLogger("ejercicio6.metricas");
+
+    /** Ordenadas por nombre para que el log y el menú salgan siempre igual. */
+    private static final Map<String, MetricasOperacion> OPERACIONES = new ConcurrentSkipListMap<>();
+
+    private static final InheritableThreadLocal<MetricasOperacion> ACTUAL = new InheritableThreadLocal<>();
+
+    /** Una operación que puede lanzar una excepción comprobada (p. ej. IOException al exportar). */
+    public interface Tarea<T, E extends Exception> {
+        T ejecutar() throws E;
+    }
+
+    /** Igual que {@link Tarea}, sin resultado. */
+    public interface Accion<E extends Exception> {
+        void ejecutar() throws E;
+    }
+
+    /**
+     * ⏱️ MEDIR UNA OPERACIÓN
+     * Si ya había otra en curso en el hilo (operaciones anidadas), lo de dentro cuenta
+     * solo para la de dentro y al terminar se vuelve a la de fuera.
+     */
+    public static <T, E extends Exception> T medir(String nombre, Tarea<T, E> tarea) throws E {
+        MetricasOperacion operacion = operacion(nombre);
+        MetricasOperacion anterior = ACTUAL.get();
+        ACTUAL.set(operacion);
+        long inicio = System.nanoTime();
+        boolean error = true;
+        try {
+            T resultado = tarea.ejecutar();
+            error = false;
+            return resultado;
+        } finally {
+            operacion.registrar(System.nanoTime() - inicio, error);
+            ACTUAL.set(anterior);
+        }
+    }
+
+    /** ⏱️ MEDIR UNA OPERACIÓN SIN RESULTADO */
+    public static <E extends Exception> void medirAccion(String nombre, Accion<E> accion) throws E {
+        medir(nombre, () -> {
+            accion.ejecutar();
+            return null;
+        });
+    }
+
+    /** Operación en curso en este hilo (null si ninguna). */
+    public static MetricasOperacion actual() {
+        return ACTUAL.get();
+    }
+
+    /** Suma una entidad cargada a la operación en curso. */
+    static void entidadCargada() {
+        MetricasOperacion operacion = ACTUAL.get();
+        if (operacion != null) {
+            operacion.entidades.increment();
+        }
+    }
+
+    /** Suma filas leídas con cursor a la operación en curso. */
+    static void filasLeidas(long filas) {
+        MetricasOperacion operacion = ACTUAL.get();
+        if (operacion != null) {
+            operacion.filas.add(filas);
+        }
+    }
+
+    /** Suma un reintento por conflicto de versión a la operación en curso. */
+    static void reintento() {
+        MetricasOperacion operacion = ACTUAL.get();
+        if (operacion != null) {
+            operacion.reintentos.increment();
+        }
+    }
+
+    /** Suma un conflicto de versión sin resolver a la operación en curso. */
+    static void conflicto() {
+        MetricasOperacion operacion = ACTUAL.get();
+        if (operacion != null) {
+            operacion.conflictos.increment();
+        }
+    }
+
+    /**
+     * Las métricas de una operación; la primera vez se crean y se publican en JMX.
+     */
+    public static MetricasOperacion operacion(String nombre) {
+        MetricasOperacion operacion = OPERACIONES.get(nombre);
+        if (operacion != null) {
+            return operacion;
+        }
+        // computeIfAbsent de ConcurrentSkipListMap no es atómico: con putIfAbsent solo publica quien gana
+        MetricasOperacion nueva = new MetricasOperacion(nombre);
+        operacion = OPERACIONES.putIfAbsent(nombre, nueva);
+        if (operacion != null) {
+            return operacion;
+        }
+        registrarJmx(nueva);
+        return nueva;
+    }
+
+    private static void registrarJmx(MetricasOperacion operacion) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nombre = new ObjectName("ejercicio6:type=Metricas,operacion=" + ObjectName.quote(operacion.getNombre()));
+            if (!servidor.isRegistered(nombre)) {
+                servidor.registerMBean(operacion, nombre);
+            }
+        } catch (JMException e) {
+            LOG.warning("No se pudo publicar en JMX la operación " + operacion.getNombre() + ": " + e);
+        }
+    }
+
+    /**
+     * 📋 IMPRIMIR TODAS LAS OPERACIONES
+     * Una línea por operación + los totales de Hibernate (hibernate.generate_statistics).
+     */
+    public static void imprimir(SessionFactory sessionFactory, PrintStream salida) {
+        if (OPERACIONES.isEmpty()) {
+            salida.println("📊 Todavía no se ha medido ninguna operación.");
+        } else {
+            salida.println("📊 Métricas por operación (desde el arranque):");
+            OPERACIONES.values().forEach(operacion -> salida.println("   - " + operacion.resumen()));
+        }
+        salida.println("   " + totalesHibernate(sessionFactory));
+    }
+
+    /**
+     * 🔢 TOTALES DE HIBERNATE
+     * Sentencias, entidades, colecciones, flushes, conexiones y la consulta más lenta.
+     */
+    public static String totalesHibernate(SessionFactory sessionFactory) {
+        Statistics estadisticas = sessionFactory.getStatistics();
+        if (!estadisticas.isStatisticsEnabled()) {
+            return "Hibernate: estadísticas desactivadas (hibernate.generate_statistics=false)";
+        }
+        return "Hibernate: " + estadisticas.getPrepareStatementCount() + " sentencias, "
+                + estadisticas.getQueryExecutionCount() + " consultas HQL/SQL, "
+                + estadisticas.getEntityLoadCount() + " entidades cargadas, "
+                + estadisticas.getEntityFetchCount() + " cargadas de una en una, "
+                + estadisticas.getCollectionFetchCount() + " colecciones cargadas aparte, "
+                + estadisticas.getFlushCount() + " flushes, "
+                + estadisticas.getConnectCount() + " conexiones pedidas"
+                + (estadisticas.getQueryExecutionMaxTime() > 0
+                ? ", consulta más lenta " + estadisticas.getQueryExecutionMaxTime() + " ms: " + estadisticas.getQueryExecutionMaxTimeQueryString()
+                : "");
+    }
+
+    /**
+     * 🕒 LÍNEA PERIÓDICA EN EL LOG
+     * Cada -Dejercicio6.metricas.intervalo segundos, solo si ha habido llamadas nuevas.
+     * El hilo es daemon: no impide que el programa termine.
+     */
+    public static void arrancarInforme(SessionFactory sessionFactory) {
+        long intervalo = Long.getLong(PROPIEDAD_INTERVALO, 60);
+        if (intervalo <= 0) {
+            return;
+        }
+        ScheduledExecutorService programador = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("metricas").daemon().factory());
+        long[] llamadasAnteriores = {0};
+        programador.scheduleAtFixedRate(() -> {
+            long llamadas = OPERACIONES.values().stream().mapToLong(MetricasOperacion::getLlamadas).sum();
+            if (llamadas == llamadasAnteriores[0] || sessionFactory.isClosed()) {
+                return;
+            }
+            llamadasAnteriores[0] = llamadas;
+            LOG.info(lineaLog(sessionFactory));
+        }, intervalo, intervalo, TimeUnit.SECONDS);
+    }
+
+    /** Todas las operaciones en una sola línea, separadas por " | ". */
+    static String lineaLog(SessionFactory sessionFactory) {
+        StringJoiner linea = new StringJoiner(" | ", "📊 ", "");
+        OPERACIONES.values().forEach(operacion -> linea.add(operacion.resumen()));
+        linea.add(totalesHibernate(sessionFactory));
+        return linea.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package ejercicio6;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 📊 CONTADORES DE UNA OPERACIÓN
+ * Los rellenan {@link Metricas#medir} (llamadas, tiempo, errores) y
+ * {@link MetricasSesion} (lo que hace cada sesión de Hibernate mientras la operación está en curso).
+ * LongAdder en todo: se suman desde muchos hilos a la vez sin bloquearse.
+ */
+public class MetricasOperacion implements MetricasOperacionMXBean {
+
+    private final String nombre;
+    private volatile Latencias tiempos = new Latencias();
+    final LongAdder llamadas = new LongAdder();
+    final LongAdder errores = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder consultas = new LongAdder();
+    final LongAdder lotes = new LongAdder();
+    final LongAdder entidades = new LongAdder();
+    final LongAdder filas = new LongAdder();
+    final LongAdder flushes = new LongAdder();
+    final LongAdder esperaConexionNanos = new LongAdder();
+    final LongAdder reintentos = new LongAdder();
+    final LongAdder conflictos = new LongAdder();
+
+    MetricasOperacion(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    void registrar(long duracion, boolean error) {
+        llamadas.increment();
+        nanos.add(duracion);
+        tiempos.registrar(duracion);
+        if (error) {
+            errores.increment();
+        }
+    }
+
+    @Override
+    public long getLlamadas() {
+        return llamadas.sum();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public double getTiempoMedioMs() {
+        long n = llamadas.sum();
+        return n == 0 ? 0 : nanos.sum() / 1e6 / n;
+    }
+
+    @Override
+    public double getP50Ms() {
+        return tiempos.percentil(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Ms() {
+        return tiempos.percentil(99) / 1000.0;
+    }
+
+    @Override
+    public double getMaximoMs() {
+        return tiempos.maximo() / 1000.0;
+    }
+
+    @Override
+    public long getConsultas() {
+        return consultas.sum();
+    }
+
+    @Override
+    public long getLotes() {
+        return lotes.sum();
+    }
+
+    @Override
+    public long getEntidadesCargadas() {
+        return entidades.sum();
+    }
+
+    @Override
+    public long getFilas() {
+        return filas.sum();
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public double getEsperaConexionMs() {
+        return esperaConexionNanos.sum() / 1e6;
+    }
+
+    @Override
+    public long getReintentos() {
+        return reintentos.sum();
+    }
+
+    @Override
+    public long getConflictos() {
+        return conflictos.sum();
+    }
+
+    @Override
+    public double getConsultasPorLlamada() {
+        long n = llamadas.sum();
+        return n == 0 ? 0 : (double) consultas.sum() / n;
+    }
+
+    @Override
+    public void reiniciar() {
+        for (LongAdder contador : new LongAdder[]{llamadas, errores, nanos, consultas, lotes, entidades, filas, flushes, esperaConexionNanos, reintentos, conflictos}) {
+            contador.reset();
+        }
+        tiempos = new Latencias();
+    }
+
+    /** "mostrarFilmoteca: 3 llamadas, p50 12,0 ms, p99 30,1 ms, 1,0 consultas/llamada, ..." */
+    public String resumen() {
+        return String.format("%s: %d llamadas%s, media %.1f ms, p50 %.1f ms, p99 %.1f ms, %.1f consultas/llamada, "
+                        + "%d lotes, %d entidades, %d filas, %d flushes, espera de conexión %.1f ms",
+                nombre, getLlamadas(), getErrores() == 0 ? "" : " (" + getErrores() + " con error)",
+                getTiempoMedioMs(), getP50Ms(), getP99Ms(), getConsultasPorLlamada(),
+                getLotes(), getEntidadesCargadas(), getFilas(), getFlushes(), getEsperaConexionMs())
+                + (getReintentos() + getConflictos() == 0 ? ""
+                : String.format(", %d reintentos, %d conflictos", getReintentos(), getConflictos()));
+    }
+}
@@ -0,0 +1,50 @@
+package ejercicio6;
+
+/**
+ * 📊 MÉTRICAS DE UNA OPERACIÓN VISTAS DESDE JMX
+ * Cada operación medida con {@link Metricas} se registra como
+ * "ejercicio6:type=Metricas,operacion=NOMBRE" (visible en JConsole / VisualVM).
+ * Todos los contadores son acumulados desde el arranque (o desde reiniciar()).
+ */
+public interface MetricasOperacionMXBean {
+
+    long getLlamadas();
+
+    long getErrores();
+
+    double getTiempoMedioMs();
+
+    double getP50Ms();
+
+    double getP99Ms();
+
+    double getMaximoMs();
+
+    /** Sentencias SQL ejecutadas (sin contar los lotes). */
+    long getConsultas();
+
+    /** Lotes JDBC enviados (executeBatch). */
+    long getLotes();
+
+    /** Entidades materializadas (de la base de datos o de la caché de segundo nivel). */
+    long getEntidadesCargadas();
+
+    /** Filas leídas con cursor en las consultas de proyección. */
+    long getFilas();
+
+    long getFlushes();
+
+    /** Tiempo total esperando a que el pool entregue una conexión. */
+    double getEsperaConexionMs();
+
+    /** Ediciones que se repitieron porque otra transacción cambió la fila entre la lectura y la escritura. */
+    long getReintentos();
+
+    /** Ediciones que terminaron en conflicto (el usuario tiene que decidir) o se descartaron. */
+    long getConflictos();
+
+    /** Consultas por llamada: si crece con los datos, huele a N+1. */
+    double getConsultasPorLlamada();
+
+    void reiniciar();
+}
@@ -0,0 +1,52 @@
+package ejercicio6;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * 🔌 ESCUCHA DE CADA SESIÓN DE HIBERNATE
+ * Hibernate crea una por sesión (hibernate.session.events.auto en hibernate.cfg.xml)
+ * y la avisa de cada sentencia, lote, flush y préstamo de conexión. Todo se suma a la
+ * operación que esté en curso en ese hilo ({@link Metricas#actual()}); fuera de
+ * cualquier operación medida no se cuenta nada.
+ */
+public class MetricasSesion extends BaseSessionEventListener {
+
+    private long inicioConexion;
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        inicioConexion = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        MetricasOperacion operacion = Metricas.actual();
+        if (operacion != null) {
+            operacion.esperaConexionNanos.add(System.nanoTime() - inicioConexion);
+        }
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        MetricasOperacion operacion = Metricas.actual();
+        if (operacion != null) {
+            operacion.consultas.increment();
+        }
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        MetricasOperacion operacion = Metricas.actual();
+        if (operacion != null) {
+            operacion.lotes.increment();
+        }
+    }
+
+    @Override
+    public void flushEnd(int numberOfEntities, int numberOfCollections) {
+        MetricasOperacion operacion = Metricas.actual();
+        if (operacion != null) {
+            operacion.flushes.increment();
+        }
+    }
+}
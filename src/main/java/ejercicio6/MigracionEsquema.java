@@ -0,0 +1,124 @@
+package ejercicio6;
+
+import org.hibernate.Session;
+
+/**
+ * 🛠️ MIGRACIONES DEL ESQUEMA
+ * El proyecto no usa hbm2ddl, así que los cambios de esquema que necesitan
+ * los mappings se aplican aquí al arrancar. Todas las sentencias son
+ * idempotentes: se pueden ejecutar en cada inicio sin romper nada.
+ */
+public class MigracionEsquema {
+
+    /** Tablas cuyos ids salen de {@link GeneradorIdsPooled} (segment_value = nombre de la tabla). */
+    static final String[] TABLAS_CON_GENERADOR = {"peliculas", "opiniones", "cines"};
+
+    /**
+     * 🚀 APLICAR TODAS LAS MIGRACIONES
+     */
+    public static void migrar(Session session) {
+        session.beginTransaction();
+        migrarGeneradorIds(session);
+        migrarAsociaciones(session);
+        migrarVersiones(session);
+        crearIndiceSiFalta(session, "opiniones", "idx_opiniones_usuario", "usuario");
+        crearIndiceSiFalta(session, "cines", "idx_cines_cine_pelicula", "cine, pelicula_id");
+        session.getTransaction().commit();
+        session.clear();
+    }
+
+    /**
+     * 🔢 DE "increment" A GENERADOR POR BLOQUES
+     * Crea la tabla de contadores y la sitúa por encima del max(id) de cada tabla,
+     * para que los ids nuevos nunca choquen con las filas que ya existían.
+     * Si el contador ya es mayor (otra JVM reservó bloques) no se toca.
+     */
+    public static void migrarGeneradorIds(Session session) {
+        session.createNativeQuery("CREATE TABLE IF NOT EXISTS " + GeneradorIdsPooled.TABLA + " ("
+                + GeneradorIdsPooled.COLUMNA_ENTIDAD + " VARCHAR(255) NOT NULL PRIMARY KEY, "
+                + GeneradorIdsPooled.COLUMNA_SIGUIENTE + " BIGINT)").executeUpdate();
+
+        for (String tabla : TABLAS_CON_GENERADOR) {
+            session.createNativeQuery("INSERT INTO " + GeneradorIdsPooled.TABLA
+                    + " (" + GeneradorIdsPooled.COLUMNA_ENTIDAD + ", " + GeneradorIdsPooled.COLUMNA_SIGUIENTE + ")"
+                    + " SELECT '" + tabla + "', COALESCE(MAX(id), 0) + 1 FROM " + tabla
+                    + " ON DUPLICATE KEY UPDATE " + GeneradorIdsPooled.COLUMNA_SIGUIENTE
+                    + " = GREATEST(" + GeneradorIdsPooled.COLUMNA_SIGUIENTE + ", VALUES(" + GeneradorIdsPooled.COLUMNA_SIGUIENTE + "))")
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * 🔗 DE TÍTULOS A CLAVES AJENAS
+     * opiniones.titulo y cines.titulo pasan a ser pelicula_id → peliculas.id:
+     * 1. Se añade la columna y se rellena cruzando por título.
+     * 2. Las filas cuyo título no corresponde a ninguna película se borran (no se pueden enlazar).
+     * 3. Se elimina la columna titulo y se crean el índice y la FK.
+     * También se indexa peliculas.titulo, que es por donde se resuelven los CSV.
+     */
+    public static void migrarAsociaciones(Session session) {
+        crearIndiceSiFalta(session, "peliculas", "idx_peliculas_titulo", "titulo");
+
+        for (String tabla : new String[]{"opiniones", "cines"}) {
+            if (!existeColumna(session, tabla, "pelicula_id")) {
+                session.createNativeQuery("ALTER TABLE " + tabla + " ADD COLUMN pelicula_id INT NULL").executeUpdate();
+            }
+            if (existeColumna(session, tabla, "titulo")) {
+                session.createNativeQuery("UPDATE " + tabla + " t JOIN peliculas p ON p.titulo = t.titulo "
+                        + "SET t.pelicula_id = p.id WHERE t.pelicula_id IS NULL").executeUpdate();
+                int huerfanas = session.createNativeQuery("DELETE FROM " + tabla + " WHERE pelicula_id IS NULL").executeUpdate();
+                if (huerfanas > 0) {
+                    System.err.println("⚠️ " + huerfanas + " filas de " + tabla + " sin película borradas en la migración.");
+                }
+                session.createNativeQuery("ALTER TABLE " + tabla + " DROP COLUMN titulo").executeUpdate();
+                session.createNativeQuery("ALTER TABLE " + tabla + " MODIFY pelicula_id INT NOT NULL").executeUpdate();
+            }
+            crearIndiceSiFalta(session, tabla, "idx_" + tabla + "_pelicula", "pelicula_id");
+            if (!existeRestriccion(session, tabla, "fk_" + tabla + "_pelicula")) {
+                session.createNativeQuery("ALTER TABLE " + tabla + " ADD CONSTRAINT fk_" + tabla + "_pelicula "
+                        + "FOREIGN KEY (pelicula_id) REFERENCES peliculas (id)").executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * 🔖 VERSIÓN EN LAS OPINIONES (bloqueo optimista)
+     * Columna version con 0 en las filas que ya había. En MySQL 8 añadir una columna
+     * al final con valor por defecto es instantáneo: no reescribe la tabla.
+     */
+    public static void migrarVersiones(Session session) {
+        if (!existeColumna(session, "opiniones", "version")) {
+            session.createNativeQuery("ALTER TABLE opiniones ADD COLUMN version INT NOT NULL DEFAULT 0").executeUpdate();
+        }
+    }
+
+    /** Crea el índice "nombre" sobre "columnas" si la tabla aún no lo tiene. */
+    static void crearIndiceSiFalta(Session session, String tabla, String nombre, String columnas) {
+        Number existe = (Number) session.createNativeQuery("SELECT COUNT(*) FROM information_schema.STATISTICS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :tabla AND INDEX_NAME = :indice")
+                .setParameter("tabla", tabla)
+                .setParameter("indice", nombre)
+                .uniqueResult();
+        if (existe.intValue() == 0) {
+            session.createNativeQuery("CREATE INDEX " + nombre + " ON " + tabla + " (" + columnas + ")").executeUpdate();
+        }
+    }
+
+    static boolean existeColumna(Session session, String tabla, String columna) {
+        Number existe = (Number) session.createNativeQuery("SELECT COUNT(*) FROM information_schema.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :tabla AND COLUMN_NAME = :columna")
+                .setParameter("tabla", tabla)
+                .setParameter("columna", columna)
+                .uniqueResult();
+        return existe.intValue() > 0;
+    }
+
+    static boolean existeRestriccion(Session session, String tabla, String restriccion) {
+        Number existe = (Number) session.createNativeQuery("SELECT COUNT(*) FROM information_schema.TABLE_CONSTRAINTS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = :tabla AND CONSTRAINT_NAME = :restriccion")
+                .setParameter("tabla", tabla)
+                .setParameter("restriccion", restriccion)
+                .uniqueResult();
+        return existe.intValue() > 0;
+    }
+}
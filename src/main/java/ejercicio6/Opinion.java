@@ -2,21 +2,23 @@ package ejercicio6;
 
 public class Opinion {
     private int id;
-    private String titulo;
+    private Pelicula pelicula;
     private String usuario;
     private String opinion;
+    /** Sube en 1 con cada cambio; Hibernate la comprueba al escribir (ver {@link ResultadoEdicion}). */
+    private int version;
 
     public Opinion() {}
 
-    public Opinion(String titulo, String usuario, String opinion) {
-        this.titulo = titulo;
+    public Opinion(Pelicula pelicula, String usuario, String opinion) {
+        this.pelicula = pelicula;
         this.usuario = usuario;
         this.opinion = opinion;
     }
 
-    public Opinion(int id, String titulo, String usuario, String opinion) {
+    public Opinion(int id, Pelicula pelicula, String usuario, String opinion) {
         this.id = id;
-        this.titulo = titulo;
+        this.pelicula = pelicula;
         this.usuario = usuario;
         this.opinion = opinion;
     }
@@ -29,12 +31,12 @@ public class Opinion {
         this.id = id;
     }
 
-    public String getTitulo() {
-        return titulo;
+    public Pelicula getPelicula() {
+        return pelicula;
     }
 
-    public void setTitulo(String titulo) {
-        this.titulo = titulo;
+    public void setPelicula(Pelicula pelicula) {
+        this.pelicula = pelicula;
     }
 
     public String getUsuario() {
@@ -53,13 +55,22 @@ public class Opinion {
         this.opinion = opinion;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Opinion {" +
                 "id=" + id +
-                ", titulo='" + titulo + '\'' +
+                ", pelicula=" + (pelicula == null ? null : pelicula.getId()) +
                 ", usuario='" + usuario + '\'' +
                 ", opinion='" + opinion + '\'' +
+                ", version=" + version +
                 '}';
     }
 }
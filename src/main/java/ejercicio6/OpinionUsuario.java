@@ -0,0 +1,21 @@
+package ejercicio6;
+
+/**
+ * 💬 UNA OPINIÓN DE UN USUARIO, CON SU PELÍCULA (SOLO LECTURA)
+ * Una fila de "mis opiniones": los datos de la película que se imprimen en la
+ * cabecera y el id, el texto y la versión de la opinión (la que se pasa al modificarla
+ * o borrarla, ver {@link ResultadoEdicion}). Se ordenan por película, así que las
+ * opiniones de una misma película llegan seguidas.
+ */
+public record OpinionUsuario(int peliculaId, String titulo, String director, int anyo, int id, String opinion, int version) {
+
+    /** La película de esta opinión. */
+    public FichaPelicula pelicula() {
+        return new FichaPelicula(peliculaId, titulo, director, anyo);
+    }
+
+    /** La misma fila con otro texto y versión (un cambio pendiente, ver {@link EscrituraDiferida}). */
+    public OpinionUsuario conOpinion(String nueva, int nuevaVersion) {
+        return new OpinionUsuario(peliculaId, titulo, director, anyo, id, nueva, nuevaVersion);
+    }
+}
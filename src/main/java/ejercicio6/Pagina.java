@@ -0,0 +1,15 @@
+package ejercicio6;
+
+import java.util.List;
+
+/**
+ * 📄 UNA PÁGINA DE UN LISTADO
+ * "siguiente" es el token opaco para pedir la página de después (null si esta es la última).
+ * Ver {@link Paginacion}.
+ */
+public record Pagina<T>(List<T> elementos, String siguiente) {
+
+    public boolean hayMas() {
+        return siguiente != null;
+    }
+}
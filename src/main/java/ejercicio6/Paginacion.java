@@ -0,0 +1,228 @@
+package ejercicio6;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 📄 LISTADOS POR PÁGINAS (KEYSET, SIN OFFSET)
+ * Cada página empieza justo después de la última clave de la anterior
+ * ("WHERE clave > :ultima ORDER BY clave LIMIT n") en vez de saltarse filas con OFFSET,
+ * así que la página 10.000 cuesta lo mismo que la primera: es un salto en el índice.
+ * - Películas por id (clave primaria) o por (titulo, id) (idx_peliculas_titulo).
+ * - Filmoteca completa, película a película con sus opiniones: clave (pelicula_id, id)
+ *   (idx_opiniones_pelicula).
+ * - Opiniones de un usuario: clave id dentro del usuario (idx_opiniones_usuario).
+ * La clave de la última fila viaja en un token opaco (Base64 URL) que lleva delante el
+ * listado al que pertenece, para que no se pueda usar el de un listado en otro.
+ * Se pide una fila de más para saber si hay página siguiente sin otra consulta.
+ */
+public class Paginacion {
+
+    /** Tamaño por defecto (-Dejercicio6.pagina.tamano=...). */
+    public static final int TAMANO_POR_DEFECTO = Integer.getInteger("ejercicio6.pagina.tamano", 20);
+    public static final int TAMANO_MAXIMO = 1000;
+
+    /** Orden de las películas. */
+    public enum OrdenPeliculas {ID, TITULO}
+
+    private static final String PELICULAS_ID = "P";
+    private static final String PELICULAS_TITULO = "T";
+    private static final String FILMOTECA = "F";
+    private static final String OPINIONES_USUARIO = "U";
+
+    /**
+     * 🎞️ PÁGINA DE PELÍCULAS
+     * "desde" = token de la página anterior (null para la primera).
+     */
+    public static Pagina<FichaPelicula> peliculas(Session session, OrdenPeliculas orden, String desde, int tamano) {
+        String seleccion = "SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo) FROM ejercicio6.Pelicula p ";
+        Query<FichaPelicula> consulta;
+        if (orden == OrdenPeliculas.TITULO) {
+            String[] clave = leer(desde, PELICULAS_TITULO, 2);
+            consulta = clave == null
+                    ? session.createQuery(seleccion + "ORDER BY p.titulo, p.id", FichaPelicula.class)
+                    // (titulo, id) > (:titulo, :id), escrito para que use el rango del índice
+                    : session.createQuery(seleccion + "WHERE p.titulo >= :titulo AND (p.titulo > :titulo OR p.id > :id) "
+                            + "ORDER BY p.titulo, p.id", FichaPelicula.class)
+                    .setParameter("titulo", clave[0])
+                    .setParameter("id", entero(clave[1]));
+        } else {
+            String[] clave = leer(desde, PELICULAS_ID, 1);
+            consulta = session.createQuery(seleccion + "WHERE p.id > :id ORDER BY p.id", FichaPelicula.class)
+                    .setParameter("id", clave == null ? 0 : entero(clave[0]));
+        }
+
+        List<FichaPelicula> filas = pedir(session, consulta, tamano);
+        String siguiente = null;
+        if (filas.size() > tamano) {
+            filas = filas.subList(0, tamano);
+            FichaPelicula ultima = filas.get(tamano - 1);
+            siguiente = orden == OrdenPeliculas.TITULO
+                    ? token(PELICULAS_TITULO, ultima.titulo(), String.valueOf(ultima.id()))
+                    : token(PELICULAS_ID, String.valueOf(ultima.id()));
+        }
+        return new Pagina<>(filas, siguiente);
+    }
+
+    /**
+     * 🎬 PÁGINA DE LA FILMOTECA
+     * Películas por id con sus opiniones por id: una película con muchas opiniones
+     * puede ocupar varias páginas (se sigue por donde se quedó).
+     * Un ORDER BY p.id, o.id sobre el JOIN obligaría a ordenar todo lo que queda de la
+     * tabla en cada página, así que son dos consultas que recorren un índice cada una:
+     * 1. las películas desde la de la clave (clave primaria),
+     * 2. sus opiniones desde la de la clave, en el orden de idx_opiniones_pelicula
+     *    (pelicula_id, id), con LIMIT,
+     * y se intercalan aquí. Cada película aporta al menos una línea, así que con
+     * tamano + 2 películas y tamano + 1 opiniones siempre hay de sobra para la página
+     * y para saber si hay otra.
+     */
+    public static Pagina<LineaFilmoteca> filmoteca(Session session, String desde, int tamano) {
+        String[] clave = leer(desde, FILMOTECA, 2);
+        // Las películas sin opiniones llevan opinión 0 en la clave (los ids empiezan en 1)
+        int peliculaClave = clave == null ? 0 : entero(clave[0]);
+        int opinionClave = clave == null ? 0 : entero(clave[1]);
+
+        session.beginTransaction();
+        List<FichaPelicula> peliculas = session.createQuery(
+                        "SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo) FROM ejercicio6.Pelicula p "
+                                + "WHERE p.id >= :pelicula ORDER BY p.id", FichaPelicula.class)
+                .setParameter("pelicula", peliculaClave)
+                .setReadOnly(true)
+                .setMaxResults(tamano + 2)
+                .list();
+        List<Object[]> opiniones = peliculas.isEmpty() ? List.of() : session.createQuery(
+                        "SELECT o.pelicula.id, o.id, o.usuario, o.opinion, o.version FROM ejercicio6.Opinion o "
+                                + "WHERE o.pelicula.id BETWEEN :primera AND :ultima "
+                                + "AND (o.pelicula.id > :pelicula OR o.id > :opinion) "
+                                + "ORDER BY o.pelicula.id, o.id", Object[].class)
+                .setParameter("primera", peliculas.get(0).id())
+                .setParameter("ultima", peliculas.get(peliculas.size() - 1).id())
+                .setParameter("pelicula", peliculaClave)
+                .setParameter("opinion", opinionClave)
+                .setReadOnly(true)
+                .setMaxResults(tamano + 1)
+                .list();
+        session.getTransaction().commit();
+
+        // Intercalar: cada película seguida de sus opiniones (o de una línea vacía si no tiene)
+        List<LineaFilmoteca> filas = new ArrayList<>(tamano + 1);
+        int siguienteOpinion = 0;
+        for (FichaPelicula p : peliculas) {
+            if (filas.size() > tamano) {
+                break;
+            }
+            boolean conOpiniones = false;
+            while (siguienteOpinion < opiniones.size() && (Integer) opiniones.get(siguienteOpinion)[0] == p.id()) {
+                Object[] o = opiniones.get(siguienteOpinion++);
+                filas.add(new LineaFilmoteca(p.id(), p.titulo(), p.director(), p.anyo(), (Integer) o[1], (String) o[2], (String) o[3], (Integer) o[4]));
+                conOpiniones = true;
+            }
+            // La película en la que acabó la página anterior ya salió: si no le quedan opiniones, no se repite
+            if (!conOpiniones && p.id() != peliculaClave) {
+                filas.add(new LineaFilmoteca(p.id(), p.titulo(), p.director(), p.anyo(), null, null, null, null));
+            }
+        }
+
+        String siguiente = null;
+        if (filas.size() > tamano) {
+            filas = filas.subList(0, tamano);
+            LineaFilmoteca ultima = filas.get(tamano - 1);
+            siguiente = token(FILMOTECA, String.valueOf(ultima.peliculaId()),
+                    String.valueOf(ultima.opinionId() == null ? 0 : ultima.opinionId()));
+        }
+        return new Pagina<>(filas, siguiente);
+    }
+
+    /**
+     * 👤 PÁGINA DE LAS OPINIONES DE UN USUARIO (por id de opinión)
+     */
+    public static Pagina<OpinionUsuario> opinionesUsuario(Session session, String usuario, String desde, int tamano) {
+        String[] clave = leer(desde, OPINIONES_USUARIO, 1);
+        Query<OpinionUsuario> consulta = session.createQuery(
+                        "SELECT new ejercicio6.OpinionUsuario(p.id, p.titulo, p.director, p.anyo, o.id, o.opinion, o.version) "
+                                + "FROM ejercicio6.Opinion o JOIN o.pelicula p "
+                                + "WHERE o.usuario = :usuario AND o.id > :id ORDER BY o.id", OpinionUsuario.class)
+                .setParameter("usuario", usuario)
+                .setParameter("id", clave == null ? 0 : entero(clave[0]));
+
+        List<OpinionUsuario> filas = pedir(session, consulta, tamano);
+        String siguiente = null;
+        if (filas.size() > tamano) {
+            filas = filas.subList(0, tamano);
+            siguiente = token(OPINIONES_USUARIO, String.valueOf(filas.get(tamano - 1).id()));
+        }
+        return new Pagina<>(filas, siguiente);
+    }
+
+    /** Película en la que acabó la página anterior de la filmoteca. */
+    public static int peliculaDelToken(String token) {
+        return entero(leer(token, FILMOTECA, 2)[0]);
+    }
+
+    /** Tamaño pedido, o el de por defecto si no es válido, sin pasar de {@link #TAMANO_MAXIMO}. */
+    public static int tamano(Integer pedido) {
+        if (pedido == null || pedido <= 0) {
+            return TAMANO_POR_DEFECTO;
+        }
+        return Math.min(pedido, TAMANO_MAXIMO);
+    }
+
+    /** tamano + 1 filas, en solo lectura. */
+    private static <T> List<T> pedir(Session session, Query<T> consulta, int tamano) {
+        session.beginTransaction();
+        List<T> filas = consulta
+                .setReadOnly(true)
+                .setMaxResults(tamano + 1)
+                .list();
+        session.getTransaction().commit();
+        return filas;
+    }
+
+    /** "F" + ["12", "340"] → Base64 URL de "F|12|340" */
+    static String token(String listado, String... clave) {
+        String texto = listado + "|" + String.join("|", clave);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Las partes de la clave de un token, o null si no hay token.
+     * El título va delante del id, así que se parte por el último "|" (el título puede tener "|").
+     */
+    static String[] leer(String token, String listado, int partes) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        String texto;
+        try {
+            texto = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Token de página no válido.");
+        }
+        if (!texto.startsWith(listado + "|")) {
+            throw new IllegalArgumentException("El token de página es de otro listado.");
+        }
+        String resto = texto.substring(listado.length() + 1);
+        if (partes == 1) {
+            return new String[]{resto};
+        }
+        int separador = resto.lastIndexOf('|');
+        if (separador < 0) {
+            throw new IllegalArgumentException("Token de página no válido.");
+        }
+        return new String[]{resto.substring(0, separador), resto.substring(separador + 1)};
+    }
+
+    private static int entero(String parte) {
+        try {
+            return Integer.parseInt(parte);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Token de página no válido.");
+        }
+    }
+}
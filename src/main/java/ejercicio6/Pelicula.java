@@ -1,10 +1,15 @@
 package ejercicio6;
 
+import java.util.HashSet;
+import java.util.Set;
+
 public class Pelicula {
     private int id;
     private String titulo;
     private String director;
     private int anyo;
+    private Set<Opinion> opiniones = new HashSet<>();
+    private Set<Cine> cines = new HashSet<>();
 
     public Pelicula() {}
 
@@ -53,6 +58,22 @@ public class Pelicula {
         this.anyo = anyo;
     }
 
+    public Set<Opinion> getOpiniones() {
+        return opiniones;
+    }
+
+    public void setOpiniones(Set<Opinion> opiniones) {
+        this.opiniones = opiniones;
+    }
+
+    public Set<Cine> getCines() {
+        return cines;
+    }
+
+    public void setCines(Set<Cine> cines) {
+        this.cines = cines;
+    }
+
     @Override
     public String toString() {
         return "Pelicula {" +
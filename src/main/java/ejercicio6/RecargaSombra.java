@@ -0,0 +1,370 @@
+package ejercicio6;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 🔁 RECARGA EN TABLAS SOMBRA
+ * Alternativa a borrarDatosPrevios + importación (-Dejercicio6.modo.carga=sombra):
+ * 1. Crea peliculas_next, opiniones_next y cines_next vacías (mismas columnas e índices).
+ * 2. Las rellena por JDBC en lotes leyendo los CSV con {@link LectorCSV}. Nadie las lee,
+ *    así que mientras tanto el catálogo antiguo sigue entero y consultable.
+ * 3. Las intercambia con las de verdad en un solo RENAME TABLE (atómico en MySQL):
+ *    un lector ve el catálogo viejo completo o el nuevo completo, nunca uno a medias.
+ * 4. Borra las tablas viejas y vuelve a poner las FK con su nombre de siempre.
+ * Los ids se reservan en bloques en {@link GeneradorIdsPooled#TABLA}, igual que hace
+ * Hibernate, para no chocar con los bloques que otras sesiones ya tienen en memoria.
+ * En H2 (benchmarks) no existe RENAME TABLE de varias tablas: se renombra una a una,
+ * así que allí hay unos milisegundos en los que una consulta puede no encontrar la tabla.
+ * La carga, el intercambio, las FK y los ids sí se comportan igual que en MySQL.
+ */
+public class RecargaSombra {
+
+    public static final String PROPIEDAD_MODO = "ejercicio6.modo.carga";
+    public static final String MODO_TRUNCAR = "truncar";
+    public static final String MODO_SOMBRA = "sombra";
+
+    static final String SUFIJO_SOMBRA = "_next";
+    static final String SUFIJO_VIEJA = "_old";
+
+    /** Filas por executeBatch y por commit. */
+    static final int FILAS_POR_LOTE = 1000;
+    /** Ids que se reservan de golpe en id_generadores. */
+    static final int IDS_POR_RESERVA = 10_000;
+
+    /** Índices que no copia "CREATE TABLE ... AS SELECT" (H2): tabla, nombre, columnas. */
+    static final String[][] INDICES = {
+            {"peliculas", "idx_peliculas_titulo", "titulo"},
+            {"opiniones", "idx_opiniones_pelicula", "pelicula_id"},
+            {"opiniones", "idx_opiniones_usuario", "usuario"},
+            {"cines", "idx_cines_pelicula", "pelicula_id"},
+            {"cines", "idx_cines_cine_pelicula", "cine, pelicula_id"},
+    };
+
+    /** ¿Está activado el modo sombra? (por defecto se trunca y se importa como siempre). */
+    public static boolean activado() {
+        return MODO_SOMBRA.equalsIgnoreCase(System.getProperty(PROPIEDAD_MODO, MODO_TRUNCAR));
+    }
+
+    /**
+     * 🚀 RECARGAR EL CATÁLOGO DESDE LOS CSV
+     * Los archivos se cargan en el orden recibido (las películas tienen que ir antes).
+     * Si algo falla antes del intercambio se borran las tablas sombra y el catálogo
+     * actual queda intacto.
+     */
+    public static List<CargadorCSV.Resumen> recargar(SessionFactory sessionFactory, ArchivoCSV... archivos) {
+        ConnectionProvider proveedor = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+        boolean mysql = sessionFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+
+        List<CargadorCSV.Resumen> resumenes = new ArrayList<>();
+        Connection conexion = null;
+        try {
+            conexion = proveedor.getConnection();
+            conexion.setAutoCommit(false);
+
+            crearSombras(conexion, mysql, archivos);
+            Map<String, Integer> idsPorTitulo = new HashMap<>();
+            for (ArchivoCSV archivo : archivos) {
+                resumenes.add(cargarSombra(conexion, archivo, idsPorTitulo));
+            }
+
+            long inicio = System.nanoTime();
+            intercambiar(conexion, mysql, archivos);
+            long millisIntercambio = (System.nanoTime() - inicio) / 1_000_000;
+            CacheCatalogo.vaciar(sessionFactory);
+
+            resumenes.forEach(resumen -> System.out.println("✅ " + resumen));
+            System.out.println("🔁 Catálogo intercambiado en " + millisIntercambio + " ms (tablas "
+                    + SUFIJO_SOMBRA + " → definitivas).");
+            return resumenes;
+        } catch (SQLException e) {
+            borrarSombras(conexion, archivos);
+            throw new IllegalStateException("❌ Error recargando el catálogo en tablas sombra", e);
+        } catch (RuntimeException e) {
+            borrarSombras(conexion, archivos);
+            throw e;
+        } finally {
+            if (conexion != null) {
+                devolver(sessionFactory, proveedor, conexion, mysql);
+            }
+        }
+    }
+
+    /**
+     * ↩️ DEVOLVER LA CONEXIÓN AL POOL
+     * El intercambio desactiva las FK en la sesión de MySQL; si algo falla a medias
+     * (DROP de las _old, ADD CONSTRAINT...), el siguiente que saque esta conexión del
+     * pool no puede heredarlas desactivadas: se vuelven a activar pase lo que pase y,
+     * si ni eso funciona, la conexión se descarta en vez de devolverla.
+     */
+    private static void devolver(SessionFactory sessionFactory, ConnectionProvider proveedor, Connection conexion, boolean mysql) {
+        try {
+            if (mysql) {
+                try (Statement sql = conexion.createStatement()) {
+                    sql.executeUpdate("SET FOREIGN_KEY_CHECKS = 1");
+                }
+            }
+            conexion.setAutoCommit(true);
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudo dejar la conexión como estaba; se descarta: " + e.getMessage());
+            HikariDataSource pool = FabricaSesiones.pool(sessionFactory);
+            if (pool != null) {
+                pool.evictConnection(conexion);
+                return;
+            }
+        }
+        try {
+            proveedor.closeConnection(conexion);
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudo devolver la conexión al pool: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 🏗️ CREAR LAS TABLAS SOMBRA
+     * MySQL: CREATE TABLE ... LIKE copia columnas, clave e índices (no las FK).
+     * H2: solo columnas (y sin NOT NULL); la clave primaria se añade aquí y los índices
+     * tras el intercambio.
+     */
+    private static void crearSombras(Connection conexion, boolean mysql, ArchivoCSV[] archivos) throws SQLException {
+        try (Statement sql = conexion.createStatement()) {
+            for (ArchivoCSV archivo : archivos) {
+                String tabla = archivo.tabla();
+                // Restos de una recarga anterior que se cortó a medias
+                sql.executeUpdate("DROP TABLE IF EXISTS " + tabla + SUFIJO_SOMBRA);
+                sql.executeUpdate("DROP TABLE IF EXISTS " + tabla + SUFIJO_VIEJA);
+                if (mysql) {
+                    sql.executeUpdate("CREATE TABLE " + tabla + SUFIJO_SOMBRA + " LIKE " + tabla);
+                } else {
+                    sql.executeUpdate("CREATE TABLE " + tabla + SUFIJO_SOMBRA + " AS SELECT * FROM " + tabla + " WITH NO DATA");
+                    sql.executeUpdate("ALTER TABLE " + tabla + SUFIJO_SOMBRA + " ALTER COLUMN id SET NOT NULL");
+                    sql.executeUpdate("ALTER TABLE " + tabla + SUFIJO_SOMBRA + " ADD PRIMARY KEY (id)");
+                }
+            }
+        }
+        conexion.commit();
+    }
+
+    /**
+     * 📥 RELLENAR UNA TABLA SOMBRA
+     * INSERT por lotes de {@link #FILAS_POR_LOTE} con commit en cada lote.
+     * Al cargar películas se apunta título → id; opiniones y cines lo usan para su
+     * pelicula_id (si el título no existe la fila se ignora, como en {@link ArchivoCSV}).
+     */
+    private static CargadorCSV.Resumen cargarSombra(Connection conexion, ArchivoCSV archivo,
+                                                    Map<String, Integer> idsPorTitulo) throws SQLException {
+        String tabla = archivo.tabla() + SUFIJO_SOMBRA;
+        String insert = switch (archivo) {
+            case PELICULAS -> "INSERT INTO " + tabla + " (id, titulo, director, anyo) VALUES (?, ?, ?, ?)";
+            // version explícita: en H2 la tabla sombra no hereda el DEFAULT 0
+            case OPINIONES -> "INSERT INTO " + tabla + " (id, pelicula_id, usuario, opinion, version) VALUES (?, ?, ?, ?, 0)";
+            case CINES -> "INSERT INTO " + tabla + " (id, cine, pelicula_id) VALUES (?, ?, ?)";
+        };
+        File csv = archivo.archivo();
+        long inicio = System.nanoTime();
+        long[] filas = {0};
+        long[] ignoradas = {0};
+        long[] picoHeap = {CargadorCSV.heapUsado()};
+        ReservaIds ids = new ReservaIds(conexion, archivo.tabla());
+
+        try (PreparedStatement ps = conexion.prepareStatement(insert)) {
+            LectorCSV.recorrer(csv, registro -> {
+                try {
+                    int id = ids.siguiente();
+                    switch (archivo) {
+                        case PELICULAS -> {
+                            String titulo = registro.campo(0);
+                            ps.setInt(1, id);
+                            ps.setString(2, titulo);
+                            ps.setString(3, registro.campo(1));
+                            ps.setInt(4, registro.campoInt(2));
+                            idsPorTitulo.putIfAbsent(titulo, id);
+                        }
+                        case OPINIONES -> {
+                            Integer pelicula = idsPorTitulo.get(registro.campo(0));
+                            if (pelicula == null) {
+                                ignoradas[0]++;
+                                return;
+                            }
+                            ps.setInt(1, id);
+                            ps.setInt(2, pelicula);
+                            ps.setString(3, registro.campo(1));
+                            ps.setString(4, registro.campo(2));
+                        }
+                        case CINES -> {
+                            Integer pelicula = idsPorTitulo.get(registro.campo(1));
+                            if (pelicula == null) {
+                                ignoradas[0]++;
+                                return;
+                            }
+                            ps.setInt(1, id);
+                            ps.setString(2, registro.campo(0));
+                            ps.setInt(3, pelicula);
+                        }
+                    }
+                    ps.addBatch();
+                    if (++filas[0] % FILAS_POR_LOTE == 0) {
+                        ps.executeBatch();
+                        conexion.commit();
+                        picoHeap[0] = Math.max(picoHeap[0], CargadorCSV.heapUsado());
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("❌ Error insertando en " + tabla + " (byte "
+                            + registro.posicion() + " de " + csv.getName() + ")", e);
+                }
+            });
+            ps.executeBatch();
+            conexion.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("❌ Error al leer el archivo: " + csv.getName(), e);
+        }
+
+        picoHeap[0] = Math.max(picoHeap[0], CargadorCSV.heapUsado());
+        long millis = (System.nanoTime() - inicio) / 1_000_000;
+        return new CargadorCSV.Resumen(csv.getName(), filas[0], ignoradas[0], millis, picoHeap[0]);
+    }
+
+    /**
+     * 🔀 INTERCAMBIAR SOMBRAS Y TABLAS DE VERDAD
+     * tabla → tabla_old y tabla_next → tabla; después se borran las _old (hijas primero)
+     * y se crean las FK (y en H2 los índices) con los nombres que espera {@link MigracionEsquema}.
+     */
+    private static void intercambiar(Connection conexion, boolean mysql, ArchivoCSV[] archivos) throws SQLException {
+        try (Statement sql = conexion.createStatement()) {
+            if (mysql) {
+                List<String> renombrados = new ArrayList<>();
+                for (ArchivoCSV archivo : archivos) {
+                    String tabla = archivo.tabla();
+                    renombrados.add(tabla + " TO " + tabla + SUFIJO_VIEJA);
+                    renombrados.add(tabla + SUFIJO_SOMBRA + " TO " + tabla);
+                }
+                sql.executeUpdate("RENAME TABLE " + String.join(", ", renombrados));
+            } else {
+                for (ArchivoCSV archivo : archivos) {
+                    String tabla = archivo.tabla();
+                    sql.executeUpdate("ALTER TABLE " + tabla + " RENAME TO " + tabla + SUFIJO_VIEJA);
+                    sql.executeUpdate("ALTER TABLE " + tabla + SUFIJO_SOMBRA + " RENAME TO " + tabla);
+                }
+            }
+
+            // Las hijas antes que peliculas_old, que es a la que apuntan sus FK
+            if (mysql) {
+                sql.executeUpdate("SET FOREIGN_KEY_CHECKS = 0");
+            }
+            for (int i = archivos.length - 1; i >= 0; i--) {
+                sql.executeUpdate("DROP TABLE " + archivos[i].tabla() + SUFIJO_VIEJA);
+            }
+
+            List<String> tablas = new ArrayList<>();
+            for (ArchivoCSV archivo : archivos) {
+                tablas.add(archivo.tabla());
+            }
+            if (!mysql) {
+                for (String[] indice : INDICES) {
+                    if (tablas.contains(indice[0])) {
+                        sql.executeUpdate("CREATE INDEX " + indice[1] + " ON " + indice[0] + " (" + indice[2] + ")");
+                    }
+                }
+            }
+            // Los datos ya son coherentes (cada pelicula_id sale de una película recién insertada):
+            // en MySQL, con FOREIGN_KEY_CHECKS = 0, la FK se crea sin volver a validar la tabla
+            for (ArchivoCSV archivo : archivos) {
+                if (archivo.dependeDePeliculas()) {
+                    String tabla = archivo.tabla();
+                    sql.executeUpdate("ALTER TABLE " + tabla + " ADD CONSTRAINT fk_" + tabla + "_pelicula "
+                            + "FOREIGN KEY (pelicula_id) REFERENCES peliculas (id)");
+                }
+            }
+            // FOREIGN_KEY_CHECKS vuelve a 1 al devolver la conexión (también si algo de esto falla)
+        }
+        ImportacionIncremental.olvidarHuellas(conexion);
+        conexion.commit();
+    }
+
+    /** Si la recarga falla antes del intercambio, las tablas sombra sobran. */
+    private static void borrarSombras(Connection conexion, ArchivoCSV[] archivos) {
+        if (conexion == null) {
+            return;
+        }
+        try (Statement sql = conexion.createStatement()) {
+            conexion.rollback();
+            for (int i = archivos.length - 1; i >= 0; i--) {
+                sql.executeUpdate("DROP TABLE IF EXISTS " + archivos[i].tabla() + SUFIJO_SOMBRA);
+            }
+            conexion.commit();
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudieron borrar las tablas sombra: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 🔢 RESERVA DE IDS EN BLOQUES
+     * Hace lo mismo que el optimizador "pooled-lo" de {@link GeneradorIdsPooled}
+     * (leer "siguiente" y sumarle el bloque) pero con bloques de {@link #IDS_POR_RESERVA}.
+     */
+    static class ReservaIds {
+        private final Connection conexion;
+        private final String entidad;
+        private long siguiente;
+        private long limite;
+
+        ReservaIds(Connection conexion, String entidad) {
+            this.conexion = conexion;
+            this.entidad = entidad;
+        }
+
+        int siguiente() throws SQLException {
+            if (siguiente == limite) {
+                siguiente = reservar();
+                limite = siguiente + IDS_POR_RESERVA;
+            }
+            return Math.toIntExact(siguiente++);
+        }
+
+        private long reservar() throws SQLException {
+            Long guardado = null;
+            try (PreparedStatement consulta = conexion.prepareStatement("SELECT " + GeneradorIdsPooled.COLUMNA_SIGUIENTE
+                    + " FROM " + GeneradorIdsPooled.TABLA + " WHERE " + GeneradorIdsPooled.COLUMNA_ENTIDAD + " = ? FOR UPDATE")) {
+                consulta.setString(1, entidad);
+                try (ResultSet fila = consulta.executeQuery()) {
+                    if (fila.next()) {
+                        guardado = fila.getLong(1);
+                    }
+                }
+            }
+            // Recién creada la fila puede valer 0: los ids empiezan en 1
+            long inicio = guardado == null ? 1 : Math.max(guardado, 1);
+            String sentencia = guardado == null
+                    ? "INSERT INTO " + GeneradorIdsPooled.TABLA + " (" + GeneradorIdsPooled.COLUMNA_SIGUIENTE + ", "
+                            + GeneradorIdsPooled.COLUMNA_ENTIDAD + ") VALUES (?, ?)"
+                    : "UPDATE " + GeneradorIdsPooled.TABLA + " SET " + GeneradorIdsPooled.COLUMNA_SIGUIENTE + " = ? WHERE "
+                            + GeneradorIdsPooled.COLUMNA_ENTIDAD + " = ?";
+            try (PreparedStatement avance = conexion.prepareStatement(sentencia)) {
+                avance.setLong(1, inicio + IDS_POR_RESERVA);
+                avance.setString(2, entidad);
+                avance.executeUpdate();
+            }
+            // La reserva se confirma enseguida para no bloquear a quien inserte a la vez
+            conexion.commit();
+            return inicio;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ejercicio6;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 🔗 RESOLUTOR TÍTULO → PELÍCULA
+ * Los CSV de opiniones y cines traen el título, pero la tabla guarda pelicula_id.
+ * En vez de hacer una consulta por fila, se leen todos los pares (titulo, id)
+ * de una vez y se resuelven en memoria. Si un título está repetido gana el primer id.
+ * Se busca directamente con los bytes UTF-8 del campo del CSV (tabla hash abierta con
+ * los títulos en UTF-8), sin crear un String por fila, y cada película tiene UNA
+ * referencia que comparten todas sus filas.
+ * Una vez cargado no cambia, así que lo pueden usar varios hilos a la vez.
+ */
+public class ResolutorPeliculas {
+
+    private final int numero;
+    /** Tabla hash abierta: título en UTF-8 y su referencia en la misma posición (null = libre). */
+    private final byte[][] titulos;
+    private final Pelicula[] referencias;
+
+    private ResolutorPeliculas(Map<String, Integer> idsPorTitulo) {
+        numero = idsPorTitulo.size();
+        int capacidad = Integer.highestOneBit(Math.max(2, numero) * 2 - 1) << 1;
+        titulos = new byte[capacidad][];
+        referencias = new Pelicula[capacidad];
+        for (Map.Entry<String, Integer> entrada : idsPorTitulo.entrySet()) {
+            byte[] titulo = entrada.getKey().getBytes(StandardCharsets.UTF_8);
+            int i = LectorCSV.hash(titulo, 0, titulo.length) & (capacidad - 1);
+            while (titulos[i] != null) {
+                i = (i + 1) & (capacidad - 1);
+            }
+            Pelicula pelicula = new Pelicula();
+            pelicula.setId(entrada.getValue());
+            pelicula.setTitulo(entrada.getKey());
+            titulos[i] = titulo;
+            referencias[i] = pelicula;
+        }
+    }
+
+    /**
+     * 📥 CARGAR TODOS LOS TÍTULOS
+     * Una sola consulta de proyección (sin hidratar entidades).
+     */
+    public static ResolutorPeliculas cargar(Session session) {
+        Map<String, Integer> ids = new HashMap<>();
+        session.beginTransaction();
+        try (ScrollableResults filas = session.createQuery(
+                        "SELECT p.titulo, p.id FROM ejercicio6.Pelicula p ORDER BY p.id")
+                .setFetchSize(ejercicio6.TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while (filas.next()) {
+                ids.putIfAbsent((String) filas.get(0), (Integer) filas.get(1));
+            }
+        }
+        session.getTransaction().commit();
+        return new ResolutorPeliculas(ids);
+    }
+
+    /**
+     * 🎯 REFERENCIA A UNA PELÍCULA
+     * La película cuyo título es el campo "campo" de la línea, o null si no existe.
+     * Solo trae el id (y el título): basta para escribir la FK sin ir a la base de datos.
+     * ⚠️ Es la misma instancia para todas las filas de esa película: no se modifica.
+     */
+    public Pelicula referencia(LectorCSV.Registro linea, int campo) {
+        int mascara = titulos.length - 1;
+        for (int i = linea.hashCampo(campo) & mascara; titulos[i] != null; i = (i + 1) & mascara) {
+            if (linea.campoIgual(campo, titulos[i])) {
+                return referencias[i];
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return numero;
+    }
+}
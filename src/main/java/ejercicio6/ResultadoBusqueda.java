@@ -0,0 +1,13 @@
+package ejercicio6;
+
+import java.util.List;
+
+/**
+ * 🔎 RESULTADO DE UNA BÚSQUEDA
+ * Las primeras películas y opiniones que coinciden (por id), cuántas coinciden en total
+ * y lo que ha tardado el índice en memoria (sin contar la consulta que trae las filas).
+ */
+public record ResultadoBusqueda(List<FichaPelicula> peliculas, int totalPeliculas,
+                                List<LineaFilmoteca> opiniones, int totalOpiniones,
+                                long microsIndice) {
+}
@@ -0,0 +1,39 @@
+package ejercicio6;
+
+/**
+ * 🧾 RESULTADO DE BORRAR O MODIFICAR UNA OPINIÓN
+ * Las opiniones llevan versión (columna version): cada cambio la sube y solo se escribe
+ * si la fila sigue en la versión que se leyó (ver {@link ServicioFilmoteca#modificarOpinion}).
+ * - APLICADA: hecho; "version" es la nueva y "opinion" el texto que queda (o el que tenía, si se ha borrado).
+ * - YA_ESTABA: la opinión ya tenía ese texto; no se escribe nada (dos personas que hacen
+ *   el mismo cambio no chocan).
+ * - CONFLICTO: otro la cambió después de que la leyeras; "version" y "opinion" son las
+ *   de ahora, para enseñárselas al usuario y que decida.
+ * - NO_EXISTE: no existe o ya está borrada.
+ * "intentos" pasa de 1 cuando la edición se repitió sola porque otro escribió entre la
+ * lectura y el UPDATE.
+ */
+public record ResultadoEdicion(Estado estado, int version, String opinion, int intentos) {
+
+    public enum Estado {APLICADA, YA_ESTABA, CONFLICTO, NO_EXISTE}
+
+    /** ¿La opinión ha quedado como se pedía? */
+    public boolean hecha() {
+        return estado == Estado.APLICADA || estado == Estado.YA_ESTABA;
+    }
+
+    static ResultadoEdicion noExiste(int intentos) {
+        return new ResultadoEdicion(Estado.NO_EXISTE, 0, null, intentos);
+    }
+
+    @Override
+    public String toString() {
+        String texto = switch (estado) {
+            case APLICADA -> "aplicada (versión " + version + ")";
+            case YA_ESTABA -> "ya estaba así (versión " + version + ")";
+            case CONFLICTO -> "conflicto: ahora está en la versión " + version + ": \"" + opinion + "\"";
+            case NO_EXISTE -> "no existe";
+        };
+        return intentos > 1 ? texto + ", " + intentos + " intentos" : texto;
+    }
+}
@@ -0,0 +1,461 @@
+package ejercicio6;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.UnaryOperator;
+
+/**
+ * 🧩 SERVICIO DE LA FILMOTECA
+ * Las operaciones del menú sin nada de consola: cada llamada abre su propia sesión
+ * corta de la SessionFactory compartida y la cierra al terminar.
+ * Una Session no se puede usar desde dos hilos, pero la SessionFactory sí, así que
+ * el mismo servicio lo pueden usar a la vez el menú, el servidor HTTP y cualquier hilo.
+ * Cada operación se mide en {@link Metricas} con el nombre del método del menú que la usa.
+ * Con {@link EscrituraDiferida} arrancada, borrar y modificar opiniones solo las apuntan
+ * en el diario, y las lecturas de opiniones sueltas o en listas les superponen lo pendiente.
+ * Borrar y modificar comprueban la versión de la opinión (ver {@link ResultadoEdicion}).
+ */
+public class ServicioFilmoteca {
+
+    /** Versión para {@link #borrarOpinion} / {@link #modificarOpinion} que no comprueba nada: esté como esté. */
+    public static final int CUALQUIER_VERSION = -1;
+
+    /** Caracteres que caben en la columna opinion (VARCHAR(255), el largo por defecto del mapeo). */
+    public static final int LARGO_MAXIMO_OPINION = 255;
+
+    /** Intentos de una edición cuando otros escriben la misma opinión a la vez. */
+    static final int INTENTOS = 10;
+
+    private final SessionFactory sessionFactory;
+
+    public ServicioFilmoteca(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    /**
+     * 📖 SESIÓN DE SOLO LECTURA
+     * FlushMode.MANUAL (nunca hace flush ni revisa cambios antes de las consultas) y
+     * todo lo que cargue sale en modo solo lectura (sin instantánea para el dirty checking).
+     */
+    private Session abrirSesionLectura() {
+        Session session = sessionFactory.withOptions().flushMode(FlushMode.MANUAL).openSession();
+        session.setDefaultReadOnly(true);
+        return session;
+    }
+
+    /** 👀 Todas las películas con sus opiniones, escritas según llegan. */
+    public void filmoteca(PrintStream salida) {
+        Metricas.medirAccion("mostrarFilmoteca", () -> {
+            try (Session session = abrirSesionLectura()) {
+                ejercicio6.mostrarFilmoteca(session, salida);
+            }
+        });
+    }
+
+    /** 👤 Opiniones de un usuario, ordenadas por película. */
+    public List<OpinionUsuario> opinionesUsuario(String usuario) {
+        return Metricas.medir("iniciarSesion", () -> {
+            Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+            try (Session session = abrirSesionLectura()) {
+                return EscrituraDiferida.superponer(pendientes, ejercicio6.consultarOpinionesUsuario(session, usuario),
+                        OpinionUsuario::id, OpinionUsuario::version,
+                        (o, cambio) -> o.conOpinion(cambio.texto(), cambio.version()));
+            }
+        });
+    }
+
+    /** 🏢 Cartelera de todos los cines, agrupada por cine. */
+    public void carteleras(PrintStream salida) {
+        Metricas.medirAccion("mostrarTitulosCines", () -> {
+            try (Session session = abrirSesionLectura()) {
+                ejercicio6.mostrarTitulosCines(session, salida);
+            }
+        });
+    }
+
+    /** 🎟️ Cartelera de un cine (vacía si no existe). */
+    public List<FichaPelicula> cartelera(String cine) {
+        return Metricas.medir("mostrarTitulosCineConcreto", () -> {
+            try (Session session = abrirSesionLectura()) {
+                return ejercicio6.consultarCartelera(session, cine);
+            }
+        });
+    }
+
+    /** 📄 Página de películas por id o por título ("desde" = token de la anterior, null para la primera). */
+    public Pagina<FichaPelicula> paginaPeliculas(Paginacion.OrdenPeliculas orden, String desde, int tamano) {
+        return Metricas.medir("paginaPeliculas", () -> {
+            try (Session session = abrirSesionLectura()) {
+                return Paginacion.peliculas(session, orden, desde, tamano);
+            }
+        });
+    }
+
+    /** 📄 Página de la filmoteca (películas con sus opiniones). */
+    public Pagina<LineaFilmoteca> paginaFilmoteca(String desde, int tamano) {
+        return Metricas.medir("paginaFilmoteca", () -> {
+            Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+            try (Session session = abrirSesionLectura()) {
+                Pagina<LineaFilmoteca> pagina = Paginacion.filmoteca(session, desde, tamano);
+                return new Pagina<>(EscrituraDiferida.superponer(pendientes, pagina.elementos(),
+                        LineaFilmoteca::idOpinion, LineaFilmoteca::version,
+                        (l, cambio) -> l.conOpinion(cambio.texto(), cambio.version())), pagina.siguiente());
+            }
+        });
+    }
+
+    /** 📄 Página de las opiniones de un usuario. */
+    public Pagina<OpinionUsuario> paginaOpinionesUsuario(String usuario, String desde, int tamano) {
+        return Metricas.medir("paginaOpinionesUsuario", () -> {
+            Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+            try (Session session = abrirSesionLectura()) {
+                Pagina<OpinionUsuario> pagina = Paginacion.opinionesUsuario(session, usuario, desde, tamano);
+                return new Pagina<>(EscrituraDiferida.superponer(pendientes, pagina.elementos(),
+                        OpinionUsuario::id, OpinionUsuario::version,
+                        (o, cambio) -> o.conOpinion(cambio.texto(), cambio.version())), pagina.siguiente());
+            }
+        });
+    }
+
+    /**
+     * 🔎 BUSCAR EN TÍTULOS, DIRECTORES Y OPINIONES
+     * El índice en memoria ({@link IndiceBusqueda}) da los ids y una sola consulta por
+     * tipo trae las filas de los "limite" primeros.
+     */
+    public ResultadoBusqueda buscar(String consulta, int limite) {
+        return Metricas.medir("buscar", () -> {
+            long inicio = System.nanoTime();
+            IndiceInvertido.Coincidencias peliculas = IndiceBusqueda.buscarPeliculas(consulta, limite);
+            IndiceInvertido.Coincidencias opiniones = IndiceBusqueda.buscarOpiniones(consulta, limite);
+            long micros = (System.nanoTime() - inicio) / 1000;
+            Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+            try (Session session = abrirSesionLectura()) {
+                List<FichaPelicula> fichas = peliculas.ids().length == 0 ? List.of() : session.createQuery(
+                                "SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo) FROM ejercicio6.Pelicula p "
+                                        + "WHERE p.id IN (:ids) ORDER BY p.id", FichaPelicula.class)
+                        .setParameterList("ids", aLista(peliculas.ids()))
+                        .list();
+                List<LineaFilmoteca> lineas = opiniones.ids().length == 0 ? List.of() : session.createQuery(
+                                "SELECT new ejercicio6.LineaFilmoteca(p.id, p.titulo, p.director, p.anyo, o.id, o.usuario, o.opinion, o.version) "
+                                        + "FROM ejercicio6.Opinion o JOIN o.pelicula p "
+                                        + "WHERE o.id IN (:ids) ORDER BY o.id", LineaFilmoteca.class)
+                        .setParameterList("ids", aLista(opiniones.ids()))
+                        .list();
+                lineas = EscrituraDiferida.superponer(pendientes, lineas, LineaFilmoteca::idOpinion, LineaFilmoteca::version,
+                        (l, cambio) -> l.conOpinion(cambio.texto(), cambio.version()));
+                return new ResultadoBusqueda(fichas, peliculas.total(), lineas, opiniones.total(), micros);
+            }
+        });
+    }
+
+    private static List<Integer> aLista(int[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    /**
+     * 🏆 PELÍCULAS CON MÁS OPINIONES
+     * Los recuentos salen de {@link Agregados} (sin tocar la tabla opiniones); solo se
+     * consultan los datos de esas "n" películas.
+     */
+    public List<EstadisticaPelicula> peliculasMasOpinadas(int n) {
+        return Metricas.medir("peliculasMasOpinadas", () -> {
+            List<Agregados.ContadoresPelicula> primeras = Agregados.peliculasMasOpinadas(n);
+            if (primeras.isEmpty()) {
+                return List.of();
+            }
+            Map<Integer, FichaPelicula> fichas = new HashMap<>();
+            try (Session session = abrirSesionLectura()) {
+                session.createQuery("SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo) "
+                                + "FROM ejercicio6.Pelicula p WHERE p.id IN (:ids)", FichaPelicula.class)
+                        .setParameterList("ids", primeras.stream().map(Agregados.ContadoresPelicula::peliculaId).toList())
+                        .list()
+                        .forEach(f -> fichas.put(f.id(), f));
+            }
+            List<EstadisticaPelicula> ranking = new ArrayList<>(primeras.size());
+            for (Agregados.ContadoresPelicula c : primeras) {
+                FichaPelicula ficha = fichas.get(c.peliculaId());
+                if (ficha != null) {
+                    ranking.add(new EstadisticaPelicula(ficha, c.opiniones(), c.usuarios(), Instant.ofEpochMilli(c.actualizada())));
+                }
+            }
+            return ranking;
+        });
+    }
+
+    /** 🏆 Usuarios con más opiniones (de {@link Agregados}, sin consultar la BD). */
+    public List<EstadisticaUsuario> usuariosMasActivos(int n) {
+        return Metricas.medir("usuariosMasActivos", () -> Agregados.usuariosMasActivos(n));
+    }
+
+    /**
+     * 🧊 RECUENTO SOBRE LA INSTANTÁNEA EN COLUMNAS
+     * Filas de "tabla" agrupadas por "columna", de más a menos, las "n" primeras.
+     * Sin BD: la foto de la última importación ({@link InstantaneaColumnar}).
+     */
+    public List<InstantaneaColumnar.Recuento> recuento(InstantaneaColumnar.Tabla tabla, InstantaneaColumnar.Columna columna, int n) {
+        return Metricas.medir("recuentoColumnar", () -> {
+            List<InstantaneaColumnar.Recuento> recuentos = InstantaneaColumnar.actual().consulta(tabla).contarPor(columna);
+            return recuentos.subList(0, Math.min(n, recuentos.size()));
+        });
+    }
+
+    /** 🔎 Una opinión por id (null si no existe). */
+    public Opinion opinion(int id) {
+        return Metricas.medir("consultarOpinion", () -> {
+            Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+            try (Session session = abrirSesionLectura()) {
+                return conPendiente(pendientes, session.get(Opinion.class, id));
+            }
+        });
+    }
+
+    /** La opinión con su cambio pendiente encima (null si está pendiente de borrar). */
+    private static Opinion conPendiente(Map<Integer, EscrituraDiferida.Cambio> pendientes, Opinion o) {
+        EscrituraDiferida.Cambio cambio = o == null ? null : EscrituraDiferida.pendiente(pendientes, o.getId(), o.getVersion());
+        if (cambio == null) {
+            return o;
+        }
+        if (cambio.borrado()) {
+            return null;
+        }
+        o.setOpinion(cambio.texto());
+        o.setVersion(cambio.version());
+        return o;
+    }
+
+    /**
+     * 🗑️ BORRAR UNA OPINIÓN
+     * Solo si sigue en "versionVista", la que tenía cuando el usuario la vio
+     * ({@link #CUALQUIER_VERSION}: esté como esté). En el resultado va el texto que tenía.
+     */
+    public ResultadoEdicion borrarOpinion(int id, int versionVista) {
+        return Metricas.medir("borrarOpinion", () -> editar(id, versionVista, null));
+    }
+
+    /**
+     * ✍️ MODIFICAR EL TEXTO DE UNA OPINIÓN
+     * Como {@link #borrarOpinion}: si otro la ha cambiado después de "versionVista", se
+     * devuelve CONFLICTO con lo que hay ahora, salvo que ya tenga justo este texto (YA_ESTABA).
+     */
+    public ResultadoEdicion modificarOpinion(int id, int versionVista, String nueva) {
+        return Metricas.medir("modificarOpinion", () -> editar(id, versionVista, actual -> nueva));
+    }
+
+    /**
+     * 🔁 EDITAR A PARTIR DEL TEXTO ACTUAL
+     * "cambio" recibe el texto de ahora y devuelve el nuevo. Si otro escribe la opinión entre
+     * la lectura y el UPDATE, se vuelve a leer y se aplica "cambio" sobre lo suyo: no se
+     * pierde ninguna de las dos ediciones. "cambio" puede llamarse más de una vez, así que
+     * no debe hacer nada más que calcular el texto.
+     */
+    public ResultadoEdicion editarOpinion(int id, UnaryOperator<String> cambio) {
+        return Metricas.medir("editarOpinion", () -> editar(id, CUALQUIER_VERSION, cambio));
+    }
+
+    /**
+     * 🔒 BLOQUEO OPTIMISTA CON REINTENTOS (cambio == null: borrar)
+     * Cada intento lee la opinión, decide y escribe con "AND version = ?". Si otro se ha
+     * adelantado entre medias, el intento no escribe nada y se repite entero tras una espera
+     * corta al azar, hasta {@link #INTENTOS} veces. Sin bloquear filas: mientras nadie
+     * choque, cuesta lo mismo que antes.
+     */
+    private ResultadoEdicion editar(int id, int versionVista, UnaryOperator<String> cambio) {
+        for (int intento = 1; ; intento++) {
+            ResultadoEdicion resultado = EscrituraDiferida.arrancado()
+                    ? intentarDiferido(id, versionVista, cambio, intento)
+                    : intentar(id, versionVista, cambio, intento);
+            if (resultado == null) {
+                if (intento < INTENTOS && esperarParaReintentar(intento)) {
+                    Metricas.reintento();
+                    continue;
+                }
+                resultado = conflictoConLoDeAhora(id, intento);
+            }
+            if (resultado.estado() == ResultadoEdicion.Estado.CONFLICTO) {
+                Metricas.conflicto();
+            }
+            return resultado;
+        }
+    }
+
+    /** Un intento en la BD; null si otro escribió la opinión antes de que se guardara. */
+    private ResultadoEdicion intentar(int id, int versionVista, UnaryOperator<String> cambio, int intento) {
+        try (Session session = sessionFactory.openSession()) {
+            // Una sola fila: sin lote JDBC, así el choque de versión no sale en el log como error del lote
+            session.setJdbcBatchSize(1);
+            session.beginTransaction();
+            try {
+                Opinion o = session.get(Opinion.class, id);
+                String nueva = o == null || cambio == null ? null : cambio.apply(o.getOpinion());
+                ResultadoEdicion sinEscribir = decidir(o, versionVista, cambio == null, nueva, intento);
+                if (sinEscribir != null) {
+                    session.getTransaction().commit();
+                    return sinEscribir;
+                }
+                String anterior = o.getOpinion();
+                if (cambio == null) {
+                    session.delete(o);
+                } else {
+                    o.setOpinion(nueva);
+                }
+                session.doWork(ArchivoInstantanea::olvidarMarca);
+                session.getTransaction().commit();
+                ArchivoInstantanea.catalogoCambiado();
+                if (cambio == null) {
+                    IndiceBusqueda.opinionBorrada(id, o.getVersion() + 1);
+                    Agregados.opinionBorrada(id, o.getPelicula().getId(), o.getUsuario());
+                    return new ResultadoEdicion(ResultadoEdicion.Estado.APLICADA, o.getVersion(), anterior, intento);
+                }
+                // Tras el commit o.getVersion() ya es la nueva
+                IndiceBusqueda.opinionModificada(id, o.getVersion(), nueva);
+                Agregados.opinionModificada(o.getPelicula().getId());
+                return new ResultadoEdicion(ResultadoEdicion.Estado.APLICADA, o.getVersion(), nueva, intento);
+            } catch (RuntimeException e) {
+                if (session.getTransaction().getStatus().canRollback()) {
+                    session.getTransaction().rollback();
+                }
+                if (esConflictoDeVersion(e)) {
+                    return null;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Un intento con {@link EscrituraDiferida}: lectura sin transacción con lo pendiente
+     * encima y apunte en el diario, que solo se acepta si la opinión sigue como se leyó.
+     * Los recuentos de {@link Agregados} los resta el hilo cuando borra la fila de verdad.
+     */
+    private ResultadoEdicion intentarDiferido(int id, int versionVista, UnaryOperator<String> cambio, int intento) {
+        try (EscrituraDiferida.Lectura lectura = EscrituraDiferida.leerParaEscribir();
+             Session session = abrirSesionLectura()) {
+            Opinion o = conPendiente(lectura.antes(), session.get(Opinion.class, id));
+            String nueva = o == null || cambio == null ? null : cambio.apply(o.getOpinion());
+            ResultadoEdicion sinEscribir = decidir(o, versionVista, cambio == null, nueva, intento);
+            if (sinEscribir != null) {
+                return sinEscribir;
+            }
+            if (cambio == null) {
+                if (!EscrituraDiferida.borrar(lectura, o)) {
+                    return null;
+                }
+                IndiceBusqueda.opinionBorrada(id, o.getVersion() + 1);
+                return new ResultadoEdicion(ResultadoEdicion.Estado.APLICADA, o.getVersion(), o.getOpinion(), intento);
+            }
+            if (!EscrituraDiferida.modificar(lectura, o, nueva)) {
+                return null;
+            }
+            IndiceBusqueda.opinionModificada(id, o.getVersion() + 1, nueva);
+            Agregados.opinionModificada(o.getPelicula().getId());
+            return new ResultadoEdicion(ResultadoEdicion.Estado.APLICADA, o.getVersion() + 1, nueva, intento);
+        }
+    }
+
+    /**
+     * ⚖️ ¿HAY QUE ESCRIBIR?
+     * null si sí; si no, el resultado: NO_EXISTE, YA_ESTABA (ya tiene el texto nuevo, esté
+     * en la versión que esté) o CONFLICTO (otra versión que la vista).
+     * Un texto que no cabe en la columna se rechaza aquí, antes de apuntarlo en el diario:
+     * en diferido la BD lo rechazaría cuando el usuario ya lo ha dado por guardado.
+     */
+    private static ResultadoEdicion decidir(Opinion o, int versionVista, boolean borrar, String nueva, int intento) {
+        if (o == null) {
+            return ResultadoEdicion.noExiste(intento);
+        }
+        if (!borrar && !cabe(nueva)) {
+            throw new IllegalArgumentException("La opinión no puede pasar de " + LARGO_MAXIMO_OPINION + " caracteres.");
+        }
+        if (!borrar && Objects.equals(nueva, o.getOpinion())) {
+            return new ResultadoEdicion(ResultadoEdicion.Estado.YA_ESTABA, o.getVersion(), o.getOpinion(), intento);
+        }
+        if (versionVista != CUALQUIER_VERSION && versionVista != o.getVersion()) {
+            return new ResultadoEdicion(ResultadoEdicion.Estado.CONFLICTO, o.getVersion(), o.getOpinion(), intento);
+        }
+        return null;
+    }
+
+    /**
+     * ¿Cabe el texto en la columna opinion? Se cuentan unidades UTF-16, como H2; MySQL cuenta
+     * caracteres (un emoji es uno, no dos), así que lo que cabe aquí cabe en las dos.
+     */
+    public static boolean cabe(String opinion) {
+        return opinion == null || opinion.length() <= LARGO_MAXIMO_OPINION;
+    }
+
+    /** Hibernate lanza StaleStateException (a veces envuelta) si el UPDATE/DELETE con versión no encuentra la fila. */
+    private static boolean esConflictoDeVersion(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Espera al azar hasta 2^intento ms (máximo 64) para no volver a chocar con los mismos; false si interrumpen. */
+    private static boolean esperarParaReintentar(int intento) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1L << Math.min(intento, 6)));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Tras agotar los intentos: CONFLICTO con la opinión tal como está ahora. */
+    private ResultadoEdicion conflictoConLoDeAhora(int id, int intentos) {
+        Map<Integer, EscrituraDiferida.Cambio> pendientes = EscrituraDiferida.antesDeLeer();
+        try (Session session = abrirSesionLectura()) {
+            Opinion o = conPendiente(pendientes, session.get(Opinion.class, id));
+            return o == null ? ResultadoEdicion.noExiste(intentos)
+                    : new ResultadoEdicion(ResultadoEdicion.Estado.CONFLICTO, o.getVersion(), o.getOpinion(), intentos);
+        }
+    }
+
+    /** 💾 Opiniones de un usuario a CSV (ver {@link ExportadorCSV}). */
+    public long exportarOpinionesUsuario(String usuario, File destino) throws IOException {
+        return Metricas.medir("exportarNuevoCSV", () -> {
+            try (Session session = abrirSesionLectura()) {
+                return ExportadorCSV.exportarOpinionesUsuario(session, usuario, destino);
+            }
+        });
+    }
+
+    /** 💾 Cartelera de un cine a CSV. */
+    public long exportarCartelera(String cine, File destino) throws IOException {
+        return Metricas.medir("exportarCineCSV", () -> {
+            try (Session session = abrirSesionLectura()) {
+                return ExportadorCSV.exportarCartelera(session, cine, destino);
+            }
+        });
+    }
+
+    /** 🗃️ Todas las opiniones, agrupadas por usuario, a CSV. */
+    public long exportarTodasLasOpiniones(File destino) throws IOException {
+        return Metricas.medir("exportarTodasLasOpiniones", () -> {
+            try (Session session = abrirSesionLectura()) {
+                return ExportadorCSV.exportarTodasLasOpiniones(session, destino);
+            }
+        });
+    }
+}
@@ -0,0 +1,476 @@
+package ejercicio6;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 🌐 SERVIDOR HTTP LOCAL
+ * Expone las consultas del menú sobre {@link ServicioFilmoteca} para que muchos
+ * usuarios las usen a la vez (solo escucha en 127.0.0.1):
+ * - GET /filmoteca                  → todas las películas con sus opiniones
+ * - GET /peliculas?orden=titulo     → películas por id (por defecto) o por título, por páginas
+ * - GET /opiniones?usuario=Ana92    → opiniones de un usuario
+ * - GET /carteleras                 → cartelera de todos los cines
+ * - GET /cartelera?cine=Cine%20Sol  → cartelera de un cine
+ * - GET/PUT/DELETE /opinion?id=7    → ver, cambiar (el texto nuevo en el cuerpo) o borrar una opinión
+ *                                     (con &version=N: solo si nadie la ha cambiado, si no 409)
+ * - GET /buscar?q=clasico%20kubr    → películas y opiniones con esas palabras ({@link IndiceBusqueda})
+ * - GET /mas-opinadas?limite=10     → películas con más opiniones ({@link Agregados})
+ * - GET /usuarios-activos?limite=10 → usuarios con más opiniones
+ * - GET /informe?tabla=opiniones&por=director&limite=10 → recuento agrupado ({@link InstantaneaColumnar})
+ * - GET /latencias                  → percentiles de cada ruta
+ * - GET /metricas                   → consultas, lotes, tiempos... de cada operación ({@link Metricas})
+ * Cada petición corre en su propio hilo virtual y abre su propia sesión; lo que
+ * limita la concurrencia real es el pool de conexiones (las demás esperan turno en Hikari).
+ * Las respuestas son texto UTF-8 y se escriben según salen de la consulta.
+ * /peliculas siempre va por páginas; /filmoteca y /opiniones, si se pasa "tamano" o "desde".
+ * La página siguiente se pide con "desde=TOKEN": el token viene en la cabecera
+ * X-Pagina-Siguiente y en la última línea de la respuesta (ver {@link Paginacion}).
+ */
+public class ServidorHttp {
+
+    /** Con -Dejercicio6.http.puerto=8080 el programa arranca el servidor en vez del menú. */
+    public static final String PROPIEDAD_PUERTO = "ejercicio6.http.puerto";
+
+    /** Conexiones pendientes de aceptar que admite el sistema operativo. */
+    private static final int COLA_CONEXIONES = 1024;
+
+    private final ServicioFilmoteca servicio;
+    private final HttpServer servidor;
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Latencias> latencias = new LinkedHashMap<>();
+
+    /** ¿Se ha pedido el modo servidor? */
+    public static boolean activado() {
+        return System.getProperty(PROPIEDAD_PUERTO) != null;
+    }
+
+    /**
+     * 🚀 ARRANCAR EN UN PUERTO (0 = uno libre cualquiera)
+     */
+    public static ServidorHttp arrancar(ServicioFilmoteca servicio, int puerto) throws IOException {
+        ServidorHttp servidorHttp = new ServidorHttp(servicio, puerto);
+        servidorHttp.servidor.start();
+        return servidorHttp;
+    }
+
+    private ServidorHttp(ServicioFilmoteca servicio, int puerto) throws IOException {
+        this.servicio = servicio;
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), COLA_CONEXIONES);
+        servidor.setExecutor(hilos);
+
+        ruta("/filmoteca", this::filmoteca);
+        ruta("/peliculas", this::peliculas);
+        ruta("/opiniones", this::opiniones);
+        ruta("/carteleras", this::carteleras);
+        ruta("/cartelera", this::cartelera);
+        ruta("/opinion", Set.of("GET", "PUT", "DELETE"), this::opinion);
+        ruta("/buscar", this::buscar);
+        ruta("/mas-opinadas", this::masOpinadas);
+        ruta("/usuarios-activos", this::usuariosActivos);
+        ruta("/informe", this::informe);
+        servidor.createContext("/latencias", intercambio -> {
+            try (PrintStream salida = responder(intercambio, 200)) {
+                imprimirLatencias(salida);
+            }
+        });
+        servidor.createContext("/metricas", intercambio -> {
+            try (PrintStream salida = responder(intercambio, 200)) {
+                Metricas.imprimir(servicio.getSessionFactory(), salida);
+            }
+        });
+    }
+
+    public int puerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    /**
+     * 🛑 PARAR
+     * Deja hasta 2 segundos a las peticiones en curso.
+     */
+    public void parar() {
+        servidor.stop(2);
+        hilos.close();
+    }
+
+    /**
+     * 📊 PERCENTILES POR RUTA
+     */
+    public void imprimirLatencias(PrintStream salida) {
+        salida.println("⏱️ Latencias del servidor HTTP:");
+        latencias.forEach((ruta, medidas) -> salida.println("   " + ruta + ": "
+                + (medidas.total() == 0 ? "sin peticiones" : medidas.resumen())));
+    }
+
+    /** Una operación que escribe su respuesta en el intercambio. */
+    private interface Manejador {
+        void atender(HttpExchange intercambio, Map<String, String> parametros) throws IOException;
+    }
+
+    /**
+     * Registra la ruta y mide cada petición, de principio a fin (hasta cerrar la respuesta).
+     */
+    private void ruta(String ruta, Manejador manejador) {
+        ruta(ruta, Set.of("GET"), manejador);
+    }
+
+    private void ruta(String ruta, Set<String> metodos, Manejador manejador) {
+        Latencias medidas = new Latencias();
+        latencias.put(ruta, medidas);
+        servidor.createContext(ruta, intercambio -> {
+            long inicio = System.nanoTime();
+            try {
+                if (!metodos.contains(intercambio.getRequestMethod())) {
+                    texto(intercambio, 405, "❌ Solo " + String.join(", ", metodos) + ".");
+                    return;
+                }
+                manejador.atender(intercambio, parametros(intercambio));
+            } catch (IllegalArgumentException e) {
+                // Parámetros mal formados (tamano no numérico, token de página no válido...)
+                texto(intercambio, 400, "❌ " + e.getMessage());
+            } catch (RuntimeException e) {
+                System.err.println("❌ Error en " + ruta + ": " + e);
+                try {
+                    texto(intercambio, 500, "❌ Error interno.");
+                } catch (IOException cabecerasYaEnviadas) {
+                    // La respuesta ya había empezado: solo queda cortarla
+                }
+            } finally {
+                intercambio.close();
+                medidas.registrar(System.nanoTime() - inicio);
+            }
+        });
+    }
+
+    private void filmoteca(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        if (porPaginas(parametros)) {
+            Pagina<LineaFilmoteca> pagina = servicio.paginaFilmoteca(parametros.get("desde"), tamano(parametros));
+            try (PrintStream salida = responderPagina(intercambio, pagina)) {
+                int peliculaActual = -1;
+                for (LineaFilmoteca linea : pagina.elementos()) {
+                    if (linea.peliculaId() != peliculaActual) {
+                        peliculaActual = linea.peliculaId();
+                        salida.println(linea.peliculaId() + ". " + linea.pelicula());
+                    }
+                    salida.println(linea.usuario() == null
+                            ? "  - Aún no hay opiniones sobre esta película."
+                            : "  - " + linea.usuario() + ": " + linea.opinion());
+                }
+                enlaceSiguiente(salida, "/filmoteca", parametros, pagina);
+            }
+            return;
+        }
+        try (PrintStream salida = responder(intercambio, 200)) {
+            servicio.filmoteca(salida);
+        }
+    }
+
+    private void opiniones(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        String usuario = parametros.get("usuario");
+        if (usuario == null || usuario.isBlank()) {
+            texto(intercambio, 400, "❌ Falta el parámetro usuario.");
+            return;
+        }
+        if (porPaginas(parametros)) {
+            Pagina<OpinionUsuario> pagina = servicio.paginaOpinionesUsuario(usuario.trim(), parametros.get("desde"), tamano(parametros));
+            try (PrintStream salida = responderPagina(intercambio, pagina)) {
+                for (OpinionUsuario o : pagina.elementos()) {
+                    salida.println("ID " + o.id() + " (" + o.peliculaId() + ". " + o.pelicula() + "): " + o.opinion());
+                }
+                enlaceSiguiente(salida, "/opiniones", parametros, pagina);
+            }
+            return;
+        }
+        List<OpinionUsuario> misOpiniones = servicio.opinionesUsuario(usuario.trim());
+        if (misOpiniones.isEmpty()) {
+            texto(intercambio, 404, "📭 '" + usuario + "' no tiene opiniones registradas.");
+            return;
+        }
+        try (PrintStream salida = responder(intercambio, 200)) {
+            int peliculaActual = -1;
+            for (OpinionUsuario o : misOpiniones) {
+                if (o.peliculaId() != peliculaActual) {
+                    peliculaActual = o.peliculaId();
+                    salida.println(o.peliculaId() + ". " + o.pelicula());
+                }
+                salida.println("   - ID " + o.id() + ": " + o.opinion());
+            }
+        }
+    }
+
+    private void peliculas(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        Paginacion.OrdenPeliculas orden = "titulo".equalsIgnoreCase(parametros.get("orden"))
+                ? Paginacion.OrdenPeliculas.TITULO : Paginacion.OrdenPeliculas.ID;
+        Pagina<FichaPelicula> pagina = servicio.paginaPeliculas(orden, parametros.get("desde"), tamano(parametros));
+        try (PrintStream salida = responderPagina(intercambio, pagina)) {
+            for (FichaPelicula p : pagina.elementos()) {
+                salida.println(p.id() + ". " + p);
+            }
+            enlaceSiguiente(salida, "/peliculas", parametros, pagina);
+        }
+    }
+
+    private void carteleras(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        try (PrintStream salida = responder(intercambio, 200)) {
+            servicio.carteleras(salida);
+        }
+    }
+
+    private void cartelera(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        String cine = parametros.get("cine");
+        if (cine == null || cine.isBlank()) {
+            texto(intercambio, 400, "❌ Falta el parámetro cine.");
+            return;
+        }
+        List<FichaPelicula> cartelera = servicio.cartelera(cine.trim());
+        if (cartelera.isEmpty()) {
+            texto(intercambio, 404, "❌ No se encontró el cine o no tiene películas.");
+            return;
+        }
+        try (PrintStream salida = responder(intercambio, 200)) {
+            for (FichaPelicula p : cartelera) {
+                salida.println(p);
+            }
+        }
+    }
+
+    /**
+     * Una opinión por id: GET la devuelve ("id;usuario;version;opinion", la versión también
+     * en la cabecera ETag), PUT cambia su texto por el del cuerpo y DELETE la borra (con
+     * {@link EscrituraDiferida} arrancada, responden en cuanto el cambio está en el diario).
+     * PUT y DELETE con "version=N" o "If-Match: N" solo escriben si sigue en esa versión;
+     * si no, 409 con la opinión como está ahora. Sin versión, se escribe esté como esté.
+     */
+    private void opinion(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        String texto = parametros.get("id");
+        if (texto == null || texto.isBlank()) {
+            texto(intercambio, 400, "❌ Falta el parámetro id.");
+            return;
+        }
+        int id = entero(texto, "El id tiene que ser un número.");
+        String version = parametros.getOrDefault("version", intercambio.getRequestHeaders().getFirst("If-Match"));
+        int versionVista = version == null ? ServicioFilmoteca.CUALQUIER_VERSION
+                : entero(version.replace("\"", ""), "La versión tiene que ser un número.");
+        switch (intercambio.getRequestMethod()) {
+            case "DELETE" -> responderEdicion(intercambio, id, servicio.borrarOpinion(id, versionVista), "✅ Opinión eliminada: ");
+            case "PUT" -> {
+                String nueva = new String(intercambio.getRequestBody().readAllBytes(), StandardCharsets.UTF_8).trim();
+                if (nueva.isEmpty()) {
+                    texto(intercambio, 400, "❌ El cuerpo tiene que traer el texto nuevo.");
+                } else {
+                    responderEdicion(intercambio, id, servicio.modificarOpinion(id, versionVista, nueva), "✅ Opinión actualizada: ");
+                }
+            }
+            default -> {
+                Opinion o = servicio.opinion(id);
+                if (o == null) {
+                    texto(intercambio, 404, "❌ Opinión con ID " + id + " no encontrada.");
+                } else {
+                    intercambio.getResponseHeaders().set("ETag", "\"" + o.getVersion() + "\"");
+                    texto(intercambio, 200, o.getId() + ";" + o.getUsuario() + ";" + o.getVersion() + ";" + o.getOpinion());
+                }
+            }
+        }
+    }
+
+    /** 200 / 409 / 404 según el {@link ResultadoEdicion}, con la versión resultante en ETag. */
+    private static void responderEdicion(HttpExchange intercambio, int id, ResultadoEdicion resultado, String hecho) throws IOException {
+        if (resultado.estado() == ResultadoEdicion.Estado.NO_EXISTE) {
+            texto(intercambio, 404, "❌ Opinión con ID " + id + " no encontrada.");
+            return;
+        }
+        intercambio.getResponseHeaders().set("ETag", "\"" + resultado.version() + "\"");
+        if (resultado.estado() == ResultadoEdicion.Estado.CONFLICTO) {
+            texto(intercambio, 409, "⚠️ Conflicto: la opinión ya va por la versión " + resultado.version() + ": " + resultado.opinion());
+        } else {
+            texto(intercambio, 200, hecho + resultado.opinion());
+        }
+    }
+
+    /** Un número de la petición; si no lo es, 400 con "error". */
+    private static int entero(String texto, String error) {
+        try {
+            return Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(error);
+        }
+    }
+
+    /** q = palabras a buscar, limite = resultados de cada tipo (20 por defecto). */
+    private void buscar(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        String consulta = parametros.get("q");
+        if (consulta == null || consulta.isBlank()) {
+            texto(intercambio, 400, "❌ Falta el parámetro q.");
+            return;
+        }
+        if (!IndiceBusqueda.listo()) {
+            texto(intercambio, 503, "⏳ El índice de búsqueda todavía se está construyendo.");
+            return;
+        }
+        ResultadoBusqueda resultado = servicio.buscar(consulta, limite(parametros, ejercicio6.LIMITE_BUSQUEDA));
+        try (PrintStream salida = responder(intercambio, 200)) {
+            salida.println("Películas: " + resultado.totalPeliculas());
+            for (FichaPelicula p : resultado.peliculas()) {
+                salida.println(p);
+            }
+            salida.println("Opiniones: " + resultado.totalOpiniones());
+            for (LineaFilmoteca l : resultado.opiniones()) {
+                salida.println(l.opinionId() + ";" + l.titulo() + ";" + l.usuario() + ";" + l.opinion());
+            }
+        }
+    }
+
+    private void masOpinadas(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        if (!Agregados.listo()) {
+            texto(intercambio, 503, "⏳ Los recuentos todavía se están calculando.");
+            return;
+        }
+        List<EstadisticaPelicula> ranking = servicio.peliculasMasOpinadas(limite(parametros, ejercicio6.LIMITE_RANKING));
+        try (PrintStream salida = responder(intercambio, 200)) {
+            for (EstadisticaPelicula e : ranking) {
+                salida.println(e.pelicula().id() + ";" + e.pelicula().titulo() + ";" + e.opiniones() + ";" + e.usuarios() + ";" + e.actualizada());
+            }
+        }
+    }
+
+    private void usuariosActivos(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        if (!Agregados.listo()) {
+            texto(intercambio, 503, "⏳ Los recuentos todavía se están calculando.");
+            return;
+        }
+        List<EstadisticaUsuario> ranking = servicio.usuariosMasActivos(limite(parametros, ejercicio6.LIMITE_RANKING));
+        try (PrintStream salida = responder(intercambio, 200)) {
+            for (EstadisticaUsuario e : ranking) {
+                salida.println(e.usuario() + ";" + e.opiniones());
+            }
+        }
+    }
+
+    private void informe(HttpExchange intercambio, Map<String, String> parametros) throws IOException {
+        if (!InstantaneaColumnar.lista()) {
+            texto(intercambio, 503, "⏳ La instantánea del catálogo todavía se está construyendo.");
+            return;
+        }
+        InstantaneaColumnar.Tabla tabla = valor(InstantaneaColumnar.Tabla.class, parametros.getOrDefault("tabla", "peliculas"));
+        InstantaneaColumnar.Columna por = valor(InstantaneaColumnar.Columna.class, parametros.getOrDefault("por", "anyo"));
+        List<InstantaneaColumnar.Recuento> recuentos = servicio.recuento(tabla, por, limite(parametros, ejercicio6.LIMITE_RANKING));
+        try (PrintStream salida = responder(intercambio, 200)) {
+            for (InstantaneaColumnar.Recuento r : recuentos) {
+                salida.println(r.clave() + ";" + r.cuenta());
+            }
+        }
+    }
+
+    /** Constante de un enum escrita en minúsculas ("opiniones" → OPINIONES). */
+    private static <E extends Enum<E>> E valor(Class<E> tipo, String texto) {
+        try {
+            return Enum.valueOf(tipo, texto.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("\"" + texto + "\" no vale; se admite: "
+                    + Arrays.toString(tipo.getEnumConstants()).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Envía las cabeceras (respuesta por trozos, de longitud desconocida) y devuelve
+     * una salida UTF-8 con buffer sobre el cuerpo.
+     */
+    private static PrintStream responder(HttpExchange intercambio, int estado) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, 0);
+        return new PrintStream(new BufferedOutputStream(intercambio.getResponseBody(), 1 << 16), false, StandardCharsets.UTF_8);
+    }
+
+    private static boolean porPaginas(Map<String, String> parametros) {
+        return parametros.containsKey("tamano") || parametros.containsKey("desde");
+    }
+
+    /** "tamano" de la petición (el de por defecto si no viene), sin pasar del máximo. */
+    private static int tamano(Map<String, String> parametros) {
+        String tamano = parametros.get("tamano");
+        try {
+            return Paginacion.tamano(tamano == null ? null : Integer.valueOf(tamano.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El tamaño de página tiene que ser un número.");
+        }
+    }
+
+    /** "limite" de una búsqueda o un ranking ("porDefecto" si no viene), entre 1 y el tamaño máximo de página. */
+    private static int limite(Map<String, String> parametros, int porDefecto) {
+        String limite = parametros.get("limite");
+        try {
+            int valor = limite == null ? porDefecto : Integer.parseInt(limite.trim());
+            return Math.max(1, Math.min(valor, Paginacion.TAMANO_MAXIMO));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El límite tiene que ser un número.");
+        }
+    }
+
+    /** Como {@link #responder}, con el token de la página siguiente en X-Pagina-Siguiente. */
+    private static PrintStream responderPagina(HttpExchange intercambio, Pagina<?> pagina) throws IOException {
+        if (pagina.hayMas()) {
+            intercambio.getResponseHeaders().set("X-Pagina-Siguiente", pagina.siguiente());
+        }
+        return responder(intercambio, 200);
+    }
+
+    /** Última línea: la ruta para pedir la página siguiente, con los mismos parámetros. */
+    private static void enlaceSiguiente(PrintStream salida, String ruta, Map<String, String> parametros, Pagina<?> pagina) {
+        if (!pagina.hayMas()) {
+            salida.println("✅ Última página.");
+            return;
+        }
+        StringBuilder enlace = new StringBuilder(ruta).append("?desde=").append(pagina.siguiente());
+        parametros.forEach((clave, valor) -> {
+            if (!"desde".equals(clave)) {
+                enlace.append('&').append(URLEncoder.encode(clave, StandardCharsets.UTF_8))
+                        .append('=').append(URLEncoder.encode(valor, StandardCharsets.UTF_8));
+            }
+        });
+        salida.println("➡️ Siguiente: " + enlace);
+    }
+
+    /** Respuesta corta de una línea. */
+    private static void texto(HttpExchange intercambio, int estado, String mensaje) throws IOException {
+        byte[] cuerpo = (mensaje + "\n").getBytes(StandardCharsets.UTF_8);
+        intercambio.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, cuerpo.length);
+        intercambio.getResponseBody().write(cuerpo);
+    }
+
+    /** "usuario=Ana%2092&x=1" → {usuario=Ana 92, x=1} */
+    private static Map<String, String> parametros(HttpExchange intercambio) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = intercambio.getRequestURI().getRawQuery();
+        if (consulta == null) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+}
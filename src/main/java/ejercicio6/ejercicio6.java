@@ -1,52 +1,149 @@
 package ejercicio6;
 
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
-import org.hibernate.cfg.Configuration;
-import org.hibernate.service.ServiceRegistry;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 🎬 EJERCICIO 6: MI FILMOTECA CON HIBERNATE
  */
 public class ejercicio6 {
 
+    /** 📦 Filas que el driver trae de cada viaje al recorrer consultas grandes */
+    public static final int TAMANO_FETCH = 500;
+
+    /** ⌨️ Una sola lectura de teclado para todo el programa (varios Scanner sobre System.in se roban la entrada) */
+    private static final Scanner ENTRADA = new Scanner(System.in);
+
+    /** 🔎 Resultados de cada tipo que se muestran al buscar */
+    public static final int LIMITE_BUSQUEDA = 20;
+
+    /** 🏆 Puestos que se muestran en los rankings de películas y usuarios */
+    public static final int LIMITE_RANKING = 10;
+
+    /** 📁 Carpeta con los CSV (se puede cambiar con -Dejercicio6.recursos=...) */
+    public static final String RUTA_RECURSOS = System.getProperty("ejercicio6.recursos",
+            "C:\\Users\\pablo\\Documents\\_estudios\\_dam2\\ejercicio6_ad_hibernate\\src\\main\\java\\recursos");
+
     /**
      * 🚀 MÉTODO PRINCIPAL: arranca toda la aplicación
-     * - Configura Hibernate (la conexión a la base de datos)
+     * - Configura Hibernate (la conexión a la base de datos) en otro hilo, mientras lee la
+     *   instantánea del catálogo o los CSV por adelantado
+     * - Aplica las migraciones pendientes del esquema
      * - Borra datos viejos
-     * - Carga nuevos datos desde archivos CSV
-     * - Muestra el menú principal
+     * - Carga nuevos datos desde archivos CSV (películas, y después opiniones y cines a la vez)
+     *   o, con -Dejercicio6.modo.carga=sombra, los carga aparte y los intercambia de golpe,
+     *   o, con -Dejercicio6.modo.carga=incremental, aplica solo lo que ha cambiado en los CSV
+     *   o, con -Dejercicio6.instantanea=archivo, no carga nada si la instantánea guardada
+     *   en el arranque anterior sigue valiendo ({@link ArchivoInstantanea})
+     * - Construye en segundo plano el índice de búsqueda ({@link IndiceBusqueda}),
+     *   los recuentos de opiniones por película y usuario ({@link Agregados}) y la
+     *   instantánea en columnas para los informes ({@link InstantaneaColumnar})
+     * - Apunta cuánto ha tardado desde que arrancó la JVM (operación "arranqueHastaMenu")
+     * - Muestra el menú principal o, con -Dejercicio6.http.puerto=8080, arranca el
+     *   servidor HTTP en ese puerto (sin menú: se para con Ctrl+C)
      */
     public static void main(String[] args) {
-        // 🔧 Paso 1: Configurar Hibernate (usa hibernate.cfg.xml)
-        Configuration configuration = new Configuration().configure("hibernate.cfg.xml");
-        configuration.addResource("Pelicula.hbm.xml");
-        configuration.addResource("Opinion.hbm.xml");
-        configuration.addResource("Cine.hbm.xml");
-        ServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(configuration.getProperties()).build();
-        SessionFactory sessionFactory = configuration.buildSessionFactory(registry);
+        // 🔧 Paso 1: Configurar Hibernate (usa hibernate.cfg.xml + pool HikariCP) en otro hilo...
+        Future<SessionFactory> fabrica = FabricaSesiones.crearEnSegundoPlano();
+        // ...y mientras tanto, lo que no necesita la BD: leer y comprobar la instantánea
+        //    del catálogo o, si no la hay, adelantar la lectura de los CSV
+        ArchivoInstantanea.Leida leida = ArchivoInstantanea.activado() ? ArchivoInstantanea.leer() : null;
+        if (leida == null) {
+            precargarCSV();
+        }
+        SessionFactory sessionFactory = FabricaSesiones.esperar(fabrica);
+        // 📊 Línea de métricas en el log cada minuto (-Dejercicio6.metricas.intervalo=segundos)
+        Metricas.arrancarInforme(sessionFactory);
 
         // 📥 Abrir sesión para trabajar con la BD
         Session session = sessionFactory.openSession();
 
-        // 🧹 Limpiar datos anteriores (para empezar limpio cada vez)
-        borrarDatosPrevios(session);
+        // 🛠️ Preparar el esquema (tabla de ids por bloques, etc.)
+        MigracionEsquema.migrar(session);
 
-        // 📂 Cargar datos desde los archivos CSV
-        insertarDatosPeliculas(session);
-        insertarDatosOpiniones(session);
-        insertarDatosCines(session);
+        // 📒 -Dejercicio6.escrituras.diario=archivo: borrados y cambios de opiniones en diferido
+        //    (lo que quedara en el diario de la ejecución anterior se aplica ya, antes de importar)
+        if (EscrituraDiferida.activado()) {
+            EscrituraDiferida.arrancar(sessionFactory);
+        }
 
-        // 🎮 Mostrar el menú interactivo
-        menuBiblioteca(session, sessionFactory);
+        // 📦 -Dejercicio6.instantanea=archivo: si la instantánea del arranque anterior sigue
+        //    valiendo (mismos CSV, misma marca en la BD), no se importa nada
+        ArchivoInstantanea.Contenido guardada = ArchivoInstantanea.abrir(sessionFactory, leida);
+        if (guardada == null) {
+            importarCatalogo(sessionFactory, session);
+        }
+
+        // La sesión de arranque ya no hace falta: cada operación abre la suya
+        session.close();
+        // 🔎 Índice de búsqueda, 📈 recuentos de opiniones y 🧊 instantánea para informes
+        //    (en otros hilos: no retrasan el menú), desde el archivo o recorriendo la BD
+        if (guardada != null) {
+            ArchivoInstantanea.usarEnSegundoPlano(guardada);
+        } else {
+            IndiceBusqueda.reconstruirEnSegundoPlano(sessionFactory);
+            Agregados.recalcularEnSegundoPlano(sessionFactory);
+            InstantaneaColumnar.reconstruirEnSegundoPlano(sessionFactory);
+            if (ArchivoInstantanea.activado()) {
+                ArchivoInstantanea.guardarEnSegundoPlano(sessionFactory);
+            }
+        }
+        ServicioFilmoteca servicio = new ServicioFilmoteca(sessionFactory);
+
+        // ⏱️ Tiempo hasta el menú (o el servidor), contando desde que arrancó la JVM
+        long listo = ManagementFactory.getRuntimeMXBean().getUptime();
+        Metricas.operacion("arranqueHastaMenu").registrar(TimeUnit.MILLISECONDS.toNanos(listo), false);
+        System.out.println("⏱️ Listo a los " + listo + " ms de arrancar la JVM.");
+
+        if (ServidorHttp.activado()) {
+            // 🌐 Modo servidor: muchos usuarios a la vez, sin consola
+            arrancarServidor(servicio, Integer.getInteger(ServidorHttp.PROPIEDAD_PUERTO));
+        } else {
+            // 🎮 Mostrar el menú interactivo
+            menuBiblioteca(servicio);
+        }
+    }
+
+    /**
+     * 🌐 ARRANCAR EL SERVIDOR HTTP
+     * Se queda escuchando hasta que se pare el proceso; al pararlo se imprimen los
+     * percentiles de latencia de cada ruta y se cierra la SessionFactory.
+     */
+    public static void arrancarServidor(ServicioFilmoteca servicio, int puerto) {
+        try {
+            ServidorHttp servidor = ServidorHttp.arrancar(servicio, puerto);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                servidor.parar();
+                servidor.imprimirLatencias(System.out);
+                EscrituraDiferida.parar();
+                servicio.getSessionFactory().close();
+            }));
+            System.out.println("🌐 Servidor escuchando en http://127.0.0.1:" + servidor.puerto()
+                    + "/ (filmoteca, opiniones?usuario=, carteleras, cartelera?cine=, opinion?id=, buscar?q=, mas-opinadas, usuarios-activos, informe?tabla=&por=, latencias, metricas). Ctrl+C para parar.");
+        } catch (IOException e) {
+            System.err.println("❌ No se pudo arrancar el servidor en el puerto " + puerto + ".");
+            e.printStackTrace();
+            servicio.getSessionFactory().close();
+        }
     }
 
     /**
@@ -57,9 +154,20 @@ public class ejercicio6 {
      * 3. Ver cartelera de todos los cines (agrupada)
      * 4. Buscar un cine específico
      * 5. Salir
+     * 6. Ver estadísticas de la caché
+     * 7. Ver estado del pool de conexiones
+     * 8. Recargar el catálogo desde los CSV (sin dejarlo vacío mientras tanto)
+     * 9. Exportar todas las opiniones agrupadas por usuario
+     * 10. Ver métricas por operación (consultas, lotes, tiempos...)
+     * 11. Ver la filmoteca por páginas
+     * 12. Buscar en títulos, directores y opiniones
+     * 13. Ver las películas con más opiniones
+     * 14. Ver los usuarios más activos
+     * 15. Informes del catálogo (películas por año, opiniones por director, cines por película)
+     * Cada opción abre y cierra su propia sesión a través de {@link ServicioFilmoteca}.
      */
-    public static void menuBiblioteca(Session session, SessionFactory sessionFactory) {
-        Scanner sc = new Scanner(System.in);
+    public static void menuBiblioteca(ServicioFilmoteca servicio) {
+        SessionFactory sessionFactory = servicio.getSessionFactory();
         int opcion = 0;
 
         do {
@@ -69,58 +177,183 @@ public class ejercicio6 {
             System.out.println("3. Ver cartelera de TODOS los cines");
             System.out.println("4. Buscar cartelera de un CINE");
             System.out.println("5. Salir");
+            System.out.println("6. Ver estadísticas de la caché");
+            System.out.println("7. Ver estado del pool de conexiones");
+            System.out.println("8. Recargar el catálogo desde los CSV");
+            System.out.println("9. Exportar TODAS las opiniones (por usuario)");
+            System.out.println("10. Ver métricas por operación");
+            System.out.println("11. Ver la filmoteca por páginas");
+            System.out.println("12. Buscar en títulos, directores y opiniones");
+            System.out.println("13. Ver las películas con más opiniones");
+            System.out.println("14. Ver los usuarios más activos");
+            System.out.println("15. Informes del catálogo");
             System.out.println("==================================================================");
-            System.out.print("👉 Elige una opción (1-5): ");
-            opcion = sc.nextInt();
-            sc.nextLine(); // Consumir el salto de línea
+            System.out.print("👉 Elige una opción (1-15): ");
+            opcion = ENTRADA.nextInt();
+            ENTRADA.nextLine(); // Consumir el salto de línea
 
             switch (opcion) {
-                case 1 -> mostrarFilmoteca(session);
-                case 2 -> iniciarSesion(session);
-                case 3 -> mostrarTitulosCines(session);
-                case 4 -> mostrarTitulosCineConcreto(session);
+                case 1 -> servicio.filmoteca(System.out);
+                case 2 -> iniciarSesion(servicio);
+                case 3 -> servicio.carteleras(System.out);
+                case 4 -> mostrarTitulosCineConcreto(servicio);
                 case 5 -> {
                     System.out.println("👋 ¡Hasta pronto!");
-                    session.close();
+                    EscrituraDiferida.parar();
                     sessionFactory.close();
                     System.exit(0);
                 }
+                case 6 -> CacheCatalogo.imprimirEstadisticas(sessionFactory, System.out);
+                case 7 -> FabricaSesiones.imprimirPool(sessionFactory, System.out);
+                case 8 -> {
+                    // Los cambios pendientes son de los datos actuales: primero a la BD
+                    EscrituraDiferida.aplicarTodo();
+                    ArchivoInstantanea.catalogoCambiado();
+                    Metricas.medir("recargaSombra", () -> RecargaSombra.recargar(sessionFactory, ArchivoCSV.values()));
+                    IndiceBusqueda.reconstruirEnSegundoPlano(sessionFactory);
+                    Agregados.recalcularEnSegundoPlano(sessionFactory);
+                    InstantaneaColumnar.reconstruirEnSegundoPlano(sessionFactory);
+                    if (ArchivoInstantanea.activado()) {
+                        ArchivoInstantanea.guardarEnSegundoPlano(sessionFactory);
+                    }
+                }
+                case 9 -> exportarTodasLasOpiniones(servicio);
+                case 10 -> Metricas.imprimir(sessionFactory, System.out);
+                case 11 -> mostrarFilmotecaPorPaginas(servicio);
+                case 12 -> buscar(servicio);
+                case 13 -> mostrarPeliculasMasOpinadas(servicio);
+                case 14 -> mostrarUsuariosMasActivos(servicio);
+                case 15 -> mostrarInformes(servicio);
                 default -> System.out.println("❌ Opción inválida. Inténtalo de nuevo.");
             }
         } while (opcion != 5);
     }
 
+    /**
+     * 📖 LEER LOS CSV POR ADELANTADO
+     * Mientras se construye la SessionFactory no se puede importar (los lotes van a la
+     * BD según se parsean), pero sí leer los archivos de principio a fin: la importación
+     * los encuentra ya en la caché de disco del sistema en vez de esperar al disco.
+     */
+    private static void precargarCSV() {
+        Metricas.medirAccion("precargarCSV", () -> {
+            long inicio = System.nanoTime();
+            long bytes = 0;
+            ByteBuffer bloque = ByteBuffer.allocate(LectorCSV.TAMANO_VENTANA);
+            for (ArchivoCSV archivoCSV : ArchivoCSV.values()) {
+                try (FileChannel canal = FileChannel.open(archivoCSV.archivo().toPath(), StandardOpenOption.READ)) {
+                    for (int leidos; (leidos = canal.read(bloque.clear())) >= 0; ) {
+                        bytes += leidos;
+                    }
+                } catch (IOException e) {
+                    // Ya lo dirá la importación; aquí solo se adelantaba trabajo
+                }
+            }
+            System.out.printf("📖 CSV leídos por adelantado: %.1f MB en %d ms.%n", bytes / 1e6, (System.nanoTime() - inicio) / 1_000_000);
+        });
+    }
+
+    /**
+     * 📂 IMPORTAR LOS CSV AL ARRANCAR
+     * Según -Dejercicio6.modo.carga: en tablas aparte e intercambiándolas (sombra), solo
+     * lo que ha cambiado (incremental) o, por defecto, vaciando las tablas e importándolo todo.
+     */
+    private static void importarCatalogo(SessionFactory sessionFactory, Session session) {
+        // La instantánea que hubiera en disco ya no es de estos datos
+        ArchivoInstantanea.catalogoCambiado();
+        if (RecargaSombra.activado()) {
+            // 🔁 -Dejercicio6.modo.carga=sombra: cargar en tablas _next e intercambiarlas al final
+            //    (el catálogo anterior sigue visible hasta el último momento)
+            Metricas.medir("recargaSombra", () -> RecargaSombra.recargar(sessionFactory, ArchivoCSV.values()));
+        } else if (ImportacionIncremental.activado()) {
+            // 🔄 -Dejercicio6.modo.carga=incremental: solo los CSV que han cambiado, y de ellos solo las diferencias
+            Metricas.medir("importacionIncremental", () -> ImportacionIncremental.importar(sessionFactory, ArchivoCSV.values()));
+        } else {
+            // 🧹 Limpiar datos anteriores (para empezar limpio cada vez)
+            borrarDatosPrevios(session);
+
+            // 📂 Cargar datos desde los archivos CSV (en paralelo, salvo -Dejercicio6.importacion.paralela=false)
+            //    Primero las películas: opiniones y cines guardan su id.
+            if (Boolean.parseBoolean(System.getProperty("ejercicio6.importacion.paralela", "true"))) {
+                Metricas.medir("importacionParalela", () -> ImportacionParalela.importar(sessionFactory, ArchivoCSV.values()));
+            } else {
+                insertarDatosPeliculas(session);
+                insertarDatosOpiniones(session);
+                insertarDatosCines(session);
+            }
+        }
+    }
+
     /**
      * 🧹 BORRAR DATOS ANTERIORES
      * Usa TRUNCATE para vaciar las tablas antes de cargar nuevos datos.
      * Así evitamos duplicados cada vez que ejecutamos el programa.
+     * MySQL no deja truncar una tabla referenciada por una FK, así que se
+     * desactivan las comprobaciones solo mientras se vacían las tres.
      */
     public static void borrarDatosPrevios(Session session) {
-        session.beginTransaction();
+        Metricas.medirAccion("borrarDatosPrevios", () -> vaciarTablas(session));
+    }
 
-        session.createNativeQuery("TRUNCATE TABLE peliculas").executeUpdate();
-        session.createNativeQuery("TRUNCATE TABLE opiniones").executeUpdate();
-        session.createNativeQuery("TRUNCATE TABLE cines").executeUpdate();
+    private static void vaciarTablas(Session session) {
+        session.beginTransaction();
+        try {
+            session.doWork(conexion -> {
+                try (Statement sql = conexion.createStatement()) {
+                    sql.executeUpdate("SET FOREIGN_KEY_CHECKS = 0");
+                    try {
+                        sql.executeUpdate("TRUNCATE TABLE opiniones");
+                        sql.executeUpdate("TRUNCATE TABLE cines");
+                        sql.executeUpdate("TRUNCATE TABLE peliculas");
+                    } finally {
+                        volverAComprobarFks(session.getSessionFactory(), conexion);
+                    }
+                }
+                // Las tablas ya no coinciden con los CSV: la próxima importación incremental compara todo
+                ImportacionIncremental.olvidarHuellas(conexion);
+            });
 
-        System.err.println("🧹 Datos anteriores borrados de la base de datos.");
+            System.err.println("🧹 Datos anteriores borrados de la base de datos.");
 
-        session.getTransaction().commit();
+            session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (session.getTransaction().getStatus().canRollback()) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        }
         session.clear();
+        CacheCatalogo.vaciar(session.getSessionFactory());
+    }
+
+    /**
+     * SET FOREIGN_KEY_CHECKS = 1 aunque haya fallado un TRUNCATE: la conexión vuelve al
+     * pool y la usará otro. Si ni eso se puede, se descarta (como en RecargaSombra).
+     */
+    private static void volverAComprobarFks(SessionFactory sessionFactory, Connection conexion) {
+        try (Statement sql = conexion.createStatement()) {
+            sql.executeUpdate("SET FOREIGN_KEY_CHECKS = 1");
+        } catch (SQLException e) {
+            System.err.println("⚠️ No se pudieron volver a activar las FK; la conexión se descarta: " + e.getMessage());
+            HikariDataSource pool = FabricaSesiones.pool(sessionFactory);
+            if (pool != null) {
+                pool.evictConnection(conexion);
+            }
+        }
     }
 
     /**
      * 📖 LEER ARCHIVO CSV
-     * Toma un archivo .csv y lo convierte en una lista de líneas.
-     * Cada línea se divide usando ";" como separador.
+     * Toma un archivo .csv (UTF-8) y lo convierte en una lista de líneas.
+     * Cada línea se divide usando ";" como separador (admite campos entre comillas).
      * Ej: "Matrix;Lana Wachowski;1999" → ["Matrix", "Lana Wachowski", "1999"]
+     * ⚠️ Guarda el archivo entero en memoria: para archivos grandes usar
+     * {@link LectorCSV#recorrer}, que entrega las líneas de una en una.
      */
     public static ArrayList<String[]> leerArchivoCSV(File archivo) {
         ArrayList<String[]> lineas = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(archivo))) {
-            String linea;
-            while ((linea = br.readLine()) != null) {
-                lineas.add(linea.split(";"));
-            }
+        try {
+            LectorCSV.recorrer(archivo, registro -> lineas.add(registro.campos()));
         } catch (Exception e) {
             System.err.println("❌ Error al leer el archivo: " + archivo.getName());
             e.printStackTrace();
@@ -130,120 +363,158 @@ public class ejercicio6 {
 
     /**
      * 📥 INSERTAR PELÍCULAS
-     * Lee 'peliculas.csv' y guarda cada película en la base de datos.
+     * Lee 'peliculas.csv' en streaming y guarda cada película por lotes.
      * Formato esperado: Título;Director;Año
      */
     public static void insertarDatosPeliculas(Session session) {
-        session.beginTransaction();
-
-        File archivo = new File("C:\\Users\\pablo\\Documents\\_estudios\\_dam2\\ejercicio6_ad_hibernate\\src\\main\\java\\recursos\\peliculas.csv");
-        ArrayList<String[]> contenido = leerArchivoCSV(archivo);
-
-        for (String[] linea : contenido) {
-            String titulo = linea[0];
-            String director = linea[1];
-            int anyo = Integer.parseInt(linea[2]);
-            Pelicula p = new Pelicula(titulo, director, anyo);
-            session.save(p);
-        }
+        CargadorCSV.Resumen resumen = Metricas.medir("insertarDatosPeliculas",
+                () -> CargadorCSV.cargar(session, ArchivoCSV.PELICULAS.archivo(), ArchivoCSV.PELICULAS.mapeo(null)));
 
-        session.getTransaction().commit();
-        session.clear();
-        System.out.println("✅ Películas cargadas desde CSV.");
+        System.out.println("✅ Películas cargadas desde CSV. " + resumen);
     }
 
     /**
      * 💬 INSERTAR OPINIONES
-     * Lee 'opiniones.csv' y guarda cada opinión.
+     * Lee 'opiniones.csv' en streaming y guarda cada opinión por lotes.
      * Formato: Título;Usuario;Opinión
+     * ⚠️ Las películas tienen que estar cargadas antes (el título se resuelve a su id).
      */
     public static void insertarDatosOpiniones(Session session) {
-        session.beginTransaction();
-
-        File archivo = new File("C:\\Users\\pablo\\Documents\\_estudios\\_dam2\\ejercicio6_ad_hibernate\\src\\main\\java\\recursos\\opiniones.csv");
-        ArrayList<String[]> contenido = leerArchivoCSV(archivo);
+        CargadorCSV.Resumen resumen = Metricas.medir("insertarDatosOpiniones", () -> {
+            ResolutorPeliculas peliculas = ResolutorPeliculas.cargar(session);
+            return CargadorCSV.cargar(session, ArchivoCSV.OPINIONES.archivo(), ArchivoCSV.OPINIONES.mapeo(peliculas));
+        });
 
-        for (String[] linea : contenido) {
-            String titulo = linea[0];
-            String usuario = linea[1];
-            String opinion = linea[2];
-            Opinion o = new Opinion(titulo, usuario, opinion);
-            session.save(o);
-        }
-
-        session.getTransaction().commit();
-        session.clear();
-        System.out.println("✅ Opiniones cargadas desde CSV.");
+        System.out.println("✅ Opiniones cargadas desde CSV. " + resumen);
     }
 
     /**
      * 🏢 INSERTAR CINES
-     * Lee 'cines.csv' y guarda cada asociación cine-película.
+     * Lee 'cines.csv' en streaming y guarda cada asociación cine-película por lotes.
      * Formato: Nombre del cine;Título de la película
      * ⚠️ Cada fila es UNA relación (no un cine único).
+     * ⚠️ Las películas tienen que estar cargadas antes (el título se resuelve a su id).
      */
     public static void insertarDatosCines(Session session) {
-        session.beginTransaction();
-
-        File archivo = new File("C:\\Users\\pablo\\Documents\\_estudios\\_dam2\\ejercicio6_ad_hibernate\\src\\main\\java\\recursos\\cines.csv");
-        ArrayList<String[]> contenido = leerArchivoCSV(archivo);
+        CargadorCSV.Resumen resumen = Metricas.medir("insertarDatosCines", () -> {
+            ResolutorPeliculas peliculas = ResolutorPeliculas.cargar(session);
+            return CargadorCSV.cargar(session, ArchivoCSV.CINES.archivo(), ArchivoCSV.CINES.mapeo(peliculas));
+        });
 
-        for (String[] linea : contenido) {
-            String nombreCine = linea[0];
-            String tituloPelicula = linea[1];
-            Cine c = new Cine(nombreCine, tituloPelicula);
-            session.save(c);
-        }
-
-        session.getTransaction().commit();
-        session.clear();
-        System.out.println("✅ Asociaciones cine-película cargadas desde CSV.");
+        System.out.println("✅ Asociaciones cine-película cargadas desde CSV. " + resumen);
     }
 
     /**
      * 👀 MOSTRAR FILMOTECA COMPLETA
      * Muestra todas las películas + todas las opiniones que tienen.
-     * Para cada película, busca manualmente sus opiniones comparando el título.
      */
     public static void mostrarFilmoteca(Session session) {
+        mostrarFilmoteca(session, System.out);
+    }
+
+    /**
+     * 👀 MOSTRAR FILMOTECA COMPLETA (en cualquier salida)
+     * Una sola consulta: películas LEFT JOIN sus opiniones, ordenada por película.
+     * Se recorre con un cursor de solo avance y se escribe cada fila según llega,
+     * agrupando mientras no cambie la película (nada se guarda en memoria).
+     * PrintStream no lanza IOException: cada TAMANO_FETCH filas se mira checkError()
+     * y, si quien lee se ha ido (cliente HTTP desconectado), se deja de recorrer y la
+     * conexión vuelve al pool en vez de leer la tabla entera para nadie.
+     */
+    public static void mostrarFilmoteca(Session session, PrintStream salida) {
         session.beginTransaction();
 
-        List<Pelicula> peliculas = session.createQuery("FROM ejercicio6.Pelicula", Pelicula.class).list();
-        List<Opinion> opiniones = session.createQuery("FROM ejercicio6.Opinion", Opinion.class).list();
+        try (ScrollableResults filas = session.createQuery(
+                        "SELECT p.id, p.titulo, p.director, p.anyo, o.usuario, o.opinion " +
+                        "FROM ejercicio6.Pelicula p LEFT JOIN p.opiniones o " +
+                        "ORDER BY p.id, o.id")
+                .setFetchSize(TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+
+            Integer peliculaActual = null;
+            long leidas = 0;
+            while (filas.next()) {
+                if (++leidas % TAMANO_FETCH == 0 && salida.checkError()) {
+                    System.err.println("⚠️ Filmoteca cortada tras " + leidas + " filas: la salida ya no acepta datos.");
+                    break;
+                }
+                Object[] fila = filas.get();
+                int id = (Integer) fila[0];
 
-        if (peliculas.isEmpty()) {
-            System.err.println("📭 La filmoteca está vacía.");
-            session.getTransaction().commit();
-            return;
+                // 🎬 Nueva película: cabecera
+                if (peliculaActual == null || peliculaActual != id) {
+                    if (peliculaActual == null) {
+                        salida.println("🎬 Mi filmoteca:");
+                    }
+                    peliculaActual = id;
+                    salida.println("\n" + id + ". " + fila[1] + " (" + fila[2] + ", " + fila[3] + ")");
+                    salida.println("💬 Opiniones:");
+                    if (fila[4] == null) {
+                        salida.println("  - Aún no hay opiniones sobre esta película.");
+                    }
+                }
+                if (fila[4] != null) {
+                    salida.println("  - " + fila[4] + ": " + fila[5]);
+                }
+            }
+
+            if (peliculaActual == null) {
+                System.err.println("📭 La filmoteca está vacía.");
+            }
+            Metricas.filasLeidas(leidas);
         }
 
-        System.out.println("🎬 Mi filmoteca:");
-        for (Pelicula p : peliculas) {
-            System.out.println("\n" + p.getId() + ". " + p.getTitulo() + " (" + p.getDirector() + ", " + p.getAnyo() + ")");
-            System.out.println("💬 Opiniones:");
+        session.getTransaction().commit();
+        session.clear();
+    }
 
-            List<String> usuarios = new ArrayList<>();
-            List<String> textos = new ArrayList<>();
+    /**
+     * 📄 MOSTRAR LA FILMOTECA POR PÁGINAS
+     * Páginas de -Dejercicio6.pagina.tamano líneas (20 por defecto); Enter pasa a la
+     * siguiente y Q vuelve al menú. Cada página se pide desde donde acabó la anterior
+     * (ver {@link Paginacion}), así que avanzar cuesta lo mismo en la página 1 que en la 10.000.
+     */
+    public static void mostrarFilmotecaPorPaginas(ServicioFilmoteca servicio) {
+        String desde = null;
+        int numero = 1;
+        while (true) {
+            Pagina<LineaFilmoteca> pagina = servicio.paginaFilmoteca(desde, Paginacion.TAMANO_POR_DEFECTO);
+            if (pagina.elementos().isEmpty()) {
+                System.err.println("📭 La filmoteca está vacía.");
+                return;
+            }
 
-            // 🔍 Buscar opiniones que coincidan con el título de esta película
-            for (Opinion o : opiniones) {
-                if (o.getTitulo().equals(p.getTitulo())) {
-                    usuarios.add(o.getUsuario());
-                    textos.add(o.getOpinion());
+            System.out.println("\n📄 Página " + numero + ":");
+            int peliculaActual = -1;
+            for (LineaFilmoteca linea : pagina.elementos()) {
+                // 🎬 Nueva película (o la misma que al final de la página anterior): cabecera
+                if (linea.peliculaId() != peliculaActual) {
+                    System.out.println((peliculaActual == -1 && linea.peliculaId() == ultimaPelicula(desde) ? "(sigue) " : "")
+                            + linea.peliculaId() + ". " + linea.pelicula());
+                    peliculaActual = linea.peliculaId();
                 }
+                System.out.println(linea.usuario() == null
+                        ? "  - Aún no hay opiniones sobre esta película."
+                        : "  - " + linea.usuario() + ": " + linea.opinion());
             }
 
-            if (usuarios.isEmpty()) {
-                System.out.println("  - Aún no hay opiniones sobre esta película.");
-            } else {
-                for (int i = 0; i < usuarios.size(); i++) {
-                    System.out.println("  - " + usuarios.get(i) + ": " + textos.get(i));
-                }
+            if (!pagina.hayMas()) {
+                System.out.println("✅ Fin de la filmoteca.");
+                return;
             }
+            System.out.print("Enter = página siguiente, Q = volver al menú: ");
+            if ("Q".equalsIgnoreCase(ENTRADA.nextLine().trim())) {
+                return;
+            }
+            desde = pagina.siguiente();
+            numero++;
         }
+    }
 
-        session.getTransaction().commit();
-        session.clear();
+    /** Película en la que acabó la página anterior (-1 si es la primera). */
+    private static int ultimaPelicula(String desde) {
+        return desde == null ? -1 : Paginacion.peliculaDelToken(desde);
     }
 
     /**
@@ -252,51 +523,52 @@ public class ejercicio6 {
      * Ej: Todas las pelis de "Cine Galaxy" aparecen juntas.
      */
     public static void mostrarTitulosCines(Session session) {
-        session.beginTransaction();
-
-        List<Cine> cines = session.createQuery("FROM ejercicio6.Cine", Cine.class).list();
-        List<Pelicula> peliculas = session.createQuery("FROM ejercicio6.Pelicula", Pelicula.class).list();
-
-        if (cines.isEmpty()) {
-            System.err.println("📭 No hay cines registrados.");
-            session.getTransaction().commit();
-            return;
-        }
-
-        // 🧠 Paso 1: Obtener nombres únicos de cines (sin repetir)
-        List<String> nombresUnicos = new ArrayList<>();
-        for (Cine c : cines) {
-            String nombre = c.getCine();
-            if (!nombresUnicos.contains(nombre)) {
-                nombresUnicos.add(nombre);
-            }
-        }
-
-        System.out.println("📽️ Cartelera de todos los cines:");
+        mostrarTitulosCines(session, System.out);
+    }
 
-        // 🧠 Paso 2: Para cada nombre único, mostrar sus películas
-        for (String nombreCine : nombresUnicos) {
-            System.out.println("\n🏢 Cartelera de '" + nombreCine + "':");
+    /**
+     * 🏢 MOSTRAR CARTELERA DE TODOS LOS CINES (en cualquier salida)
+     * Una consulta ordenada por cine (índice (cine, pelicula_id)) recorrida con un
+     * cursor de solo avance: cuando cambia el nombre del cine empieza un grupo nuevo.
+     * Una sola pasada, sin listas intermedias.
+     */
+    public static void mostrarTitulosCines(Session session, PrintStream salida) {
+        session.beginTransaction();
 
-            boolean tienePeliculas = false;
+        try (ScrollableResults filas = session.createQuery(
+                        "SELECT c.cine, p.titulo, p.director, p.anyo " +
+                        "FROM ejercicio6.Cine c JOIN c.pelicula p " +
+                        "ORDER BY c.cine, p.titulo")
+                .setFetchSize(TAMANO_FETCH)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+
+            String cineActual = null;
+            long leidas = 0;
+            while (filas.next()) {
+                // Como en mostrarFilmoteca: si ya nadie lee la salida, se deja de recorrer
+                if (++leidas % TAMANO_FETCH == 0 && salida.checkError()) {
+                    System.err.println("⚠️ Cartelera cortada tras " + leidas + " filas: la salida ya no acepta datos.");
+                    break;
+                }
+                Object[] fila = filas.get();
+                String nombreCine = (String) fila[0];
 
-            // Buscar todas las filas de 'Cine' que pertenezcan a este nombre
-            for (Cine c : cines) {
-                if (c.getCine().equals(nombreCine)) {
-                    // Encontrar la película completa por su título
-                    for (Pelicula p : peliculas) {
-                        if (p.getTitulo().equals(c.getTitulo())) {
-                            System.out.println("   - " + p.getTitulo() + " (" + p.getDirector() + ", " + p.getAnyo() + ")");
-                            tienePeliculas = true;
-                            break; // Una película por registro
-                        }
+                // 🏢 Nuevo cine: cabecera
+                if (!nombreCine.equals(cineActual)) {
+                    if (cineActual == null) {
+                        salida.println("📽️ Cartelera de todos los cines:");
                     }
+                    cineActual = nombreCine;
+                    salida.println("\n🏢 Cartelera de '" + nombreCine + "':");
                 }
+                salida.println("   - " + fila[1] + " (" + fila[2] + ", " + fila[3] + ")");
             }
 
-            if (!tienePeliculas) {
-                System.out.println("   - No hay películas en cartelera.");
+            if (cineActual == null) {
+                System.err.println("📭 No hay cines registrados.");
             }
+            Metricas.filasLeidas(leidas);
         }
 
         session.getTransaction().commit();
@@ -308,68 +580,37 @@ public class ejercicio6 {
      * Te pide tu nombre y muestra SOLO tus opiniones.
      * Al final, te permite modificar, borrar o exportar.
      */
-    public static void iniciarSesion(Session session) {
-        session.beginTransaction();
-        Scanner sc = new Scanner(System.in);
-
+    public static void iniciarSesion(ServicioFilmoteca servicio) {
         System.out.print("👤 Usuario: ");
-        String usuario = sc.nextLine().trim();
+        String usuario = ENTRADA.nextLine().trim();
         System.out.println("✅ Sesión iniciada como '" + usuario + "'.");
 
-        List<Pelicula> peliculas = session.createQuery("FROM ejercicio6.Pelicula", Pelicula.class).list();
-        List<Opinion> opiniones = session.createQuery("FROM ejercicio6.Opinion", Opinion.class).list();
-
-        // 📦 Guardamos tus opiniones aquí para poder exportarlas después
-        List<String> titulosExportar = new ArrayList<>();
-        List<String> opinionesExportar = new ArrayList<>();
-
-        boolean hayOpiniones = false;
-
-        for (Pelicula p : peliculas) {
-            List<String> misOpiniones = new ArrayList<>();
-            List<Integer> ids = new ArrayList<>();
-            boolean tieneOpinion = false;
-
-            // Buscar solo TUS opiniones sobre esta película
-            for (Opinion o : opiniones) {
-                if (o.getUsuario().equals(usuario) && o.getTitulo().equals(p.getTitulo())) {
-                    tieneOpinion = true;
-                    misOpiniones.add(o.getOpinion());
-                    ids.add(o.getId());
+        List<OpinionUsuario> misOpiniones = servicio.opinionesUsuario(usuario);
 
-                    // Guardar para exportar
-                    titulosExportar.add(o.getTitulo());
-                    opinionesExportar.add(o.getOpinion());
-                }
-            }
-
-            if (tieneOpinion) {
-                hayOpiniones = true;
-                System.out.println("\n" + p.getId() + ". " + p.getTitulo() + " (" + p.getDirector() + ", " + p.getAnyo() + ")");
+        int peliculaActual = -1;
+        for (OpinionUsuario o : misOpiniones) {
+            // 🎬 Nueva película: cabecera
+            if (o.peliculaId() != peliculaActual) {
+                peliculaActual = o.peliculaId();
+                System.out.println("\n" + o.peliculaId() + ". " + o.pelicula());
                 System.out.println("💬 Tus opiniones:");
-
-                for (int i = 0; i < misOpiniones.size(); i++) {
-                    System.out.println("   - ID " + ids.get(i) + ": " + misOpiniones.get(i));
-                }
             }
+            System.out.println("   - ID " + o.id() + ": " + o.opinion());
         }
 
-        if (!hayOpiniones) {
+        if (misOpiniones.isEmpty()) {
             System.err.println("📭 No tienes opiniones registradas.");
         }
 
-        session.getTransaction().commit();
-        session.clear();
-
         // 📤 ¿Quieres exportar o gestionar?
         System.out.print("¿Deseas gestionar tus opiniones? (S/N/E=Exportar): ");
-        String opcion = sc.nextLine().trim().toUpperCase();
+        String opcion = ENTRADA.nextLine().trim().toUpperCase();
 
         switch (opcion) {
-            case "S" -> gestionarOpiniones(session);
+            case "S" -> gestionarOpiniones(servicio, misOpiniones);
             case "E" -> {
-                if (!opinionesExportar.isEmpty()) {
-                    exportarNuevoCSV(usuario, titulosExportar, opinionesExportar);
+                if (!misOpiniones.isEmpty()) {
+                    exportarNuevoCSV(servicio, usuario);
                 } else {
                     System.out.println("📭 No hay opiniones para exportar.");
                 }
@@ -381,76 +622,200 @@ public class ejercicio6 {
     }
 
     /**
-     * 🔍 BUSCAR CARTELERA DE UN CINE ESPECÍFICO
-     * El usuario escribe el nombre del cine y se muestran sus películas.
+     * 🔎 CONSULTAR LAS OPINIONES DE UN USUARIO
+     * Filtra en la base de datos (WHERE usuario = :usuario, con índice en
+     * opiniones.usuario) y trae solo las columnas que se imprimen, ya como
+     * {@link OpinionUsuario}: ni entidades gestionadas ni instantáneas que luego haya que tirar.
+     * Las filas llegan ordenadas por película (las de una misma película, seguidas).
      */
-    public static void mostrarTitulosCineConcreto(Session session) {
+    public static List<OpinionUsuario> consultarOpinionesUsuario(Session session, String usuario) {
         session.beginTransaction();
-        Scanner sc = new Scanner(System.in);
 
-        System.out.print("🏢 Nombre del cine: ");
-        String nombreCine = sc.nextLine().trim();
-        System.out.println("🔍 Buscando cartelera de '" + nombreCine + "'...");
+        List<OpinionUsuario> opiniones = session.createQuery(
+                        "SELECT new ejercicio6.OpinionUsuario(p.id, p.titulo, p.director, p.anyo, o.id, o.opinion, o.version) " +
+                        "FROM ejercicio6.Opinion o JOIN o.pelicula p " +
+                        "WHERE o.usuario = :usuario ORDER BY p.id, o.id", OpinionUsuario.class)
+                .setParameter("usuario", usuario)
+                .setReadOnly(true)
+                .setFetchSize(TAMANO_FETCH)
+                .list();
 
-        List<Cine> cines = session.createQuery("FROM ejercicio6.Cine", Cine.class).list();
-        List<Pelicula> peliculas = session.createQuery("FROM ejercicio6.Pelicula", Pelicula.class).list();
+        session.getTransaction().commit();
+        return opiniones;
+    }
 
-        List<Pelicula> cartelera = new ArrayList<>();
-        boolean encontrado = false;
+    /**
+     * 🔎 BUSCAR EN TÍTULOS, DIRECTORES Y OPINIONES
+     * Todas las palabras tienen que aparecer, escritas enteras o solo el principio,
+     * con o sin tildes ("clasico kubr"). Se muestran las primeras de cada tipo y
+     * cuánto ha tardado el índice.
+     */
+    public static void buscar(ServicioFilmoteca servicio) {
+        if (!IndiceBusqueda.listo()) {
+            System.out.println("⏳ El índice de búsqueda todavía se está construyendo, prueba en unos segundos.");
+            return;
+        }
+        System.out.print("🔎 Buscar (palabras o principios de palabra, sin importar tildes): ");
+        String consulta = ENTRADA.nextLine().trim();
+        ResultadoBusqueda resultado = servicio.buscar(consulta, LIMITE_BUSQUEDA);
 
-        // Buscar todas las películas asociadas a este cine
-        for (Cine c : cines) {
-            if (c.getCine().equals(nombreCine)) {
-                encontrado = true;
-                for (Pelicula p : peliculas) {
-                    if (p.getTitulo().equals(c.getTitulo())) {
-                        cartelera.add(p);
-                        break;
-                    }
-                }
-            }
+        System.out.println("🎬 Películas (" + resultado.totalPeliculas() + "):");
+        for (FichaPelicula p : resultado.peliculas()) {
+            System.out.println("   - " + p);
         }
+        System.out.println("💬 Opiniones (" + resultado.totalOpiniones() + "):");
+        for (LineaFilmoteca l : resultado.opiniones()) {
+            System.out.println("   - [" + l.opinionId() + "] " + l.titulo() + " · " + l.usuario() + ": " + l.opinion());
+        }
+        if (resultado.totalPeliculas() > resultado.peliculas().size() || resultado.totalOpiniones() > resultado.opiniones().size()) {
+            System.out.println("   (solo las " + LIMITE_BUSQUEDA + " primeras de cada tipo)");
+        }
+        System.out.println("⏱️ Índice: " + resultado.microsIndice() + " µs. " + IndiceBusqueda.resumen());
+    }
+
+    /**
+     * 🏆 PELÍCULAS CON MÁS OPINIONES
+     * Con cuántos usuarios distintos y cuándo cambió la última.
+     */
+    public static void mostrarPeliculasMasOpinadas(ServicioFilmoteca servicio) {
+        if (!Agregados.listo()) {
+            System.out.println("⏳ Los recuentos todavía se están calculando, prueba en unos segundos.");
+            return;
+        }
+        List<EstadisticaPelicula> ranking = servicio.peliculasMasOpinadas(LIMITE_RANKING);
+        if (ranking.isEmpty()) {
+            System.out.println("📭 No hay opiniones.");
+            return;
+        }
+        System.out.println("🏆 Películas con más opiniones:");
+        for (int i = 0; i < ranking.size(); i++) {
+            System.out.println("   " + (i + 1) + ". " + ranking.get(i));
+        }
+    }
+
+    /**
+     * 🏆 USUARIOS MÁS ACTIVOS
+     */
+    public static void mostrarUsuariosMasActivos(ServicioFilmoteca servicio) {
+        if (!Agregados.listo()) {
+            System.out.println("⏳ Los recuentos todavía se están calculando, prueba en unos segundos.");
+            return;
+        }
+        List<EstadisticaUsuario> ranking = servicio.usuariosMasActivos(LIMITE_RANKING);
+        if (ranking.isEmpty()) {
+            System.out.println("📭 No hay opiniones.");
+            return;
+        }
+        System.out.println("🏆 Usuarios más activos:");
+        for (int i = 0; i < ranking.size(); i++) {
+            System.out.println("   " + (i + 1) + ". " + ranking.get(i));
+        }
+    }
 
-        if (!encontrado || cartelera.isEmpty()) {
+    /**
+     * 🧊 INFORMES DEL CATÁLOGO
+     * Recuentos sobre la instantánea en columnas (sin ir a la BD): los {@link #LIMITE_RANKING}
+     * años con más películas, directores con más opiniones y películas en más cines.
+     */
+    public static void mostrarInformes(ServicioFilmoteca servicio) {
+        if (!InstantaneaColumnar.lista()) {
+            System.out.println("⏳ La instantánea del catálogo todavía se está construyendo, prueba en unos segundos.");
+            return;
+        }
+        mostrarRecuentos("📅 Años con más películas:",
+                servicio.recuento(InstantaneaColumnar.Tabla.PELICULAS, InstantaneaColumnar.Columna.ANYO, LIMITE_RANKING));
+        mostrarRecuentos("🎬 Directores con más opiniones:",
+                servicio.recuento(InstantaneaColumnar.Tabla.OPINIONES, InstantaneaColumnar.Columna.DIRECTOR, LIMITE_RANKING));
+        mostrarRecuentos("🏢 Películas en más cines:",
+                servicio.recuento(InstantaneaColumnar.Tabla.CINES, InstantaneaColumnar.Columna.PELICULA, LIMITE_RANKING));
+        System.out.println(InstantaneaColumnar.resumen());
+    }
+
+    private static void mostrarRecuentos(String titulo, List<InstantaneaColumnar.Recuento> recuentos) {
+        System.out.println(titulo);
+        if (recuentos.isEmpty()) {
+            System.out.println("   📭 Nada que contar.");
+        }
+        for (int i = 0; i < recuentos.size(); i++) {
+            System.out.println("   " + (i + 1) + ". " + recuentos.get(i));
+        }
+    }
+
+    /**
+     * 🔍 BUSCAR CARTELERA DE UN CINE ESPECÍFICO
+     * El usuario escribe el nombre del cine y se muestran sus películas.
+     */
+    public static void mostrarTitulosCineConcreto(ServicioFilmoteca servicio) {
+        System.out.print("🏢 Nombre del cine: ");
+        String nombreCine = ENTRADA.nextLine().trim();
+        System.out.println("🔍 Buscando cartelera de '" + nombreCine + "'...");
+
+        List<FichaPelicula> cartelera = servicio.cartelera(nombreCine);
+
+        if (cartelera.isEmpty()) {
             System.err.println("❌ No se encontró el cine o no tiene películas.");
         } else {
             System.out.println("✅ Cartelera de '" + nombreCine + "':");
-            for (Pelicula p : cartelera) {
-                System.out.println("   - " + p.getTitulo() + " (" + p.getDirector() + ", " + p.getAnyo() + ")");
+            for (FichaPelicula p : cartelera) {
+                System.out.println("   - " + p);
             }
         }
 
-        session.getTransaction().commit();
-        session.clear();
-
         // 💾 S para exportar la cartelera de 'Cine'
         System.out.print("¿Deseas exportar esta cartelera? (S/N): ");
-        String opcion = sc.nextLine().trim().toUpperCase();
+        String opcion = ENTRADA.nextLine().trim().toUpperCase();
 
         if ("S".equals(opcion)) {
-            exportarCineCSV(nombreCine, cartelera);
+            exportarCineCSV(servicio, nombreCine);
         } else if (!"N".equals(opcion)) {
             System.out.println("❓ Opción no válida.");
         }
     }
 
     /**
-     * ✏️ GESTIONAR OPINIONES (menú secundario)
-     * Permite elegir si borrar o modificar una opinión por su ID.
+     * 🎟️ CONSULTAR LA CARTELERA DE UN CINE
+     * WHERE cine = :nombre sobre el índice (cine, pelicula_id), solo con las columnas
+     * que se imprimen ({@link FichaPelicula}); el resultado queda en la región
+     * "cartelera" de la caché de consultas (como valores, sin entidades detrás).
      */
-    public static void gestionarOpiniones(Session session) {
-        Scanner sc = new Scanner(System.in);
+    public static List<FichaPelicula> consultarCartelera(Session session, String nombreCine) {
+        session.beginTransaction();
 
+        List<FichaPelicula> cartelera = session.createQuery(
+                        "SELECT new ejercicio6.FichaPelicula(p.id, p.titulo, p.director, p.anyo) " +
+                        "FROM ejercicio6.Cine c JOIN c.pelicula p " +
+                        "WHERE c.cine = :nombre ORDER BY p.titulo", FichaPelicula.class)
+                .setParameter("nombre", nombreCine)
+                .setReadOnly(true)
+                .setCacheable(true)
+                .setCacheRegion(CacheCatalogo.REGION_CARTELERA)
+                .list();
+
+        session.getTransaction().commit();
+        return cartelera;
+    }
+
+    /**
+     * ✏️ GESTIONAR OPINIONES (menú secundario)
+     * Permite elegir si borrar o modificar una opinión por su ID. Solo se toca si sigue
+     * como se mostró (misma versión); si alguien la ha cambiado, se enseña cómo está
+     * ahora y se vuelve a preguntar.
+     */
+    public static void gestionarOpiniones(ServicioFilmoteca servicio, List<OpinionUsuario> vistas) {
         System.out.println("\n🛠️ Gestión de opiniones");
         System.out.print("ID de la opinión: ");
-        int id = sc.nextInt();
+        int id = ENTRADA.nextInt();
         System.out.print("(0) Borrar / (1) Modificar: ");
-        int accion = sc.nextInt();
+        int accion = ENTRADA.nextInt();
+        ENTRADA.nextLine(); // Consumir el salto de línea
 
+        // Una opinión que no estaba en la lista no se ha visto: se borra esté como esté
+        int versionVista = vistas.stream().filter(o -> o.id() == id).mapToInt(OpinionUsuario::version)
+                .findFirst().orElse(ServicioFilmoteca.CUALQUIER_VERSION);
         if (accion == 0) {
-            borrarOpinion(id, session);
+            borrarOpinion(id, versionVista, servicio);
         } else if (accion == 1) {
-            modificarOpinion(id, session);
+            modificarOpinion(id, servicio);
         } else {
             System.out.println("❌ Acción no soportada.");
         }
@@ -459,61 +824,80 @@ public class ejercicio6 {
     /**
      * 🗑️ BORRAR UNA OPINIÓN POR ID
      */
-    public static void borrarOpinion(int id, Session session) {
-        session.beginTransaction();
-        Opinion o = session.get(Opinion.class, id);
+    public static void borrarOpinion(int id, int versionVista, ServicioFilmoteca servicio) {
+        ResultadoEdicion resultado = servicio.borrarOpinion(id, versionVista);
+        while (resultado.estado() == ResultadoEdicion.Estado.CONFLICTO) {
+            System.out.println("⚠️ Alguien ha cambiado esta opinión desde que la viste. Ahora dice: \"" + resultado.opinion() + "\"");
+            if (!confirmar("¿Borrarla igualmente? (S/N): ")) {
+                System.out.println("↩️ Se deja como está.");
+                return;
+            }
+            resultado = servicio.borrarOpinion(id, resultado.version());
+        }
 
-        if (o == null) {
+        if (resultado.estado() == ResultadoEdicion.Estado.NO_EXISTE) {
             System.err.println("❌ Opinión con ID " + id + " no encontrada.");
         } else {
-            System.out.println("🗑️ Borrando opinión: \"" + o.getOpinion() + "\"");
-            session.delete(o);
+            System.out.println("🗑️ Opinión borrada: \"" + resultado.opinion() + "\"");
             System.out.println("✅ Opinión eliminada.");
         }
-
-        session.getTransaction().commit();
-        session.clear();
     }
 
     /**
      * ✍️ MODIFICAR UNA OPINIÓN POR ID
+     * Se guarda solo si nadie la ha cambiado mientras se escribía la nueva.
      */
-    public static void modificarOpinion(int id, Session session) {
-        session.beginTransaction();
-        Scanner sc = new Scanner(System.in);
-
-        Opinion o = session.get(Opinion.class, id);
+    public static void modificarOpinion(int id, ServicioFilmoteca servicio) {
+        Opinion o = servicio.opinion(id);
         if (o == null) {
             System.err.println("❌ Opinión con ID " + id + " no encontrada.");
-            session.getTransaction().commit();
             return;
         }
 
         System.out.println("✏️ Opinión actual: \"" + o.getOpinion() + "\"");
         System.out.print("Nueva opinión: ");
-        String nueva = sc.nextLine().trim();
-        o.setOpinion(nueva);
+        String nueva = ENTRADA.nextLine().trim();
+        if (!ServicioFilmoteca.cabe(nueva)) {
+            System.err.println("❌ La opinión no puede pasar de " + ServicioFilmoteca.LARGO_MAXIMO_OPINION + " caracteres.");
+            return;
+        }
 
-        session.getTransaction().commit();
-        session.clear();
-        System.out.println("✅ Opinión actualizada.");
+        ResultadoEdicion resultado = servicio.modificarOpinion(id, o.getVersion(), nueva);
+        while (resultado.estado() == ResultadoEdicion.Estado.CONFLICTO) {
+            System.out.println("⚠️ Alguien ha cambiado esta opinión mientras escribías. Ahora dice: \"" + resultado.opinion() + "\"");
+            if (!confirmar("¿Guardar la tuya encima? (S/N): ")) {
+                System.out.println("↩️ Se deja como está.");
+                return;
+            }
+            resultado = servicio.modificarOpinion(id, resultado.version(), nueva);
+        }
+
+        if (resultado.hecha()) {
+            System.out.println("✅ Opinión actualizada.");
+        } else {
+            System.err.println("❌ La opinión con ID " + id + " se ha borrado mientras tanto.");
+        }
+    }
+
+    /** Pregunta S/N; cualquier otra cosa cuenta como no. */
+    private static boolean confirmar(String pregunta) {
+        System.out.print(pregunta);
+        return "S".equals(ENTRADA.nextLine().trim().toUpperCase());
     }
 
     /**
      * 💾 EXPORTAR OPINIONES DE UN USUARIO A CSV
-     * Genera un archivo como: Ana92_20260115_143022.csv
-     * Formato: Título;Opinión
+     * Genera un archivo como: Ana92_20260115_143022.csv (o .csv.gz)
+     * Formato: Título;Opinión. Se lee directamente de la base de datos con un cursor
+     * y se escribe según llega (ver {@link ExportadorCSV}).
      */
-    public static void exportarNuevoCSV(String usuario, List<String> titulos, List<String> opiniones) {
+    public static void exportarNuevoCSV(ServicioFilmoteca servicio, String usuario) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String nombreArchivo = usuario + "_" + timestamp + ".csv";
+        File archivo = ExportadorCSV.archivo(usuario + "_" + timestamp);
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(nombreArchivo))) {
-            for (int i = 0; i < titulos.size(); i++) {
-                bw.write(titulos.get(i) + ";" + opiniones.get(i));
-                bw.newLine();
-            }
-            System.out.println("📤 Opiniones exportadas a: " + nombreArchivo);
+        try {
+            long filas = servicio.exportarOpinionesUsuario(usuario, archivo);
+            System.out.println("📤 " + filas + " opiniones exportadas a: " + archivo.getName());
         } catch (IOException e) {
             System.err.println("❌ Error al guardar el archivo CSV.");
             e.printStackTrace();
@@ -524,19 +908,35 @@ public class ejercicio6 {
      * 💾 EXPORTAR CARTELERA DE UN CINE A CSV
      * Formato: Cine;Título;Director;Año
      */
-    public static void exportarCineCSV(String cine, List<Pelicula> peliculas) {
+    public static void exportarCineCSV(ServicioFilmoteca servicio, String cine) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String nombreArchivo = cine.replace(" ", "_") + "_" + timestamp + ".csv";
+        File archivo = ExportadorCSV.archivo(cine.replace(" ", "_") + "_" + timestamp);
 
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(nombreArchivo))) {
-            for (Pelicula p : peliculas) {
-                bw.write(cine + ";" + p.getTitulo() + ";" + p.getDirector() + ";" + p.getAnyo());
-                bw.newLine();
-            }
-            System.out.println("📤 Cartelera exportada a: " + nombreArchivo);
+        try {
+            long filas = servicio.exportarCartelera(cine, archivo);
+            System.out.println("📤 Cartelera exportada a: " + archivo.getName() + " (" + filas + " películas)");
+        } catch (IOException e) {
+            System.err.println("❌ Error al guardar el archivo CSV.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 🗃️ EXPORTAR TODAS LAS OPINIONES, AGRUPADAS POR USUARIO
+     * Formato: Usuario;Título;Opinión. Memoria constante aunque haya millones de filas.
+     */
+    public static void exportarTodasLasOpiniones(ServicioFilmoteca servicio) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        File archivo = ExportadorCSV.archivo("opiniones_por_usuario_" + timestamp);
+
+        try {
+            long inicio = System.nanoTime();
+            long filas = servicio.exportarTodasLasOpiniones(archivo);
+            System.out.println("📤 " + filas + " opiniones exportadas a: " + archivo.getName()
+                    + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
         } catch (IOException e) {
             System.err.println("❌ Error al guardar el archivo CSV.");
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}